@@ -0,0 +1,312 @@
+package com.austinv11.introverted.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * This generates a {@code PacketCodec} for every concrete packet class, so that packets can be encoded and decoded
+ * without scanning their fields through reflection at runtime.
+ *
+ * Fields are accessed through {@code sun.misc.Unsafe} offsets which are resolved once when the codec is loaded, this
+ * is far cheaper to bootstrap than {@link java.lang.invoke.MethodHandle}s and just as fast once compiled. When
+ * {@code sun.misc.Unsafe} is unavailable, the generated codecs fail to load and reflection is used instead.
+ */
+@SupportedAnnotationTypes("*")
+public class CodecProcessor extends AbstractProcessor {
+
+    static final String PACKET = "com.austinv11.introverted.networking.Packet";
+    static final String SERIALIZED = "com.austinv11.introverted.mapping.Serialized";
+    static final String SUFFIX = "$$IntrovertedCodec";
+
+    private static final Map<String, String> READERS = new HashMap<>();
+
+    static {
+        READERS.put("java.lang.String", "buf.getStr()");
+        READERS.put("byte[]", "buf.getByteArray()");
+        READERS.put("java.nio.ByteBuffer", "buf.getBytes()");
+        READERS.put("int[]", "buf.getIntArray()");
+        READERS.put("long[]", "buf.getLongArray()");
+        READERS.put("char[]", "buf.getCharArray()");
+        READERS.put("float[]", "buf.getFloatArray()");
+        READERS.put("double[]", "buf.getDoubleArray()");
+        READERS.put("boolean[]", "buf.getBooleanArray()");
+        READERS.put("java.util.Map", "buf.getMap()");
+        READERS.put("java.lang.Integer", "Integer.valueOf(buf.getAsInt())");
+        READERS.put("java.lang.Long", "Long.valueOf(buf.getAsLong())");
+        READERS.put("java.lang.Short", "Short.valueOf((short) buf.getAsInt())");
+        READERS.put("java.lang.Byte", "Byte.valueOf((byte) buf.getAsInt())");
+        READERS.put("java.lang.Character", "Character.valueOf(buf.getAsChar())");
+        READERS.put("java.lang.Float", "Float.valueOf(buf.getAsFloat())");
+        READERS.put("java.lang.Double", "Double.valueOf(buf.getAsDouble())");
+        READERS.put("java.lang.Boolean", "Boolean.valueOf(buf.getBoolean())");
+    }
+
+    private static final String[] GENERATED_ANNOTATIONS = { //Moved in java 9, neither is necessarily available
+            "javax.annotation.processing.Generated", "javax.annotation.Generated"
+    };
+
+    private final Set<String> generated = new HashSet<>();
+    private String generatedAnnotation; //Null if unavailable, the codecs are then left unannotated
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        for (String annotation : GENERATED_ANNOTATIONS) {
+            if (processingEnv.getElementUtils().getTypeElement(annotation) != null) {
+                generatedAnnotation = annotation;
+                break;
+            }
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getRootElements())
+            _scan(element);
+        return false; //Never claim annotations, other processors may need them
+    }
+
+    private void _scan(Element element) {
+        if (!(element instanceof TypeElement))
+            return;
+
+        TypeElement type = (TypeElement) element;
+        for (Element enclosed : type.getEnclosedElements())
+            _scan(enclosed);
+
+        if (type.getKind() == ElementKind.CLASS && isCodecCandidate(type)) {
+            try {
+                generate(type);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to generate codec: " + e, type);
+            }
+        }
+    }
+
+    private boolean isCodecCandidate(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT) || !type.getTypeParameters().isEmpty())
+            return false;
+
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) { //Generated code must be able to see the type
+            if (e.getModifiers().contains(Modifier.PRIVATE))
+                return false;
+        }
+
+        for (TypeElement current = superclass(type); current != null; current = superclass(current)) {
+            if (current.getQualifiedName().contentEquals(PACKET))
+                return true;
+        }
+        return false;
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+
+    private List<SerializedField> collectFields(TypeElement type) {
+        List<SerializedField> fields = new ArrayList<>();
+        int depth = 0;
+        for (TypeElement current = type; current != null && !current.getQualifiedName().contentEquals(PACKET);
+             current = superclass(current), depth++) {
+            for (Element enclosed : current.getEnclosedElements()) {
+                if (enclosed.getKind() != ElementKind.FIELD || enclosed.getModifiers().contains(Modifier.STATIC))
+                    continue;
+
+                for (AnnotationMirror annotation : enclosed.getAnnotationMirrors()) {
+                    if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(SERIALIZED))
+                        fields.add(new SerializedField((VariableElement) enclosed, annotation, depth));
+                }
+            }
+        }
+        fields.sort(Comparator.comparingInt(f -> f.index)); //Stable, so this matches Reflector#getSerializedFields()
+        return fields;
+    }
+
+    private boolean isStruct(TypeMirror type) { //Non-packet classes with serialized fields are sent as structs
+        if (type.getKind() != TypeKind.DECLARED)
+            return false;
+
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        if (element.getKind() != ElementKind.CLASS)
+            return false;
+
+        for (TypeElement current = element; current != null; current = superclass(current)) {
+            if (current.getQualifiedName().contentEquals(PACKET))
+                return false;
+        }
+        return !collectFields(element).isEmpty();
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (pkg.isEmpty() ? binaryName : binaryName.substring(pkg.length() + 1)) + SUFFIX;
+        String qualifiedName = pkg.isEmpty() ? simpleName : pkg + "." + simpleName;
+        if (!generated.add(qualifiedName))
+            return;
+
+        String packetType = type.getQualifiedName().toString();
+        List<SerializedField> fields = collectFields(type);
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+        try (PrintWriter out = new PrintWriter(file.openWriter())) {
+            if (!pkg.isEmpty()) {
+                out.println("package " + pkg + ";");
+                out.println();
+            }
+            out.println("import com.austinv11.introverted.mapping.PacketCodec;");
+            out.println("import com.austinv11.introverted.networking.PacketBuffer;");
+            out.println();
+            out.println("import java.lang.reflect.Field;");
+            out.println();
+            out.println("/**");
+            out.println(" * Generated by {@code " + CodecProcessor.class.getName() + "}, do not edit.");
+            out.println(" */");
+            if (generatedAnnotation != null)
+                out.println("@" + generatedAnnotation + "(\"" + CodecProcessor.class.getName() + "\")");
+            out.println("public final class " + simpleName + " implements PacketCodec<" + packetType + "> {");
+            out.println();
+            out.println("    private static final sun.misc.Unsafe UNSAFE;");
+            for (int i = 0; i < fields.size(); i++) {
+                out.println("    private static final long OFFSET_" + i + ";");
+                if (!fields.get(i).type.getKind().isPrimitive())
+                    out.println("    private static final Class<?> TYPE_" + i + ";");
+            }
+            out.println();
+            out.println("    static {");
+            out.println("        try {");
+            out.println("            Field field = sun.misc.Unsafe.class.getDeclaredField(\"theUnsafe\");");
+            out.println("            field.setAccessible(true);");
+            out.println("            UNSAFE = (sun.misc.Unsafe) field.get(null);");
+            for (int i = 0; i < fields.size(); i++) {
+                SerializedField field = fields.get(i);
+                StringBuilder owner = new StringBuilder(packetType).append(".class");
+                for (int d = 0; d < field.depth; d++) //Superclasses are not necessarily accessible from here
+                    owner.append(".getSuperclass()");
+                out.println("            field = " + owner + ".getDeclaredField(\"" + field.name + "\");");
+                out.println("            OFFSET_" + i + " = UNSAFE.objectFieldOffset(field);");
+                if (!field.type.getKind().isPrimitive())
+                    out.println("            TYPE_" + i + " = field.getType();");
+            }
+            out.println("        } catch (ReflectiveOperationException e) {");
+            out.println("            throw new ExceptionInInitializerError(e);");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    public " + simpleName + "() {}");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + packetType + " newInstance() {");
+            out.println("        try {");
+            out.println("            return (" + packetType + ") UNSAFE.allocateInstance(" + packetType + ".class);");
+            out.println("        } catch (InstantiationException e) {");
+            out.println("            throw new RuntimeException(e);");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void encode(" + packetType + " packet, PacketBuffer buf) {");
+            for (int i = 0; i < fields.size(); i++) {
+                SerializedField field = fields.get(i);
+                out.println("        buf.put(UNSAFE.get" + field.accessor() + "(packet, OFFSET_" + i + "), " + field.unsigned + ");");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void decode(" + packetType + " packet, PacketBuffer buf) {");
+            for (int i = 0; i < fields.size(); i++) {
+                SerializedField field = fields.get(i);
+                String value = field.type.getKind().isPrimitive() //Fields unknown to the sender are reset to their defaults
+                        ? "buf.hasNext() ? " + field.reader(i) + " : " + field.defaultValue()
+                        : "TYPE_" + i + ".cast(!buf.hasNext() || " + field.reader(i) + ")";
+                out.println("        UNSAFE.put" + field.accessor() + "(packet, OFFSET_" + i + ", " + value + ");");
+            }
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private final class SerializedField {
+
+        final String name;
+        final TypeMirror type;
+        final int index;
+        final boolean unsigned;
+        final int depth; //How many superclasses up the field is declared
+
+        SerializedField(VariableElement field, AnnotationMirror annotation, int depth) {
+            this.name = field.getSimpleName().toString();
+            this.type = field.asType();
+            this.depth = depth;
+            int index = 0;
+            boolean unsigned = false;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value"))
+                    index = (Integer) entry.getValue().getValue();
+                else if (entry.getKey().getSimpleName().contentEquals("unsigned"))
+                    unsigned = (Boolean) entry.getValue().getValue();
+            }
+            this.index = index;
+            this.unsigned = unsigned;
+        }
+
+        /**
+         * The suffix of the {@code sun.misc.Unsafe} get/put methods for the field's type.
+         */
+        String accessor() {
+            if (!type.getKind().isPrimitive())
+                return "Object";
+            String primitive = type.toString();
+            return Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1);
+        }
+
+        String defaultValue() {
+            return type.getKind() == TypeKind.BOOLEAN ? "false" : "0";
+        }
+
+        String reader(int index) {
+            switch (type.getKind()) {
+                case INT:
+                    return "buf.getAsInt()";
+                case LONG:
+                    return "buf.getAsLong()";
+                case SHORT:
+                    return "(short) buf.getAsInt()";
+                case BYTE:
+                    return "(byte) buf.getAsInt()";
+                case CHAR:
+                    return "buf.getAsChar()";
+                case FLOAT:
+                    return "buf.getAsFloat()";
+                case DOUBLE:
+                    return "buf.getAsDouble()";
+                case BOOLEAN:
+                    return "buf.getBoolean()";
+                default:
+                    String erased = processingEnv.getTypeUtils().erasure(type).toString();
+                    String reader = READERS.get(erased);
+                    if (reader == null)
+                        reader = isStruct(type) ? "buf.getStruct(TYPE_" + index + ")" : "buf.getNext()";
+                    return "buf.skipNil() ? null : " + reader;
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.austinv11.introverted.client;
 import com.austinv11.introverted.common.BasePacketConsumer;
 import com.austinv11.introverted.networking.Packet;
 import com.austinv11.introverted.networking.PacketHandler;
+import com.austinv11.introverted.networking.PacketType;
 
 /**
  * {@link BasePacketConsumer} implementation for client side operations.
@@ -13,6 +14,11 @@ public class ClientBasePacketConsumer extends BasePacketConsumer {
         super(handler);
     }
 
+    @Override
+    public boolean handles(PacketType type) {
+        return false;
+    }
+
     @Override
     public void handle(Packet packet) {
 
@@ -1,10 +1,13 @@
 package com.austinv11.introverted.client;
 
+import com.austinv11.introverted.common.Introverted;
 import com.austinv11.introverted.networking.*;
 import com.austinv11.introverted.networking.packets.DiscoveryConfirmPacket;
 import com.austinv11.introverted.networking.packets.DiscoveryPacket;
+import com.austinv11.introverted.networking.packets.HandshakeConfirmPacket;
 import com.austinv11.introverted.networking.packets.HandshakePacket;
 import com.austinv11.introverted.networking.packets.HandshakeRefusePacket;
+import com.austinv11.introverted.server.IntrovertedServer;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.File;
@@ -12,7 +15,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -26,8 +29,10 @@ import java.util.function.Consumer;
 public class IntrovertedClient implements PacketHandler {
 
     private static final int DISCOVERY_TIMEOUT_MS = 5; //Local servers should face no latency, so we are technically being generous
+    private static final int HANDSHAKE_TIMEOUT_MS = 1000; //Unlike discovery, this is expected to succeed so be patient
 
-    private final List<Consumer<Packet>> consumers = new CopyOnWriteArrayList<>();
+    private final PacketDispatcher dispatcher = new PacketDispatcher();
+    private final PendingExchanges exchanges = new PendingExchanges();
     private final PacketSocket socket;
     private final ExecutorService readService = Executors.newSingleThreadExecutor();
     private volatile boolean isClosed = false;
@@ -113,13 +118,56 @@ public class IntrovertedClient implements PacketHandler {
         _completeInit();
     }
 
+    /**
+     * This creates a client which communicates with an Introverted server over an already connected socket, i.e.
+     * {@link SocketFactory#newSharedMemorySocket(String)}.
+     *
+     * @param socket The connected socket.
+     */
+    public IntrovertedClient(PacketSocket socket) {
+        this.socket = socket;
+        _completeInit();
+    }
+
+    /**
+     * This creates a client which is connected to an Introverted server in the same JVM, packets are handed over by
+     * reference rather than being sent through a socket.
+     *
+     * @param server The server.
+     *
+     * @see IntrovertedServer#connectInProcess(boolean)
+     */
+    public IntrovertedClient(IntrovertedServer server) {
+        this(server, false);
+    }
+
+    /**
+     * This creates a client which is connected to an Introverted server in the same JVM.
+     *
+     * @param server The server.
+     * @param verifyCodec When true, packets are encoded and decoded as if they were sent over a socket. Otherwise they
+     *                    are handed over by reference.
+     *
+     * @see IntrovertedServer#connectInProcess(boolean)
+     */
+    public IntrovertedClient(IntrovertedServer server, boolean verifyCodec) {
+        this(server.connectInProcess(verifyCodec));
+    }
+
     private void _completeInit() { //Bootstrap socket listener and base consumer
         readService.execute(() -> {
             while (!isClosed()) {
                 try {
-                    Packet packet = socket.getInputStream().read();
-                    if (packet != null) //Ignore null packets as they are likely due to the stream being terminated
-                        consumers.forEach(consumer -> consumer.accept(packet));
+                    LazyPacket packet = socket.getReader().readLazy(this::_isInterested);
+                    if (packet != null) { //Ignore null packets as they are likely due to the stream being terminated
+                        try {
+                            if (packet.getType() == PacketType.HANDSHAKE_CONFIRM) //Start using whatever the server agreed to
+                                _acceptConfirmation((HandshakeConfirmPacket) packet.get());
+                            dispatcher.dispatch(socket, packet);
+                        } finally {
+                            packet.release();
+                        }
+                    }
                 } catch (IOException e) {
                     if (!isClosed())
                         e.printStackTrace();
@@ -127,6 +175,18 @@ public class IntrovertedClient implements PacketHandler {
             }
         });
         handle(new ClientBasePacketConsumer(this));
+        handle(exchanges);
+    }
+
+    private void _acceptConfirmation(HandshakeConfirmPacket confirmation) { //Called from the reading thread
+        byte version = (byte) Math.min(confirmation.getProtocolVersion(), Introverted.VERSION);
+        socket.getOutputStream().setFeatures(confirmation.getFeatures());
+        socket.getOutputStream().setProtocolVersion(version);
+        socket.getReader().setProtocolVersion(version);
+    }
+
+    private boolean _isInterested(PacketType type) { //Packets nobody is interested in are never decoded
+        return type == PacketType.HANDSHAKE_CONFIRM || dispatcher.isInterested(type);
     }
 
     /**
@@ -138,8 +198,10 @@ public class IntrovertedClient implements PacketHandler {
      * @throws InterruptedException
      */
     public synchronized Optional<String> handshake() throws InterruptedException {
-        TraceablePacket packet = exchange(new HandshakePacket(), DISCOVERY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
-        if (packet.getType() == PacketType.HANDSHAKE_CONFIRM) {
+        TraceablePacket packet = exchange(new HandshakePacket(), HANDSHAKE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (packet == null) {
+            return Optional.of("Timed out waiting for a response from the server");
+        } else if (packet.getType() == PacketType.HANDSHAKE_CONFIRM) {
             return Optional.empty();
         } else {
             return Optional.of(((HandshakeRefusePacket) packet).getReason());
@@ -156,14 +218,35 @@ public class IntrovertedClient implements PacketHandler {
         }
     }
 
+    @Override
+    public <T extends TraceablePacket> CompletableFuture<T> exchangeAsync(TraceablePacket sending) {
+        CompletableFuture<T> response = exchanges.register(sending); //Before sending, the response may arrive at any time
+        try {
+            send(sending);
+        } catch (RuntimeException e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
     @Override
     public void handle(Consumer<Packet> packetConsumer) {
-        consumers.add(packetConsumer);
+        dispatcher.add(packetConsumer);
     }
 
     @Override
     public void unregisterPacketConsumer(Consumer<Packet> packetConsumer) {
-        consumers.remove(packetConsumer);
+        dispatcher.remove(packetConsumer);
+    }
+
+    @Override
+    public int getPacketConsumerCount() {
+        return dispatcher.size();
+    }
+
+    @Override
+    public void setRecycling(PacketType packetType, boolean recycle) {
+        socket.getReader().setRecycling(packetType, recycle);
     }
 
     @Override
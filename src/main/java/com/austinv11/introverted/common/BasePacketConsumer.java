@@ -1,6 +1,7 @@
 package com.austinv11.introverted.common;
 
 import com.austinv11.introverted.networking.Packet;
+import com.austinv11.introverted.networking.PacketFilter;
 import com.austinv11.introverted.networking.PacketHandler;
 import com.austinv11.introverted.networking.PacketType;
 import com.austinv11.introverted.networking.packets.PingPacket;
@@ -15,7 +16,7 @@ import java.util.function.Consumer;
  * This base class, specifically, implements side-agnostic aspects of packet handling (dealing with ping pongs for
  * example).
  */
-public abstract class BasePacketConsumer implements Consumer<Packet> {
+public abstract class BasePacketConsumer implements Consumer<Packet>, PacketFilter {
 
     private final PacketHandler handler;
 
@@ -38,12 +39,28 @@ public abstract class BasePacketConsumer implements Consumer<Packet> {
             handle(packet);
     }
 
+    @Override
+    public boolean isInterested(PacketType type) {
+        return type == PacketType.PING || type == PacketType.CONNECTION_KILLED || handles(type);
+    }
+
     /**
      * This is called to signal for a packet to be handled.
      * @param packet
      */
     public abstract void handle(Packet packet);
 
+    /**
+     * Checks if {@link #handle(Packet)} does anything with a type of packet. Packets of other types may be skipped
+     * without being decoded.
+     *
+     * @param type The packet type.
+     * @return True if the type is handled, false if otherwise. Defaults to true.
+     */
+    public boolean handles(PacketType type) {
+        return true;
+    }
+
     public PacketHandler getHandler() {
         return handler;
     }
@@ -6,7 +6,14 @@ package com.austinv11.introverted.common;
 public class Introverted {
 
     /**
-     * The version byte prefixed to all packets. This represents the protocol version.
+     * The version byte prefixed to all packets (until a version has been negotiated). This represents the protocol
+     * version.
      */
-    public static final byte VERSION = 1;
+    public static final byte VERSION = 2;
+
+    /**
+     * The oldest protocol version which is still supported. Packets are framed according to this version until a
+     * version has been negotiated during the handshake.
+     */
+    public static final byte MIN_VERSION = 1;
 }
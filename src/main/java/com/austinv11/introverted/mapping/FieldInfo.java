@@ -0,0 +1,109 @@
+package com.austinv11.introverted.mapping;
+
+import java.lang.reflect.Field;
+
+/**
+ * This holds the resolved accessor metadata of a field, so that it only has to be looked up once. Instances are
+ * immutable and therefore safe to share between threads.
+ *
+ * @see Reflector#getFieldInfo(Class, String)
+ */
+public final class FieldInfo {
+
+    /**
+     * The storage kinds a field can have.
+     */
+    public enum Kind {
+        BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE, OBJECT;
+
+        static Kind of(Class<?> type) {
+            if (!type.isPrimitive())
+                return OBJECT;
+            else if (int.class.equals(type))
+                return INT;
+            else if (long.class.equals(type))
+                return LONG;
+            else if (double.class.equals(type))
+                return DOUBLE;
+            else if (float.class.equals(type))
+                return FLOAT;
+            else if (byte.class.equals(type))
+                return BYTE;
+            else if (char.class.equals(type))
+                return CHAR;
+            else if (boolean.class.equals(type))
+                return BOOLEAN;
+            else
+                return SHORT;
+        }
+    }
+
+    private final Field field;
+    private final Kind kind;
+    private final long offset;
+    private final Serialized serialized;
+
+    FieldInfo(Field field, long offset) {
+        this.field = field;
+        this.kind = Kind.of(field.getType());
+        this.serialized = field.getAnnotation(Serialized.class);
+        this.offset = offset;
+        try {
+            field.setAccessible(true);
+        } catch (RuntimeException e) {} //Also InaccessibleObjectException on java 9+, only an issue when the field is accessed
+    }
+
+    /**
+     * Gets the field this describes. This has already been made accessible, if permitted.
+     *
+     * @return The field.
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Gets the name of the field.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return field.getName();
+    }
+
+    /**
+     * Gets the declared type of the field.
+     *
+     * @return The type.
+     */
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    /**
+     * Gets the storage kind of the field.
+     *
+     * @return The kind.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the {@link sun.misc.Unsafe} offset of the field.
+     *
+     * @return The offset, or -1 if {@link sun.misc.Unsafe} is unavailable or the field is static.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the {@link Serialized} annotation present on the field.
+     *
+     * @return The annotation, or null if the field is not serialized.
+     */
+    public Serialized getSerialized() {
+        return serialized;
+    }
+}
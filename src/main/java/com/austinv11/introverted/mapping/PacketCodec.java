@@ -0,0 +1,160 @@
+package com.austinv11.introverted.mapping;
+
+import com.austinv11.introverted.networking.Packet;
+import com.austinv11.introverted.networking.PacketBuffer;
+
+/**
+ * This encodes and decodes the {@link Serialized} fields of a specific packet class (the version and type are handled
+ * separately, as they are part of the header).
+ *
+ * Implementations are generated at compile time by the {@code processor} project for every concrete {@link Packet}
+ * subclass, named after the packet class with the {@link #SUFFIX} appended. Classes without a generated codec fall
+ * back to a {@link Reflector} based implementation.
+ *
+ * @param <T> The packet type.
+ */
+public interface PacketCodec<T extends Packet> {
+
+    /**
+     * The suffix appended to a packet's binary name to get the name of its generated codec.
+     */
+    String SUFFIX = "$$IntrovertedCodec";
+
+    /**
+     * Gets the codec for a packet class.
+     *
+     * @param type The packet class.
+     * @return The (cached) generated codec, or a reflection based codec if one has not been generated.
+     */
+    @SuppressWarnings("unchecked") //The cache is keyed by class, so the codec was always created for this type
+    static <T extends Packet> PacketCodec<T> of(Class<T> type) {
+        return (PacketCodec<T>) CodecCache.CODECS.get(type);
+    }
+
+    /**
+     * Creates a new, empty packet instance to decode into (constructors are not invoked).
+     *
+     * @return The new packet.
+     */
+    T newInstance();
+
+    /**
+     * Writes the packet's fields onto a buffer.
+     *
+     * @param packet The packet to encode.
+     * @param buf The buffer to write to, the version and op should already have been written.
+     */
+    void encode(T packet, PacketBuffer buf);
+
+    /**
+     * Reads the packet's fields from a buffer. Fields unknown to the sender are reset to their default values (zero,
+     * false or null), so packets can be decoded into recycled instances.
+     *
+     * @param packet The packet to populate, this may either be a new or a recycled instance.
+     * @param buf The buffer to read from.
+     */
+    void decode(T packet, PacketBuffer buf);
+}
+
+final class CodecCache {
+
+    static final ClassValue<PacketCodec<?>> CODECS = new ClassValue<PacketCodec<?>>() {
+        @Override
+        protected PacketCodec<?> computeValue(Class<?> type) {
+            try {
+                Class<?> generated = Class.forName(type.getName() + PacketCodec.SUFFIX, true, type.getClassLoader());
+                return (PacketCodec<?>) generated.getConstructor().newInstance();
+            } catch (ClassNotFoundException | LinkageError e) { //Not generated, or sun.misc.Unsafe is unavailable
+                return new ReflectionCodec<>(type.asSubclass(Packet.class)); //Only packet classes are looked up
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+}
+
+class ReflectionCodec<T extends Packet> implements PacketCodec<T> {
+
+    private final Class<T> type;
+
+    ReflectionCodec(Class<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public T newInstance() {
+        return Reflector.instance().instantiate(type);
+    }
+
+    @Override
+    public void encode(T packet, PacketBuffer buf) {
+        Reflector reflector = Reflector.instance();
+        for (FieldInfo field : reflector.getSerializedFieldInfo(type)) {
+            boolean unsigned = field.getSerialized().unsigned();
+            switch (field.getKind()) {
+                case BOOLEAN:
+                    buf.put(reflector.getBoolean(packet, field), unsigned);
+                    break;
+                case BYTE:
+                    buf.put(reflector.getByte(packet, field), unsigned);
+                    break;
+                case SHORT:
+                    buf.put(reflector.getShort(packet, field), unsigned);
+                    break;
+                case CHAR:
+                    buf.put(reflector.getChar(packet, field), unsigned);
+                    break;
+                case INT:
+                    buf.put(reflector.getInt(packet, field), unsigned);
+                    break;
+                case LONG:
+                    buf.put(reflector.getLong(packet, field), unsigned);
+                    break;
+                case FLOAT:
+                    buf.put(reflector.getFloat(packet, field), unsigned);
+                    break;
+                case DOUBLE:
+                    buf.put(reflector.getDouble(packet, field), unsigned);
+                    break;
+                default:
+                    buf.put(reflector.getObject(packet, field), unsigned);
+            }
+        }
+    }
+
+    @Override
+    public void decode(T packet, PacketBuffer buf) {
+        Reflector reflector = Reflector.instance();
+        for (FieldInfo field : reflector.getSerializedFieldInfo(type)) {
+            boolean present = buf.hasNext(); //Fields unknown to the sender are reset to their default values
+            switch (field.getKind()) { //Primitives are moved straight from the buffer into the packet
+                case BOOLEAN:
+                    reflector.putBoolean(packet, field, present && buf.getBoolean());
+                    break;
+                case BYTE:
+                    reflector.putByte(packet, field, present ? (byte) buf.getAsInt() : 0);
+                    break;
+                case SHORT:
+                    reflector.putShort(packet, field, present ? (short) buf.getAsInt() : 0);
+                    break;
+                case CHAR:
+                    reflector.putChar(packet, field, present ? buf.getAsChar() : 0);
+                    break;
+                case INT:
+                    reflector.putInt(packet, field, present ? buf.getAsInt() : 0);
+                    break;
+                case LONG:
+                    reflector.putLong(packet, field, present ? buf.getAsLong() : 0);
+                    break;
+                case FLOAT:
+                    reflector.putFloat(packet, field, present ? buf.getAsFloat() : 0);
+                    break;
+                case DOUBLE:
+                    reflector.putDouble(packet, field, present ? buf.getAsDouble() : 0);
+                    break;
+                default:
+                    reflector.putObject(packet, field, present ? buf.getNext(field.getType()) : null);
+            }
+        }
+    }
+}
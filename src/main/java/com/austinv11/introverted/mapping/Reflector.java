@@ -2,13 +2,13 @@ package com.austinv11.introverted.mapping;
 
 import com.austinv11.introverted.networking.Packet;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Common abstraction for different methods of reflecting within Java. This is meant as a utility to allow for platform
@@ -43,27 +43,50 @@ public interface Reflector {
      * @param clazz The class to get the value from.
      * @param obj The instance containing the value.
      * @param name The name of the field to get the value from.
-     * @return The value of the field.
+     * @return The value of the field (boxed if it is a primitive).
      */
-    <T> T get(Class<?> clazz, Object obj, String name);
+    default <T> T get(Class<?> clazz, Object obj, String name) {
+        FieldInfo field = getFieldInfo(clazz, name);
+        switch (field.getKind()) {
+            case BOOLEAN:
+                return (T) (Boolean) getBoolean(obj, field);
+            case BYTE:
+                return (T) (Byte) getByte(obj, field);
+            case SHORT:
+                return (T) (Short) getShort(obj, field);
+            case CHAR:
+                return (T) (Character) getChar(obj, field);
+            case INT:
+                return (T) (Integer) getInt(obj, field);
+            case LONG:
+                return (T) (Long) getLong(obj, field);
+            case FLOAT:
+                return (T) (Float) getFloat(obj, field);
+            case DOUBLE:
+                return (T) (Double) getDouble(obj, field);
+            default:
+                return (T) getObject(obj, field);
+        }
+    }
 
     /**
      * Gets the fields present in a class with the {@link Serialized} annotation.
      *
      * @param clazz The class to scan for fields.
-     * @return The fields found.
+     * @return The (cached, immutable) fields found, sorted by their index.
      */
     default List<Field> getSerializedFields(Class<?> clazz) {
-        List<Field> fieldList = new ArrayList<>();
-        while (!clazz.equals(Packet.class) && !clazz.equals(Object.class)) {
-            for (Field field : clazz.getDeclaredFields()) {
-                if (field.isAnnotationPresent(Serialized.class))
-                    fieldList.add(field);
-            }
-            clazz = clazz.getSuperclass();
-        }
-        fieldList.sort(Comparator.comparingInt(f -> f.getAnnotation(Serialized.class).value()));
-        return fieldList;
+        return ClassInfo.of(clazz).serializedFields;
+    }
+
+    /**
+     * Gets the accessor metadata of the fields present in a class with the {@link Serialized} annotation.
+     *
+     * @param clazz The class to scan for fields.
+     * @return The (cached, immutable) fields found, sorted by their index.
+     */
+    default List<FieldInfo> getSerializedFieldInfo(Class<?> clazz) {
+        return ClassInfo.of(clazz).serialized;
     }
 
     /**
@@ -74,17 +97,19 @@ public interface Reflector {
      * @return The field found.
      */
     default Field getField(Class<?> clazz, String name) {
-        while (!clazz.equals(Object.class)) {
-            try {
-                return clazz.getDeclaredField(name);
-            } catch (NoSuchFieldException e) {
-            }
-            finally {
-                clazz = clazz.getSuperclass();
-            }
-        }
+        FieldInfo info = getFieldInfo(clazz, name);
+        return info == null ? null : info.getField();
+    }
 
-        return null;
+    /**
+     * Gets the accessor metadata for a field name.
+     *
+     * @param clazz The class to search for the field from (superclasses are searched as well).
+     * @param name The name of the field to search for.
+     * @return The (cached) field metadata found, or null if there is no such field.
+     */
+    default FieldInfo getFieldInfo(Class<?> clazz, String name) {
+        return ClassInfo.of(clazz).field(name);
     }
 
     /**
@@ -93,9 +118,393 @@ public interface Reflector {
      * @param clazz The class the field belongs to.
      * @param obj The specific instance to insert the value of the field into.
      * @param name The name of the field to mutate.
+     * @param value The new value for the field (boxed if the field is a primitive).
+     */
+    default <T> void put(Class<?> clazz, Object obj, String name, T value) {
+        FieldInfo field = getFieldInfo(clazz, name);
+        switch (field.getKind()) {
+            case BOOLEAN:
+                putBoolean(obj, field, (Boolean) value);
+                break;
+            case BYTE:
+                putByte(obj, field, (Byte) value);
+                break;
+            case SHORT:
+                putShort(obj, field, (Short) value);
+                break;
+            case CHAR:
+                putChar(obj, field, (Character) value);
+                break;
+            case INT:
+                putInt(obj, field, (Integer) value);
+                break;
+            case LONG:
+                putLong(obj, field, (Long) value);
+                break;
+            case FLOAT:
+                putFloat(obj, field, (Float) value);
+                break;
+            case DOUBLE:
+                putDouble(obj, field, (Double) value);
+                break;
+            default:
+                putObject(obj, field, value);
+        }
+    }
+
+    /**
+     * Gets the value of a boolean field without boxing.
+     *
+     * @param obj The instance containing the value.
+     * @param field The field to get the value from.
+     * @return The value of the field.
+     */
+    boolean getBoolean(Object obj, FieldInfo field);
+
+    /**
+     * Gets the value of a boolean field without boxing.
+     *
+     * @param clazz The class to get the value from.
+     * @param obj The instance containing the value.
+     * @param name The name of the field to get the value from.
+     * @return The value of the field.
+     */
+    default boolean getBoolean(Class<?> clazz, Object obj, String name) {
+        return getBoolean(obj, getFieldInfo(clazz, name));
+    }
+
+    /**
+     * This puts a value into a boolean field without boxing.
+     *
+     * @param obj The specific instance to insert the value of the field into.
+     * @param field The field to mutate.
+     * @param value The new value for the field.
+     */
+    void putBoolean(Object obj, FieldInfo field, boolean value);
+
+    /**
+     * This puts a value into a boolean field without boxing.
+     *
+     * @param clazz The class the field belongs to.
+     * @param obj The specific instance to insert the value of the field into.
+     * @param name The name of the field to mutate.
+     * @param value The new value for the field.
+     */
+    default void putBoolean(Class<?> clazz, Object obj, String name, boolean value) {
+        putBoolean(obj, getFieldInfo(clazz, name), value);
+    }
+
+    /**
+     * Gets the value of a byte field without boxing.
+     *
+     * @param obj The instance containing the value.
+     * @param field The field to get the value from.
+     * @return The value of the field.
+     */
+    byte getByte(Object obj, FieldInfo field);
+
+    /**
+     * Gets the value of a byte field without boxing.
+     *
+     * @param clazz The class to get the value from.
+     * @param obj The instance containing the value.
+     * @param name The name of the field to get the value from.
+     * @return The value of the field.
+     */
+    default byte getByte(Class<?> clazz, Object obj, String name) {
+        return getByte(obj, getFieldInfo(clazz, name));
+    }
+
+    /**
+     * This puts a value into a byte field without boxing.
+     *
+     * @param obj The specific instance to insert the value of the field into.
+     * @param field The field to mutate.
+     * @param value The new value for the field.
+     */
+    void putByte(Object obj, FieldInfo field, byte value);
+
+    /**
+     * This puts a value into a byte field without boxing.
+     *
+     * @param clazz The class the field belongs to.
+     * @param obj The specific instance to insert the value of the field into.
+     * @param name The name of the field to mutate.
+     * @param value The new value for the field.
+     */
+    default void putByte(Class<?> clazz, Object obj, String name, byte value) {
+        putByte(obj, getFieldInfo(clazz, name), value);
+    }
+
+    /**
+     * Gets the value of a short field without boxing.
+     *
+     * @param obj The instance containing the value.
+     * @param field The field to get the value from.
+     * @return The value of the field.
+     */
+    short getShort(Object obj, FieldInfo field);
+
+    /**
+     * Gets the value of a short field without boxing.
+     *
+     * @param clazz The class to get the value from.
+     * @param obj The instance containing the value.
+     * @param name The name of the field to get the value from.
+     * @return The value of the field.
+     */
+    default short getShort(Class<?> clazz, Object obj, String name) {
+        return getShort(obj, getFieldInfo(clazz, name));
+    }
+
+    /**
+     * This puts a value into a short field without boxing.
+     *
+     * @param obj The specific instance to insert the value of the field into.
+     * @param field The field to mutate.
+     * @param value The new value for the field.
+     */
+    void putShort(Object obj, FieldInfo field, short value);
+
+    /**
+     * This puts a value into a short field without boxing.
+     *
+     * @param clazz The class the field belongs to.
+     * @param obj The specific instance to insert the value of the field into.
+     * @param name The name of the field to mutate.
+     * @param value The new value for the field.
+     */
+    default void putShort(Class<?> clazz, Object obj, String name, short value) {
+        putShort(obj, getFieldInfo(clazz, name), value);
+    }
+
+    /**
+     * Gets the value of a char field without boxing.
+     *
+     * @param obj The instance containing the value.
+     * @param field The field to get the value from.
+     * @return The value of the field.
+     */
+    char getChar(Object obj, FieldInfo field);
+
+    /**
+     * Gets the value of a char field without boxing.
+     *
+     * @param clazz The class to get the value from.
+     * @param obj The instance containing the value.
+     * @param name The name of the field to get the value from.
+     * @return The value of the field.
+     */
+    default char getChar(Class<?> clazz, Object obj, String name) {
+        return getChar(obj, getFieldInfo(clazz, name));
+    }
+
+    /**
+     * This puts a value into a char field without boxing.
+     *
+     * @param obj The specific instance to insert the value of the field into.
+     * @param field The field to mutate.
+     * @param value The new value for the field.
+     */
+    void putChar(Object obj, FieldInfo field, char value);
+
+    /**
+     * This puts a value into a char field without boxing.
+     *
+     * @param clazz The class the field belongs to.
+     * @param obj The specific instance to insert the value of the field into.
+     * @param name The name of the field to mutate.
      * @param value The new value for the field.
      */
-    <T> void put(Class<?> clazz, Object obj, String name, T value);
+    default void putChar(Class<?> clazz, Object obj, String name, char value) {
+        putChar(obj, getFieldInfo(clazz, name), value);
+    }
+
+    /**
+     * Gets the value of an int field without boxing.
+     *
+     * @param obj The instance containing the value.
+     * @param field The field to get the value from.
+     * @return The value of the field.
+     */
+    int getInt(Object obj, FieldInfo field);
+
+    /**
+     * Gets the value of an int field without boxing.
+     *
+     * @param clazz The class to get the value from.
+     * @param obj The instance containing the value.
+     * @param name The name of the field to get the value from.
+     * @return The value of the field.
+     */
+    default int getInt(Class<?> clazz, Object obj, String name) {
+        return getInt(obj, getFieldInfo(clazz, name));
+    }
+
+    /**
+     * This puts a value into an int field without boxing.
+     *
+     * @param obj The specific instance to insert the value of the field into.
+     * @param field The field to mutate.
+     * @param value The new value for the field.
+     */
+    void putInt(Object obj, FieldInfo field, int value);
+
+    /**
+     * This puts a value into an int field without boxing.
+     *
+     * @param clazz The class the field belongs to.
+     * @param obj The specific instance to insert the value of the field into.
+     * @param name The name of the field to mutate.
+     * @param value The new value for the field.
+     */
+    default void putInt(Class<?> clazz, Object obj, String name, int value) {
+        putInt(obj, getFieldInfo(clazz, name), value);
+    }
+
+    /**
+     * Gets the value of a long field without boxing.
+     *
+     * @param obj The instance containing the value.
+     * @param field The field to get the value from.
+     * @return The value of the field.
+     */
+    long getLong(Object obj, FieldInfo field);
+
+    /**
+     * Gets the value of a long field without boxing.
+     *
+     * @param clazz The class to get the value from.
+     * @param obj The instance containing the value.
+     * @param name The name of the field to get the value from.
+     * @return The value of the field.
+     */
+    default long getLong(Class<?> clazz, Object obj, String name) {
+        return getLong(obj, getFieldInfo(clazz, name));
+    }
+
+    /**
+     * This puts a value into a long field without boxing.
+     *
+     * @param obj The specific instance to insert the value of the field into.
+     * @param field The field to mutate.
+     * @param value The new value for the field.
+     */
+    void putLong(Object obj, FieldInfo field, long value);
+
+    /**
+     * This puts a value into a long field without boxing.
+     *
+     * @param clazz The class the field belongs to.
+     * @param obj The specific instance to insert the value of the field into.
+     * @param name The name of the field to mutate.
+     * @param value The new value for the field.
+     */
+    default void putLong(Class<?> clazz, Object obj, String name, long value) {
+        putLong(obj, getFieldInfo(clazz, name), value);
+    }
+
+    /**
+     * Gets the value of a float field without boxing.
+     *
+     * @param obj The instance containing the value.
+     * @param field The field to get the value from.
+     * @return The value of the field.
+     */
+    float getFloat(Object obj, FieldInfo field);
+
+    /**
+     * Gets the value of a float field without boxing.
+     *
+     * @param clazz The class to get the value from.
+     * @param obj The instance containing the value.
+     * @param name The name of the field to get the value from.
+     * @return The value of the field.
+     */
+    default float getFloat(Class<?> clazz, Object obj, String name) {
+        return getFloat(obj, getFieldInfo(clazz, name));
+    }
+
+    /**
+     * This puts a value into a float field without boxing.
+     *
+     * @param obj The specific instance to insert the value of the field into.
+     * @param field The field to mutate.
+     * @param value The new value for the field.
+     */
+    void putFloat(Object obj, FieldInfo field, float value);
+
+    /**
+     * This puts a value into a float field without boxing.
+     *
+     * @param clazz The class the field belongs to.
+     * @param obj The specific instance to insert the value of the field into.
+     * @param name The name of the field to mutate.
+     * @param value The new value for the field.
+     */
+    default void putFloat(Class<?> clazz, Object obj, String name, float value) {
+        putFloat(obj, getFieldInfo(clazz, name), value);
+    }
+
+    /**
+     * Gets the value of a double field without boxing.
+     *
+     * @param obj The instance containing the value.
+     * @param field The field to get the value from.
+     * @return The value of the field.
+     */
+    double getDouble(Object obj, FieldInfo field);
+
+    /**
+     * Gets the value of a double field without boxing.
+     *
+     * @param clazz The class to get the value from.
+     * @param obj The instance containing the value.
+     * @param name The name of the field to get the value from.
+     * @return The value of the field.
+     */
+    default double getDouble(Class<?> clazz, Object obj, String name) {
+        return getDouble(obj, getFieldInfo(clazz, name));
+    }
+
+    /**
+     * This puts a value into a double field without boxing.
+     *
+     * @param obj The specific instance to insert the value of the field into.
+     * @param field The field to mutate.
+     * @param value The new value for the field.
+     */
+    void putDouble(Object obj, FieldInfo field, double value);
+
+    /**
+     * This puts a value into a double field without boxing.
+     *
+     * @param clazz The class the field belongs to.
+     * @param obj The specific instance to insert the value of the field into.
+     * @param name The name of the field to mutate.
+     * @param value The new value for the field.
+     */
+    default void putDouble(Class<?> clazz, Object obj, String name, double value) {
+        putDouble(obj, getFieldInfo(clazz, name), value);
+    }
+
+    /**
+     * Gets the value of a reference field.
+     *
+     * @param obj The instance containing the value.
+     * @param field The field to get the value from.
+     * @return The value of the field.
+     */
+    Object getObject(Object obj, FieldInfo field);
+
+    /**
+     * This puts a value into a reference field.
+     *
+     * @param obj The specific instance to insert the value of the field into.
+     * @param field The field to mutate.
+     * @param value The new value for the field.
+     */
+    void putObject(Object obj, FieldInfo field, Object value);
 
     /**
      * This attempts to generate a new primitive with its default value from a primitive (or wrapper) class..
@@ -178,56 +587,98 @@ class UnsafeReflector implements Reflector {
         unsafe = (sun.misc.Unsafe) theUnsafe.get(null);
     }
 
+    long offset(Field field) {
+        return unsafe.objectFieldOffset(field);
+    }
+
     @Override
-    public <T> T get(Class<?> clazz, Object obj, String name) {
-        Field field = getField(clazz, name);
-        if (int.class.equals(field.getType())) {
-            return (T) (Integer) unsafe.getInt(obj, unsafe.objectFieldOffset(field));
-        } else if (long.class.equals(field.getType())) {
-            return (T) (Long) unsafe.getLong(obj, unsafe.objectFieldOffset(field));
-        } else if (double.class.equals(field.getType())) {
-            return (T) (Double) unsafe.getDouble(obj, unsafe.objectFieldOffset(field));
-        } else if (void.class.equals(field.getType())) {
-            return null;
-        } else if (float.class.equals(field.getType())) {
-            return (T) (Float) unsafe.getFloat(obj, unsafe.objectFieldOffset(field));
-        } else if (byte.class.equals(field.getType())) {
-            return (T) (Byte) unsafe.getByte(obj, unsafe.objectFieldOffset(field));
-        } else if (char.class.equals(field.getType())) {
-            return (T) (Character) unsafe.getChar(obj, unsafe.objectFieldOffset(field));
-        } else if (boolean.class.equals(field.getType())) {
-            return (T) (Boolean) unsafe.getBoolean(obj, unsafe.objectFieldOffset(field));
-        } else if (short.class.equals(field.getType())) {
-            return (T) (Short) unsafe.getShort(obj, unsafe.objectFieldOffset(field));
-        } else {
-            return (T) unsafe.getObject(obj, unsafe.objectFieldOffset(field));
-        }
+    public boolean getBoolean(Object obj, FieldInfo field) {
+        return unsafe.getBoolean(obj, field.getOffset());
     }
 
     @Override
-    public <T> void put(Class<?> clazz, Object obj, String name, T value) {
-        Field field = getField(clazz, name);
-        if (int.class.equals(field.getType())) {
-            unsafe.putInt(obj, unsafe.objectFieldOffset(field), (Integer) value);
-        } else if (long.class.equals(field.getType())) {
-            unsafe.putLong(obj, unsafe.objectFieldOffset(field), (Long) value);
-        } else if (double.class.equals(field.getType())) {
-            unsafe.putDouble(obj, unsafe.objectFieldOffset(field), (Double) value);
-        } else if (void.class.equals(field.getType())) {
-            //Pass
-        } else if (float.class.equals(field.getType())) {
-            unsafe.putFloat(obj, unsafe.objectFieldOffset(field), (Float) value);
-        } else if (byte.class.equals(field.getType())) {
-            unsafe.putByte(obj, unsafe.objectFieldOffset(field), (Byte) value);
-        } else if (char.class.equals(field.getType())) {
-            unsafe.putChar(obj, unsafe.objectFieldOffset(field), (Character) value);
-        } else if (boolean.class.equals(field.getType())) {
-            unsafe.putBoolean(obj, unsafe.objectFieldOffset(field), (Boolean) value);
-        } else if (short.class.equals(field.getType())) {
-            unsafe.putShort(obj, unsafe.objectFieldOffset(field), (Short) value);
-        } else {
-            unsafe.putObject(obj, unsafe.objectFieldOffset(field), value);
-        }
+    public void putBoolean(Object obj, FieldInfo field, boolean value) {
+        unsafe.putBoolean(obj, field.getOffset(), value);
+    }
+
+    @Override
+    public byte getByte(Object obj, FieldInfo field) {
+        return unsafe.getByte(obj, field.getOffset());
+    }
+
+    @Override
+    public void putByte(Object obj, FieldInfo field, byte value) {
+        unsafe.putByte(obj, field.getOffset(), value);
+    }
+
+    @Override
+    public short getShort(Object obj, FieldInfo field) {
+        return unsafe.getShort(obj, field.getOffset());
+    }
+
+    @Override
+    public void putShort(Object obj, FieldInfo field, short value) {
+        unsafe.putShort(obj, field.getOffset(), value);
+    }
+
+    @Override
+    public char getChar(Object obj, FieldInfo field) {
+        return unsafe.getChar(obj, field.getOffset());
+    }
+
+    @Override
+    public void putChar(Object obj, FieldInfo field, char value) {
+        unsafe.putChar(obj, field.getOffset(), value);
+    }
+
+    @Override
+    public int getInt(Object obj, FieldInfo field) {
+        return unsafe.getInt(obj, field.getOffset());
+    }
+
+    @Override
+    public void putInt(Object obj, FieldInfo field, int value) {
+        unsafe.putInt(obj, field.getOffset(), value);
+    }
+
+    @Override
+    public long getLong(Object obj, FieldInfo field) {
+        return unsafe.getLong(obj, field.getOffset());
+    }
+
+    @Override
+    public void putLong(Object obj, FieldInfo field, long value) {
+        unsafe.putLong(obj, field.getOffset(), value);
+    }
+
+    @Override
+    public float getFloat(Object obj, FieldInfo field) {
+        return unsafe.getFloat(obj, field.getOffset());
+    }
+
+    @Override
+    public void putFloat(Object obj, FieldInfo field, float value) {
+        unsafe.putFloat(obj, field.getOffset(), value);
+    }
+
+    @Override
+    public double getDouble(Object obj, FieldInfo field) {
+        return unsafe.getDouble(obj, field.getOffset());
+    }
+
+    @Override
+    public void putDouble(Object obj, FieldInfo field, double value) {
+        unsafe.putDouble(obj, field.getOffset(), value);
+    }
+
+    @Override
+    public Object getObject(Object obj, FieldInfo field) {
+        return unsafe.getObject(obj, field.getOffset());
+    }
+
+    @Override
+    public void putObject(Object obj, FieldInfo field, Object value) {
+        unsafe.putObject(obj, field.getOffset(), value);
     }
 
     @Override
@@ -255,63 +706,163 @@ class ReflectionReflector implements Reflector {
     }
 
     @Override
-    public <T> T get(Class<?> clazz, Object obj, String name) {
-        Field field = getField(clazz, name);
+    public boolean getBoolean(Object obj, FieldInfo field) {
         try {
-            field.setAccessible(true);
-            if (int.class.equals(field.getType())) {
-                return (T) (Integer) field.getInt(obj);
-            } else if (long.class.equals(field.getType())) {
-                return (T) (Long) field.getLong(obj);
-            } else if (double.class.equals(field.getType())) {
-                return (T) (Double) field.getDouble(obj);
-            } else if (void.class.equals(field.getType())) {
-                return null;
-            } else if (float.class.equals(field.getType())) {
-                return (T) (Float) field.getFloat(obj);
-            } else if (byte.class.equals(field.getType())) {
-                return (T) (Byte) field.getByte(obj);
-            } else if (char.class.equals(field.getType())) {
-                return (T) (Character) field.getChar(obj);
-            } else if (boolean.class.equals(field.getType())) {
-                return (T) (Boolean) field.getBoolean(obj);
-            } else if (short.class.equals(field.getType())) {
-                return (T) (Short) field.getShort(obj);
-            } else {
-                return (T) field.get(obj);
-            }
-        } catch (Exception e) {
+            return field.getField().getBoolean(obj); //Already accessible
+        } catch (IllegalAccessException e) {
             throw new RuntimeException(e);
         }
     }
 
     @Override
-    public <T> void put(Class<?> clazz, Object obj, String name, T value) {
-        Field field = getField(clazz, name);
+    public void putBoolean(Object obj, FieldInfo field, boolean value) {
         try {
-            field.setAccessible(true);
-            if (int.class.equals(field.getType())) {
-                field.setInt(obj, (Integer) value);
-            } else if (long.class.equals(field.getType())) {
-                field.setLong(obj, (Long) value);
-            } else if (double.class.equals(field.getType())) {
-                field.setDouble(obj, (Double) value);
-            } else if (void.class.equals(field.getType())) {
-                //Pass
-            } else if (float.class.equals(field.getType())) {
-                field.setFloat(obj, (Float) value);
-            } else if (byte.class.equals(field.getType())) {
-                field.setByte(obj, (Byte) value);
-            } else if (char.class.equals(field.getType())) {
-                field.setChar(obj, (Character) value);
-            } else if (boolean.class.equals(field.getType())) {
-                field.setBoolean(obj, (Boolean) value);
-            } else if (short.class.equals(field.getType())) {
-                field.setShort(obj, (Short) value);
-            } else {
-                field.set(obj, value);
-            }
-        } catch (Exception e) {
+            field.getField().setBoolean(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public byte getByte(Object obj, FieldInfo field) {
+        try {
+            return field.getField().getByte(obj); //Already accessible
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void putByte(Object obj, FieldInfo field, byte value) {
+        try {
+            field.getField().setByte(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public short getShort(Object obj, FieldInfo field) {
+        try {
+            return field.getField().getShort(obj); //Already accessible
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void putShort(Object obj, FieldInfo field, short value) {
+        try {
+            field.getField().setShort(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public char getChar(Object obj, FieldInfo field) {
+        try {
+            return field.getField().getChar(obj); //Already accessible
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void putChar(Object obj, FieldInfo field, char value) {
+        try {
+            field.getField().setChar(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int getInt(Object obj, FieldInfo field) {
+        try {
+            return field.getField().getInt(obj); //Already accessible
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void putInt(Object obj, FieldInfo field, int value) {
+        try {
+            field.getField().setInt(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public long getLong(Object obj, FieldInfo field) {
+        try {
+            return field.getField().getLong(obj); //Already accessible
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void putLong(Object obj, FieldInfo field, long value) {
+        try {
+            field.getField().setLong(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public float getFloat(Object obj, FieldInfo field) {
+        try {
+            return field.getField().getFloat(obj); //Already accessible
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void putFloat(Object obj, FieldInfo field, float value) {
+        try {
+            field.getField().setFloat(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public double getDouble(Object obj, FieldInfo field) {
+        try {
+            return field.getField().getDouble(obj); //Already accessible
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void putDouble(Object obj, FieldInfo field, double value) {
+        try {
+            field.getField().setDouble(obj, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Object getObject(Object obj, FieldInfo field) {
+        try {
+            return field.getField().get(obj);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void putObject(Object obj, FieldInfo field, Object value) {
+        try {
+            field.getField().set(obj, value);
+        } catch (IllegalAccessException e) {
             throw new RuntimeException(e);
         }
     }
@@ -331,3 +882,70 @@ class ReflectionReflector implements Reflector {
         }
     }
 }
+
+final class ClassInfo { //Resolved once per class, ClassValue takes care of publishing it safely
+
+    private static final ClassValue<ClassInfo> CACHE = new ClassValue<ClassInfo>() {
+        @Override
+        protected ClassInfo computeValue(Class<?> type) {
+            return new ClassInfo(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final ConcurrentMap<String, Optional<FieldInfo>> fields = new ConcurrentHashMap<>(); //Resolved on demand
+    final List<FieldInfo> serialized;
+    final List<Field> serializedFields;
+
+    static ClassInfo of(Class<?> clazz) {
+        return CACHE.get(clazz);
+    }
+
+    private ClassInfo(Class<?> type) {
+        List<FieldInfo> serialized = new ArrayList<>();
+        for (Class<?> clazz = type; clazz != null && !clazz.equals(Object.class); clazz = clazz.getSuperclass()) {
+            if (clazz.equals(Packet.class)) //Packet's own fields are part of the header
+                break;
+
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Serialized.class)) //Other fields (i.e. of JDK classes) may not even be accessible
+                    serialized.add(_info(field));
+            }
+        }
+        serialized.sort(Comparator.comparingInt(f -> f.getSerialized().value()));
+
+        List<Field> serializedFields = new ArrayList<>(serialized.size());
+        for (FieldInfo info : serialized)
+            serializedFields.add(info.getField());
+
+        this.type = type;
+        this.serialized = Collections.unmodifiableList(serialized);
+        this.serializedFields = Collections.unmodifiableList(serializedFields);
+    }
+
+    private static FieldInfo _info(Field field) {
+        long offset = UnsafeReflector.isUnsafeAvailable() && !Modifier.isStatic(field.getModifiers())
+                ? UnsafeReflector.instance().offset(field) : -1;
+        return new FieldInfo(field, offset);
+    }
+
+    FieldInfo field(String name) {
+        return fields.computeIfAbsent(name, this::_resolve).orElse(null);
+    }
+
+    private Optional<FieldInfo> _resolve(String name) {
+        for (Class<?> clazz = type; clazz != null && !clazz.equals(Object.class); clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) { //Subclass fields shadow superclass fields
+                if (!field.getName().equals(name))
+                    continue;
+
+                for (FieldInfo info : serialized) {
+                    if (info.getField().equals(field))
+                        return Optional.of(info);
+                }
+                return Optional.of(_info(field));
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,100 @@
+package com.austinv11.introverted.networking;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * This is a simple, size-classed pool of {@link ByteBuffer}s used to avoid allocating new buffers for every packet.
+ *
+ * Buffers are bucketed by powers of two, requests are rounded up to the nearest size class. Requests larger than the
+ * largest size class are simply allocated and are never retained.
+ *
+ * Instances are <b>not</b> thread safe, pools are meant to be owned by a single connection (or thread, see
+ * {@link #local()}).
+ */
+public class BufferPool {
+
+    private static final int MIN_SIZE_CLASS = 6; //64 bytes
+    private static final int MAX_SIZE_CLASS = 20; //1 MiB
+    private static final int MAX_RETAINED_PER_CLASS = 8;
+
+    private static final ThreadLocal<BufferPool> LOCAL = ThreadLocal.withInitial(BufferPool::new);
+
+    private final ArrayDeque<ByteBuffer>[] sizeClasses;
+    private final boolean direct;
+
+    /**
+     * Gets the pool belonging to the current thread.
+     *
+     * @return The thread local pool.
+     */
+    public static BufferPool local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Creates a new buffer pool.
+     *
+     * @param direct When true, the pool hands out direct buffers rather than heap buffers.
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(boolean direct) {
+        this.direct = direct;
+        this.sizeClasses = (ArrayDeque<ByteBuffer>[]) new ArrayDeque<?>[MAX_SIZE_CLASS - MIN_SIZE_CLASS + 1];
+        for (int i = 0; i < sizeClasses.length; i++)
+            sizeClasses[i] = new ArrayDeque<>(MAX_RETAINED_PER_CLASS);
+    }
+
+    /**
+     * Creates a new buffer pool which hands out heap buffers.
+     */
+    public BufferPool() {
+        this(false);
+    }
+
+    private static int sizeClass(int capacity) {
+        int sizeClass = 32 - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1);
+        return Math.max(sizeClass, MIN_SIZE_CLASS);
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Gets a cleared buffer which is at least as large as the requested capacity.
+     *
+     * @param minCapacity The minimum capacity of the buffer.
+     * @return The buffer, this should be passed to {@link #release(ByteBuffer)} once it is no longer needed.
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        int sizeClass = sizeClass(minCapacity);
+        if (sizeClass > MAX_SIZE_CLASS)
+            return allocate(minCapacity);
+
+        ByteBuffer buffer = sizeClasses[sizeClass - MIN_SIZE_CLASS].pollFirst();
+        if (buffer == null)
+            return allocate(1 << sizeClass);
+
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool so that it can be reused.
+     *
+     * <b>NOTE:</b> The buffer must not be used by the caller after it has been released.
+     *
+     * @param buffer The buffer to recycle.
+     */
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        int sizeClass = sizeClass(capacity);
+        if (buffer.isDirect() != direct || capacity != 1 << sizeClass || sizeClass > MAX_SIZE_CLASS)
+            return; //Not one of ours, smaller buffers would be handed out for a larger size class
+
+        ArrayDeque<ByteBuffer> pooled = sizeClasses[sizeClass - MIN_SIZE_CLASS];
+        if (pooled.size() < MAX_RETAINED_PER_CLASS)
+            pooled.offerFirst(buffer);
+    }
+}
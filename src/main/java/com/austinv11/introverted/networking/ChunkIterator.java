@@ -0,0 +1,152 @@
+package com.austinv11.introverted.networking;
+
+import com.austinv11.introverted.networking.packets.ChunkPacket;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * This receives a chunked stream, exposing its elements as the chunks arrive. Iterating blocks until the next chunk is
+ * received, so elements can be processed before the sender has finished.
+ *
+ * At most {@link #DEFAULT_CAPACITY} (or the provided capacity) chunks are buffered, once full the connection stops
+ * reading until the iterating thread catches up. So memory usage stays constant regardless of the stream's size, but
+ * the elements must be iterated on a different thread than the one packets are dispatched on.
+ *
+ * <b>NOTE:</b> Waiting for the iterating thread blocks the dispatching thread, so streams can't be received by servers
+ * whose connections are served by event loops (see {@link PacketReactor}), which reject this.
+ *
+ * A stream is identified by its id together with the connection it is received through, so the streams of different
+ * clients of a server never mix even if their ids collide.
+ *
+ * @see PacketHandler#receiveChunked()
+ */
+public class ChunkIterator implements Iterator<Object>, ConnectionConsumer, PacketFilter {
+
+    /**
+     * The default maximum amount of chunks buffered before the connection stops reading.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static final Object[] END = new Object[0];
+    private static final Object[] BROKEN = new Object[0]; //Chunks were missed, so the stream cannot be completed
+
+    private final PacketHandler handler;
+    private final BlockingQueue<Object[]> chunks;
+    private boolean bound; //Guarded by this, as each connection may be dispatched on its own thread
+    private PacketSocket connection;
+    private long id;
+    private int sequence;
+    private Object[] current = new Object[0]; //Only accessed by the iterating thread
+    private int index = 0;
+    private boolean done = false;
+    private boolean broken = false; //Sticky, as nothing more will ever be queued
+
+    /**
+     * Creates an iterator for a specific stream, it should be registered with
+     * {@link PacketHandler#handle(Consumer)} before the stream is started.
+     *
+     * @param handler The handler receiving the stream.
+     * @param id The id of the stream.
+     * @param capacity The maximum amount of chunks to buffer.
+     */
+    public ChunkIterator(PacketHandler handler, long id, int capacity) {
+        this(handler, capacity);
+        this.bound = true;
+        this.id = id;
+    }
+
+    /**
+     * Creates an iterator for the next stream which is started, it should be registered with
+     * {@link PacketHandler#handle(Consumer)}.
+     *
+     * @param handler The handler receiving the stream.
+     * @param capacity The maximum amount of chunks to buffer.
+     */
+    public ChunkIterator(PacketHandler handler, int capacity) {
+        this.handler = handler;
+        this.chunks = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public boolean isInterested(PacketType type) {
+        return type == PacketType.CHUNK;
+    }
+
+    @Override
+    public void accept(PacketSocket connection, Packet packet) {
+        ChunkPacket chunk = (ChunkPacket) packet;
+        boolean missed;
+        synchronized (this) { //Only the bound connection's thread gets past this, so chunks are still queued in order
+            if (!bound) {
+                if (chunk.getSequence() != 0) //Already in progress
+                    return;
+
+                bound = true;
+                id = chunk.getId();
+                this.connection = connection;
+            } else if (chunk.getId() != id) {
+                return;
+            } else if (this.connection == null) { //Bound to an id up front, so the first connection sending it wins
+                this.connection = connection;
+            } else if (connection != this.connection) {
+                return;
+            }
+
+            missed = chunk.getSequence() != sequence++;
+        }
+
+        if (missed || chunk.isLast())
+            handler.unregisterPacketConsumer(this);
+
+        try { //The elements are queued rather than the chunk itself, so recycled chunks are safe
+            if (missed) {
+                chunks.put(BROKEN);
+                return;
+            }
+
+            chunks.put(chunk.getElements());
+            if (chunk.isLast())
+                chunks.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks if another element will be received, blocking until the next chunk arrives if needed.
+     *
+     * @return True if there are more elements, false if the stream has ended.
+     *
+     * @throws IllegalStateException If chunks of the stream were missed, this is thrown by every later call as well.
+     */
+    @Override
+    public boolean hasNext() {
+        while (index == current.length) {
+            if (done)
+                return false;
+            if (broken)
+                throw new IllegalStateException(String.format("Chunks of stream %d were missed!", id));
+
+            try {
+                current = chunks.take();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            broken = current == BROKEN;
+            index = 0;
+            done = current == END;
+        }
+        return true;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return current[index++];
+    }
+}
@@ -0,0 +1,27 @@
+package com.austinv11.introverted.networking;
+
+import java.util.function.Consumer;
+
+/**
+ * This is a packet consumer which is told the connection each packet was received through, i.e. to tell apart the
+ * packets of different clients connected to a server. Consumers registered with a {@link PacketHandler} may implement
+ * this instead of only {@link Consumer}.
+ *
+ * @see PacketDispatcher#dispatch(PacketSocket, LazyPacket)
+ */
+@FunctionalInterface
+public interface ConnectionConsumer extends Consumer<Packet> {
+
+    /**
+     * Consumes a packet.
+     *
+     * @param connection The connection the packet was received through, or null if unknown.
+     * @param packet The packet.
+     */
+    void accept(PacketSocket connection, Packet packet);
+
+    @Override
+    default void accept(Packet packet) {
+        accept(null, packet);
+    }
+}
@@ -0,0 +1,209 @@
+package com.austinv11.introverted.networking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This compresses and decompresses frame payloads with Deflate (see {@link ProtocolFeature#COMPRESSION}).
+ *
+ * The {@link Deflater}/{@link Inflater} instances are reused, so instances are <b>not</b> meant to be shared between
+ * threads. They hold native memory until {@link #close()} is called.
+ */
+public class FrameCompressor implements Closeable {
+
+    /**
+     * The default minimum payload size (in bytes) for which compression is attempted.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    static final byte FLAG_COMPRESSED = (byte) 0x80;
+
+    private static final int HEADER_SIZE = 6;
+    private static final int MAX_RETAINED_SCRATCH = 1 << 20;
+    private static final int MAX_INFLATION_RATIO = 1032; //The best Deflate can possibly do
+
+    /**
+     * The preset dictionary shared by all implementations, it contains tokens common in Introverted payloads (the
+     * most common tokens are at the end).
+     */
+    private static final byte[] DICTIONARY = ("TERMINATEDTIMED_WAITINGBLOCKEDWAITINGRUNNABLENEWJVM-heavyJVM-light" +
+            "java.util.concurrent.java.util.java.lang.reflect.java.lang.Objectjava.lang.Stringjava.lang.Thread" +
+            "com.austinv11.introverted.").getBytes(StandardCharsets.UTF_8);
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private final int threshold;
+    private byte[] scratch = new byte[0];
+    private boolean isClosed = false;
+
+    /**
+     * Creates a frame compressor.
+     *
+     * @param threshold The minimum payload size (in bytes) for which compression is attempted.
+     */
+    public FrameCompressor(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Creates a frame compressor with the {@link #DEFAULT_THRESHOLD}.
+     */
+    public FrameCompressor() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Gets the minimum payload size (in bytes) for which compression is attempted.
+     *
+     * @return The threshold.
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Attempts to compress a frame and write it to an output stream.
+     *
+     * @param frame The frame to compress (index 0 is the start of the frame).
+     * @param length The length of the frame, including its header.
+     * @param out The stream to write the compressed frame to.
+     * @param compactHeader Whether the compressed frame should be written with a compact (version 2) header.
+     * @return True if the compressed frame was written, false if compression did not pay off and nothing was written.
+     *
+     * @throws IOException
+     */
+    public synchronized boolean compress(ByteBuffer frame, int length, OutputStream out, boolean compactHeader) throws IOException {
+        if (isClosed)
+            throw new IOException("The compressor has been closed!");
+
+        int payload = length - HEADER_SIZE;
+        if (payload < threshold || !frame.hasArray())
+            return false;
+
+        if (scratch.length < length)
+            scratch = new byte[length];
+
+        try {
+            deflater.reset();
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(frame.array(), frame.arrayOffset() + HEADER_SIZE, payload);
+            deflater.finish();
+
+            int compressed = HEADER_SIZE + 4; //Leave room for the header and the uncompressed length
+            while (!deflater.finished() && compressed < length) //Give up once it stops paying off
+                compressed += deflater.deflate(scratch, compressed, length - compressed);
+
+            if (!deflater.finished())
+                return false;
+
+            ByteBuffer header = ByteBuffer.wrap(scratch);
+            header.put(0, (byte) (frame.get(0) | FLAG_COMPRESSED));
+            header.put(1, frame.get(1));
+            header.putInt(2, compressed - HEADER_SIZE);
+            header.putInt(HEADER_SIZE, payload);
+            int start = compactHeader ? PacketBuffer.compactHeader(header) : 0;
+            out.write(scratch, start, compressed - start);
+            return true;
+        } finally {
+            if (scratch.length > MAX_RETAINED_SCRATCH)
+                scratch = new byte[0];
+        }
+    }
+
+    /**
+     * Checks if a frame was compressed.
+     *
+     * @param frame The frame.
+     * @return True if the frame needs to be decompressed, false if otherwise.
+     */
+    public static boolean isCompressed(PacketFrame frame) {
+        return (frame.getBuffer().get(0) & FLAG_COMPRESSED) != 0;
+    }
+
+    /**
+     * Decompresses a compressed frame. The compressed frame is released.
+     *
+     * @param frame The compressed frame.
+     * @param pool The pool to acquire the decompressed frame's storage from.
+     * @return The decompressed frame.
+     *
+     * @throws IOException When the frame could not be decompressed, or its uncompressed size is larger than its
+     * compressed payload could possibly inflate to.
+     */
+    public synchronized PacketFrame decompress(PacketFrame frame, BufferPool pool) throws IOException {
+        ByteBuffer compressed = frame.getBuffer();
+        int inputLength = frame.getLength() - HEADER_SIZE - 4;
+        int size = inputLength < 0 ? -1 : compressed.getInt(HEADER_SIZE);
+        if (isClosed || size < 0 || size > Math.min((long) inputLength * MAX_INFLATION_RATIO, Integer.MAX_VALUE - HEADER_SIZE)) {
+            frame.release();
+            throw new IOException(isClosed ? "The compressor has been closed!" : "Unable to decode packet!");
+        }
+
+        ByteBuffer decompressed = pool.acquire(size + HEADER_SIZE);
+        decompressed.put(0, (byte) (compressed.get(0) & ~FLAG_COMPRESSED));
+        decompressed.put(1, compressed.get(1));
+        decompressed.putInt(2, size);
+
+        try {
+            inflater.reset();
+            if (compressed.hasArray()) {
+                inflater.setInput(compressed.array(), compressed.arrayOffset() + HEADER_SIZE + 4, inputLength);
+            } else {
+                byte[] input = new byte[inputLength];
+                ByteBuffer view = compressed.duplicate();
+                view.limit(frame.getLength()).position(HEADER_SIZE + 4);
+                view.get(input);
+                inflater.setInput(input);
+            }
+
+            byte[] output = decompressed.hasArray() ? decompressed.array() : new byte[size + HEADER_SIZE];
+            int offset = decompressed.hasArray() ? decompressed.arrayOffset() : 0;
+            int inflated = 0;
+            while (inflated < size && !inflater.finished()) {
+                int count = inflater.inflate(output, offset + HEADER_SIZE + inflated, size - inflated);
+                if (count == 0) {
+                    if (inflater.needsDictionary())
+                        inflater.setDictionary(DICTIONARY);
+                    else if (inflater.needsInput())
+                        throw new IOException("Truncated compressed packet!");
+                }
+                inflated += count;
+            }
+
+            if (inflated != size)
+                throw new IOException("Compressed packet size mismatch!");
+
+            if (!decompressed.hasArray()) {
+                ByteBuffer view = decompressed.duplicate();
+                view.clear().position(HEADER_SIZE);
+                view.put(output, HEADER_SIZE, size);
+            }
+        } catch (DataFormatException e) {
+            pool.release(decompressed);
+            throw new IOException(e);
+        } finally {
+            frame.release();
+        }
+
+        return new PacketFrame(decompressed, size + HEADER_SIZE, pool);
+    }
+
+    /**
+     * Releases the native memory of the compressor, it can no longer be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (isClosed)
+            return;
+
+        isClosed = true;
+        deflater.end();
+        inflater.end();
+    }
+}
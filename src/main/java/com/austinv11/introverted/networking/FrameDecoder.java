@@ -0,0 +1,174 @@
+package com.austinv11.introverted.networking;
+
+import com.austinv11.introverted.common.Introverted;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * This is an incremental decoder which splits a stream of bytes into {@link PacketFrame}s.
+ *
+ * Bytes may be fed in arbitrarily sized pieces (i.e. headers split across reads are handled properly), and many small
+ * frames can be parsed out of a single read. Instances are <b>not</b> thread safe.
+ *
+ * Frames received with a compact (version 2) header are normalized to the version 1 layout, so every
+ * {@link PacketFrame} starts with a 6 byte header regardless of how it was received. The same goes for empty frames
+ * sent by version 1 implementations, which consist of only the version and the opcode.
+ */
+public class FrameDecoder {
+
+    private static final int HEADER_SIZE = 6;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_COMPACT_HEADER_SIZE = 6;
+
+    private final BufferPool pool;
+    private final ByteBuffer input; //Always kept in "read mode", the remaining bytes have yet to be parsed
+    private ByteBuffer partial; //The frame currently being assembled, if any
+    private int partialLength;
+    private byte protocolVersion = Introverted.MIN_VERSION;
+
+    /**
+     * Creates a new frame decoder.
+     *
+     * @param pool The pool to acquire frame storage from.
+     */
+    public FrameDecoder(BufferPool pool) {
+        this.pool = pool;
+        this.input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        this.input.flip();
+    }
+
+    /**
+     * Sets the negotiated protocol version, which determines how the headers of the following frames are parsed.
+     *
+     * @param protocolVersion The protocol version, defaults to {@link Introverted#MIN_VERSION}.
+     */
+    public void setProtocolVersion(byte protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    /**
+     * Reads as many bytes as are currently available from a channel.
+     *
+     * @param channel The channel to read from.
+     * @return The amount of bytes read, or -1 if the channel has reached the end of its stream.
+     *
+     * @throws IOException
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        if (partial != null && !input.hasRemaining()) { //Large frames can be read straight into their storage
+            partial.limit(partialLength);
+            return channel.read(partial);
+        }
+
+        input.compact();
+        try {
+            return channel.read(input);
+        } finally {
+            input.flip();
+        }
+    }
+
+    /**
+     * Feeds bytes into the decoder which were received through other means. Only as many bytes as can currently be
+     * buffered are consumed, so callers should alternate between this and {@link #nextFrame()} until the bytes are
+     * drained.
+     *
+     * @param bytes The bytes to consume.
+     */
+    public void feed(ByteBuffer bytes) {
+        input.compact();
+        int count = Math.min(input.remaining(), bytes.remaining());
+        int limit = bytes.limit();
+        bytes.limit(bytes.position() + count);
+        input.put(bytes);
+        bytes.limit(limit);
+        input.flip();
+    }
+
+    /**
+     * Attempts to parse the next frame out of the bytes received so far.
+     *
+     * @return The next complete frame, or null if more bytes are required. The frame should be released once it has
+     * been processed.
+     *
+     * @throws IOException When the received data does not represent a valid frame.
+     */
+    public PacketFrame nextFrame() throws IOException {
+        if (partial == null) {
+            if (protocolVersion >= PacketBuffer.COMPACT_HEADER_VERSION) {
+                if (!_startCompactFrame())
+                    return null;
+            } else if (_isLegacyEmptyFrame()) { //Version 1 implementations omit the length of empty payloads
+                partialLength = HEADER_SIZE;
+                partial = pool.acquire(partialLength);
+                partial.put(input.get()).put(input.get()).putInt(0);
+            } else {
+                if (input.remaining() < HEADER_SIZE)
+                    return null;
+
+                int size = input.getInt(input.position() + 2);
+                if (size < 0)
+                    throw new IOException("Unable to decode packet!");
+
+                partialLength = size + HEADER_SIZE;
+                partial = pool.acquire(partialLength);
+            }
+        }
+
+        int count = Math.min(partialLength - partial.position(), input.remaining());
+        if (count > 0) {
+            int limit = input.limit();
+            input.limit(input.position() + count);
+            partial.limit(partialLength);
+            partial.put(input);
+            input.limit(limit);
+        }
+
+        if (partial.position() < partialLength)
+            return null;
+
+        PacketFrame frame = new PacketFrame(partial, partialLength, pool);
+        partial = null;
+        return frame;
+    }
+
+    private boolean _isLegacyEmptyFrame() { //Only version 1 implementations send the version 1 in the header
+        int remaining = input.remaining();
+        if (remaining < 2 || input.get(input.position()) != Introverted.MIN_VERSION)
+            return false;
+        //Just like version 1 receivers, a header is only considered truncated if nothing else has been received yet or
+        //the next frame already starts where the length would be
+        return remaining == 2 || input.get(input.position() + 2) == Introverted.MIN_VERSION;
+    }
+
+    private boolean _startCompactFrame() throws IOException { //Returns false if the header hasn't been fully received yet
+        int position = input.position() + 1; //Skip the opcode
+        long header = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (position >= input.limit())
+                return false;
+            if (position - input.position() >= MAX_COMPACT_HEADER_SIZE)
+                throw new IOException("Unable to decode packet!");
+            b = input.get(position++);
+            header |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        long size = header >>> 2;
+        if (size > Integer.MAX_VALUE - HEADER_SIZE)
+            throw new IOException("Unable to decode packet!");
+
+        partialLength = (int) size + HEADER_SIZE;
+        partial = pool.acquire(partialLength);
+        partial.put(0, (byte) (protocolVersion | (header & 0x3) << 6)); //The flags are stored in the upper 2 bits again
+        partial.put(1, input.get(input.position()));
+        partial.putInt(2, (int) size);
+        partial.position(HEADER_SIZE);
+        input.position(position);
+        return true;
+    }
+}
@@ -0,0 +1,288 @@
+package com.austinv11.introverted.networking;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This schedules short tasks to run after a delay, such as expiring the timeouts of pending waits. Tasks are hashed
+ * into the slots of a wheel which a single thread advances once per tick, so scheduling and cancelling are constant
+ * time no matter how many tasks are pending. The cost is precision, tasks run up to a tick after their deadline.
+ *
+ * <b>NOTE:</b> Every task runs on the timer's thread, so tasks must not block.
+ */
+public class HashedWheelTimer implements Closeable {
+
+    /**
+     * The default duration of a tick, in milliseconds.
+     */
+    public static final long DEFAULT_TICK_MS = 1;
+    /**
+     * The default amount of slots in the wheel.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 1024;
+
+    private final long tickNanos;
+    private final Slot[] wheel;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread thread;
+    private final long startTime = System.nanoTime();
+    private volatile boolean idle = false;
+    private volatile boolean isClosed = false;
+
+    /**
+     * Creates and starts a timer.
+     *
+     * @param tickDuration The duration of a tick, i.e. the precision of the timer.
+     * @param unit The unit which the tick duration represents.
+     * @param wheelSize The amount of slots in the wheel, this is rounded up to a power of 2. Tasks which are further
+     *                  out than a full turn of the wheel wait in their slot for the remaining turns.
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0)
+            throw new IllegalArgumentException(String.format("Tick duration must be positive, got %d!", tickDuration));
+        if (wheelSize < 1 || wheelSize > 1 << 30)
+            throw new IllegalArgumentException(String.format("Wheel size must be between 1 and 2^30, got %d!", wheelSize));
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = 1;
+        while (size < wheelSize)
+            size <<= 1;
+        this.wheel = new Slot[size];
+        for (int i = 0; i < wheel.length; i++)
+            wheel[i] = new Slot();
+        this.thread = new Thread(this::_run, "Introverted Timer");
+        this.thread.setDaemon(true); //Pending timeouts shouldn't keep the JVM alive
+        this.thread.start();
+    }
+
+    /**
+     * Creates and starts a timer with the default tick duration and wheel size.
+     */
+    public HashedWheelTimer() {
+        this(DEFAULT_TICK_MS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Gets the timer shared by every {@link PacketHandler}, which is started on first use.
+     *
+     * @return The shared timer.
+     */
+    public static HashedWheelTimer shared() {
+        return SharedHolder.TIMER;
+    }
+
+    /**
+     * Schedules a task to run once a delay has elapsed.
+     *
+     * @param task The task, this is run on the timer's thread.
+     * @param delay The delay.
+     * @param unit The unit which the delay represents.
+     * @return The handle which can be used to cancel the task.
+     *
+     * @throws IllegalStateException If the timer has been closed.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (isClosed)
+            throw new IllegalStateException("The timer has been closed!");
+
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + Math.max(unit.toNanos(delay), 0));
+        pending.incrementAndGet();
+        added.add(timeout);
+        if (idle) //Nothing was pending, so the thread stopped ticking
+            LockSupport.unpark(thread);
+        return timeout;
+    }
+
+    /**
+     * Gets the amount of tasks which have neither run nor been cancelled yet.
+     *
+     * @return The amount of pending tasks.
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Checks if the timer has been closed.
+     *
+     * @return True if closed, false if otherwise.
+     */
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Stops the timer, pending tasks never run.
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        LockSupport.unpark(thread);
+    }
+
+    private void _run() {
+        long tick = 0;
+        while (!isClosed) {
+            if (pending.get() == 0) { //Don't spin the wheel while there is nothing to expire
+                idle = true;
+                if (pending.get() == 0 && !isClosed)
+                    LockSupport.park(this);
+                idle = false;
+                tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos); //Every slot is empty, so skipped ticks don't matter
+                continue;
+            }
+
+            long deadline = (tick + 1) * tickNanos;
+            long sleep = deadline - (System.nanoTime() - startTime);
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+                continue; //Woken up early, i.e. by a schedule()
+            }
+
+            _processCancelled();
+            _transferAdded(tick);
+            wheel[(int) (tick & (wheel.length - 1))].expire();
+            tick++;
+        }
+    }
+
+    private void _processCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.slot != null)
+                timeout.slot.remove(timeout);
+        }
+    }
+
+    private void _transferAdded(long tick) {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state.get() != Timeout.PENDING) //Cancelled before it was ever added
+                continue;
+
+            long ticks = Math.max(timeout.deadline / tickNanos, tick); //Overdue tasks expire on the current tick
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & (wheel.length - 1))].add(timeout);
+        }
+    }
+
+    private static final class SharedHolder { //Lazily started
+
+        private static final HashedWheelTimer TIMER = new HashedWheelTimer();
+    }
+
+    /**
+     * This is a handle to a scheduled task.
+     */
+    public final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline; //Relative to the start of the timer
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long remainingRounds; //Only accessed by the timer's thread
+        private Slot slot;
+        private Timeout previous, next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task, unless it has already run.
+         *
+         * @return True if cancelled, false if the task already ran (or was already cancelled).
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED))
+                return false;
+
+            pending.decrementAndGet();
+            cancelled.add(this); //Removed from its slot by the timer's thread, as the slots aren't thread safe
+            return true;
+        }
+
+        /**
+         * Checks if the task was cancelled.
+         *
+         * @return True if cancelled, false if otherwise.
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * Checks if the task has run.
+         *
+         * @return True if expired, false if otherwise.
+         */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void _expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED))
+                return;
+
+            pending.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) { //A misbehaving task shouldn't take down the timer
+                t.printStackTrace();
+            }
+        }
+    }
+
+    private static final class Slot { //A doubly linked list of timeouts, only accessed by the timer's thread
+
+        private Timeout head, tail;
+
+        private void add(Timeout timeout) {
+            timeout.slot = this;
+            timeout.previous = tail;
+            if (tail == null)
+                head = tail = timeout;
+            else
+                tail = tail.next = timeout;
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.previous != null)
+                timeout.previous.next = timeout.next;
+            else
+                head = timeout.next;
+            if (timeout.next != null)
+                timeout.next.previous = timeout.previous;
+            else
+                tail = timeout.previous;
+            timeout.slot = null;
+            timeout.previous = timeout.next = null;
+        }
+
+        private void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout._expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
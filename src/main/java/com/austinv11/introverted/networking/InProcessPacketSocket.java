@@ -0,0 +1,253 @@
+package com.austinv11.introverted.networking;
+
+import com.austinv11.introverted.networking.packets.BatchPacket;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+
+/**
+ * One side of a connection within a single JVM. Packets are handed to the other side by reference through a lock-free
+ * queue, so nothing is ever encoded or decoded. When codec verification is enabled, the encoded frames are handed over
+ * instead and decoded on the other side just like with any other socket.
+ *
+ * @see PacketSocket#inProcess(boolean)
+ */
+class InProcessPacketSocket implements PacketSocket {
+
+    private static final Object CLOSED = new Object(); //Terminates the queue it is put in
+
+    private final BlockingQueue<Object> inbound = new LinkedTransferQueue<>();
+    private final String address;
+    private final PacketInputStream inputStream;
+    private final PacketReader reader;
+    private final PacketOutputStream outputStream;
+    private InProcessPacketSocket peer;
+    private volatile boolean isClosed = false;
+
+    private InProcessPacketSocket(String address, boolean verifyCodec) {
+        this.address = address;
+        if (verifyCodec) {
+            inputStream = new PacketInputStream(new FrameChannel());
+            reader = inputStream;
+            outputStream = new PacketOutputStream(new FrameOutputStream());
+        } else {
+            inputStream = new PacketInputStream(new ByteArrayInputStream(new byte[0])); //No frames are ever received
+            reader = new ReferenceReader();
+            outputStream = new ReferenceOutputStream();
+        }
+    }
+
+    /**
+     * Creates both sides of an in-process connection.
+     *
+     * @param verifyCodec True to encode and decode packets as if they were sent through a socket.
+     * @return The server side (index 0) and the client side (index 1).
+     */
+    static InProcessPacketSocket[] pair(boolean verifyCodec) {
+        InProcessPacketSocket server = new InProcessPacketSocket("in-process:server", verifyCodec);
+        InProcessPacketSocket client = new InProcessPacketSocket("in-process:client", verifyCodec);
+        server.peer = client;
+        client.peer = server;
+        return new InProcessPacketSocket[]{server, client};
+    }
+
+    private void _send(Object element) throws IOException {
+        if (isClosed || peer.isClosed)
+            throw new IOException("The connection has been closed!");
+        peer.inbound.add(element);
+    }
+
+    private Object _receive(boolean block) {
+        Object element;
+        try {
+            element = block ? inbound.take() : inbound.poll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CLOSED;
+        }
+
+        if (element == CLOSED)
+            inbound.add(CLOSED); //So every later read sees it as well
+        return element;
+    }
+
+    @Override
+    public String getAddress() {
+        return address;
+    }
+
+    @Override
+    public PacketInputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public PacketReader getReader() {
+        return reader;
+    }
+
+    @Override
+    public PacketOutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (isClosed)
+                return;
+
+            isClosed = true;
+            inbound.add(CLOSED);
+            peer.inbound.add(CLOSED);
+        }
+
+        try { //Releases their compressors, closing the socket again from within is a no-op
+            inputStream.close();
+        } finally {
+            try {
+                reader.close();
+            } finally {
+                outputStream.close();
+            }
+        }
+    }
+
+    private final class ReferenceReader implements PacketReader { //Nothing is ever decoded, so there is nothing to configure
+
+        @Override
+        public void setProtocolVersion(byte protocolVersion) {}
+
+        @Override
+        public void setRecycling(PacketType type, boolean recycle) {}
+
+        @Override
+        public boolean isRecycling(PacketType type) {
+            return false;
+        }
+
+        @Override
+        public Packet read() {
+            return _next(PacketFilter.ALL, true);
+        }
+
+        @Override
+        public LazyPacket readLazy(PacketFilter filter) {
+            Packet packet = _next(filter, true);
+            return packet == null ? null : new LazyPacket(packet);
+        }
+
+        @Override
+        public LazyPacket pollLazy(PacketFilter filter) {
+            Packet packet = _next(filter, false);
+            return packet == null ? null : new LazyPacket(packet);
+        }
+
+        private Packet _next(PacketFilter filter, boolean block) {
+            Object element;
+            while ((element = _receive(block)) != null && element != CLOSED) {
+                Packet packet = (Packet) element;
+                if (filter.isInterested(packet.getType()))
+                    return packet;
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            InProcessPacketSocket.this.close();
+        }
+    }
+
+    private final class ReferenceOutputStream extends PacketOutputStream {
+
+        private ReferenceOutputStream() {
+            super(new PacketBuffer(0, false), new ByteArrayOutputStream(0)); //Never written to
+        }
+
+        @Override
+        public void write(Packet packet) {
+            if (isClosed || peer.isClosed) //Reported on flush, like a failed write of any other socket
+                return;
+
+            if (packet instanceof BatchPacket) { //Batches only exist to save on frames, so they are unpacked right away
+                ((BatchPacket) packet).getPackets().forEach(peer.inbound::add);
+            } else {
+                peer.inbound.add(packet);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (isClosed || peer.isClosed)
+                throw new IOException("The connection has been closed!");
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                InProcessPacketSocket.this.close();
+            } finally {
+                super.close(); //Releases the compressor
+            }
+        }
+    }
+
+    private final class FrameChannel implements ReadableByteChannel {
+
+        private ByteBuffer current = ByteBuffer.allocate(0);
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!current.hasRemaining()) {
+                Object element = _receive(true);
+                if (element == CLOSED)
+                    return -1;
+                current = (ByteBuffer) element;
+            }
+
+            int count = Math.min(current.remaining(), dst.remaining());
+            int limit = current.limit();
+            current.limit(current.position() + count);
+            dst.put(current);
+            current.limit(limit);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !isClosed;
+        }
+
+        @Override
+        public void close() throws IOException {
+            InProcessPacketSocket.this.close();
+        }
+    }
+
+    private final class FrameOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            byte[] copy = new byte[len]; //The caller reuses its array
+            System.arraycopy(b, off, copy, 0, len);
+            _send(ByteBuffer.wrap(copy));
+        }
+
+        @Override
+        public void close() throws IOException {
+            InProcessPacketSocket.this.close();
+        }
+    }
+}
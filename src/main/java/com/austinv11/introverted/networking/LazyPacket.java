@@ -0,0 +1,80 @@
+package com.austinv11.introverted.networking;
+
+/**
+ * This is a view of a received packet whose header has been read but whose payload is only decoded on first access.
+ *
+ * Instances are <b>not</b> thread safe, and must not be used after being released.
+ *
+ * @see PacketInputStream#readLazy(PacketFilter)
+ */
+public final class LazyPacket {
+
+    private final PacketInputStream stream;
+    private final PacketFrame frame;
+    private final PacketType type;
+    private Packet packet;
+
+    LazyPacket(PacketInputStream stream, PacketFrame frame, PacketType type) {
+        this.stream = stream;
+        this.frame = frame;
+        this.type = type;
+    }
+
+    LazyPacket(Packet packet) { //Already decoded, i.e. handed over in-process
+        this(null, null, packet.getType());
+        this.packet = packet;
+    }
+
+    /**
+     * Gets the type of the packet, this does not decode anything.
+     *
+     * @return The packet type.
+     */
+    public PacketType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the decoded packet, decoding it if this is the first access.
+     *
+     * @return The (cached) packet.
+     */
+    public Packet get() {
+        if (packet == null)
+            packet = stream.decode(frame);
+        return packet;
+    }
+
+    /**
+     * Walks the payload with a {@link PacketVisitor} instead of decoding it, this can be done any number of times.
+     *
+     * @param visitor The visitor to call.
+     */
+    public void visit(PacketVisitor visitor) {
+        if (frame == null) { //Nothing was ever encoded, so do so now
+            PacketBuffer buf = new PacketBuffer();
+            buf.putVersion().putOp(type);
+            type.getCodec().encode(packet, buf);
+            new PacketBuffer(buf.flush()).visit(visitor);
+            return;
+        }
+        stream.visit(frame, visitor);
+    }
+
+    /**
+     * Checks if the payload has been decoded yet.
+     *
+     * @return True if decoded, false if otherwise.
+     */
+    public boolean isDecoded() {
+        return packet != null;
+    }
+
+    /**
+     * Releases the underlying frame. Packets which were already decoded remain usable.
+     */
+    public void release() {
+        if (frame != null)
+            frame.release();
+    }
+}
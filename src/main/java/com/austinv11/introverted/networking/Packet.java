@@ -9,9 +9,9 @@ public abstract class Packet {
 
     //Special cases exist for these two fields but I am marking them for consistency sake
     @Serialized(0)
-    private final byte version;
+    private byte version;
     @Serialized(1)
-    private final PacketType type;
+    private PacketType type;
 
     public Packet() {
         this((byte) 0, null);
@@ -22,6 +22,11 @@ public abstract class Packet {
         this.type = type;
     }
 
+    void setHeader(byte version, PacketType type) { //Used when decoding, these are written separately from the payload
+        this.version = version;
+        this.type = type;
+    }
+
     /**
      * Gets the type of packet this represents.
      *
@@ -31,6 +36,15 @@ public abstract class Packet {
         return type;
     }
 
+    /**
+     * Gets the opcode this packet is sent with.
+     *
+     * @return The opcode.
+     */
+    public int getOpcode() {
+        return type.getOpcode();
+    }
+
     /**
      * Gets the version of the Introverted protocol from the side this was sent from.
      *
@@ -1,21 +1,41 @@
 package com.austinv11.introverted.networking;
 
 import com.austinv11.introverted.common.Introverted;
-import org.apache.commons.lang3.ClassUtils;
-
-import java.io.UnsupportedEncodingException;
-import java.util.Arrays;
+import com.austinv11.introverted.mapping.FieldInfo;
+import com.austinv11.introverted.mapping.Reflector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * This class allows for both reading and writing of introverted packets.
+ *
+ * The contents are stored in a (heap or direct) {@link ByteBuffer} which is accessed with absolute, bulk operations.
+ * Instances are <b>not</b> thread safe, a buffer is expected to only ever be used by a single thread at a time.
  */
 public class PacketBuffer {
 
+    /**
+     * The default minimum amount of elements (or map entries) a collection must have to be encoded in parallel.
+     *
+     * @see #setParallelEncoding(ForkJoinPool, int)
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
     private static final int INITIAL_SIZE = 16;
     private static final int SIZE_EXPANSION_FACTOR = 2;
+    private static final int HEADER_SIZE = 6;
+    private static final int MAX_RETAINED_SIZE = 1 << 16;
 
     private static final byte BOOLEAN = 0;
     private static final byte U_INT = 1;
@@ -28,11 +48,68 @@ public class PacketBuffer {
     private static final byte STR = 8;
     private static final byte NIL = 9;
     private static final byte MAP = 10;
+    private static final byte VAR_U_INT = 11;
+    private static final byte VAR_INT = 12;
+    private static final byte VAR_U_LONG = 13;
+    private static final byte VAR_LONG = 14;
+    private static final byte FLOAT = 15;
+    private static final byte UTF16_CHAR = 16;
+    private static final byte PACKED_ARRAY = 17;
+    private static final byte BYTES = 18;
+    private static final byte STR_DEF = 19;
+    private static final byte STR_REF = 20;
+    private static final byte STRUCT_DEF = 21;
+    private static final byte STRUCT = 22;
+
+    private static final byte TAGGED = -1; //The struct field type of values which carry their own tag
+
+    private static final byte VERSION_MASK = 0x3F;
+    static final byte COMPACT_HEADER_VERSION = 2;
+    static final byte FLAG_DEFINITIONS = 0x40;
+
+    private static final long U_INT_MASK = 0xffffffffL;
+    private static final PacketVisitor SKIPPING_VISITOR = new PacketVisitor() {};
+    private static final int MAX_VARINT_SIZE = 10;
+
+    private final BufferPool pool;
+    private ByteBuffer buf;
+    private int pointer = 0;
+    private long features = 0;
+    private boolean shared = false;
+    private StringTable strings;
+    private StructRegistry structs;
+    private FrameCompressor compressor;
+    private boolean definedEntries = false;
+    private boolean batchDefinedEntries = false;
+    private byte protocolVersion = Introverted.MIN_VERSION;
+    private ForkJoinPool parallelPool;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    private PacketBuffer(BufferPool pool, ByteBuffer buf, int startPointer) {
+        this.pool = pool;
+        this.buf = buf.order(ByteOrder.BIG_ENDIAN);
+        this.pointer = startPointer;
+    }
 
-    private static final int MASK = 0xff;
+    /**
+     * Wraps a {@link ByteBuffer} with a preset pointer. Index 0 of the buffer is treated as the start of the packet,
+     * regardless of the buffer's position.
+     *
+     * @param buf The buffer, this may either be a heap or a direct buffer.
+     * @param startPointer The pointer to start at.
+     */
+    public PacketBuffer(ByteBuffer buf, int startPointer) {
+        this(null, buf, startPointer);
+    }
 
-    private volatile byte[] buf;
-    private volatile int pointer = 0;
+    /**
+     * Wraps a {@link ByteBuffer} with a PacketBuffer instance.
+     *
+     * @param buf The buffer to wrap, this may either be a heap or a direct buffer.
+     */
+    public PacketBuffer(ByteBuffer buf) {
+        this(buf, 0);
+    }
 
     /**
      * Creates a buffer with preset contents and a non-zero pointer.
@@ -41,8 +118,7 @@ public class PacketBuffer {
      * @param startPointer The pointer to start at.
      */
     public PacketBuffer(byte[] buf, int startPointer) {
-        this.buf = buf;
-        this.pointer = startPointer;
+        this(ByteBuffer.wrap(buf), startPointer);
     }
 
     /**
@@ -54,59 +130,261 @@ public class PacketBuffer {
         this(buf, 0);
     }
 
+    /**
+     * Creates a new PacketBuffer without any contents.
+     *
+     * @param initialCapacity The initial amount of bytes to reserve.
+     * @param direct When true, the contents are stored off-heap in a direct {@link ByteBuffer}.
+     */
+    public PacketBuffer(int initialCapacity, boolean direct) {
+        this(direct ? ByteBuffer.allocateDirect(initialCapacity) : ByteBuffer.allocate(initialCapacity));
+    }
+
+    /**
+     * Creates a new PacketBuffer without any contents, whose storage is recycled through the provided pool as it
+     * grows.
+     *
+     * @param pool The pool to acquire storage from.
+     */
+    public PacketBuffer(BufferPool pool) {
+        this(pool, pool.acquire(INITIAL_SIZE), 0);
+    }
+
     /**
      * Creates a new PacketBuffer without any contents.
      */
     public PacketBuffer() {
-        this.buf = new byte[INITIAL_SIZE];
+        this(INITIAL_SIZE, false);
     }
 
-    private void expand() {
-        buf = Arrays.copyOf(buf, buf.length * SIZE_EXPANSION_FACTOR);
+    private void expand(int required) {
+        int capacity = Math.max(buf.capacity(), INITIAL_SIZE);
+        while (capacity < required)
+            capacity *= SIZE_EXPANSION_FACTOR;
+
+        ByteBuffer expanded;
+        if (pool != null)
+            expanded = pool.acquire(capacity);
+        else
+            expanded = buf.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        buf.clear();
+        expanded.put(buf);
+        if (pool != null)
+            pool.release(buf);
+        buf = expanded;
     }
 
-    private synchronized void safePut(byte... bytes) {
-        if (pointer > 1 && pointer < 6) //We wanna skip the size bytes as that has its own mechanism
+    private void reserve(int length) {
+        if (pointer > 1 && pointer < HEADER_SIZE) //We wanna skip the size bytes as that has its own mechanism
             skipMeta();
 
-        while (size() + bytes.length > buf.length)
-            expand();
+        if (pointer + length > buf.capacity())
+            expand(pointer + length);
+    }
+
+    private void safePut(byte b) {
+        reserve(1);
+        buf.put(pointer++, b);
+    }
+
+    private void safePut(byte[] bytes) {
+        reserve(bytes.length);
+        buf.clear();
+        buf.position(pointer);
+        buf.put(bytes);
+        pointer += bytes.length;
+    }
+
+    private void safePutTagged(byte type, int value) {
+        reserve(5);
+        buf.put(pointer, type);
+        buf.putInt(pointer + 1, value);
+        pointer += 5;
+    }
 
-        for (int i = 0; i < bytes.length; i++)
-            buf[pointer++] = bytes[i];
+    private void safePutTagged(byte type, long value) {
+        reserve(9);
+        buf.put(pointer, type);
+        buf.putLong(pointer + 1, value);
+        pointer += 9;
     }
 
-    private synchronized byte next() {
-        return buf[pointer++];
+    private byte next() {
+        return buf.get(pointer++);
     }
 
     private byte[] nextBytes(int length) {
         byte[] toReturn = new byte[length];
-        for (int i = 0; i < length; i++)
-            toReturn[i] = next();
+        buf.clear();
+        buf.position(pointer);
+        buf.get(toReturn);
+        pointer += length;
         return toReturn;
     }
 
-    private synchronized byte peek(int pos) {
-        return buf[pos];
+    private int nextInt() {
+        int value = buf.getInt(pointer);
+        pointer += 4;
+        return value;
+    }
+
+    private long nextLong() {
+        long value = buf.getLong(pointer);
+        pointer += 8;
+        return value;
+    }
+
+    private byte peek(int pos) {
+        return buf.get(pos);
     }
 
     private byte peek() {
         return peek(pointer);
     }
 
-    private synchronized void move(int amount) {
+    private void move(int amount) {
         pointer += amount;
     }
 
-    private synchronized void skipMeta() {
-        if (pointer < 6)
-            pointer = 6;
+    private void skipMeta() {
+        if (pointer < HEADER_SIZE)
+            pointer = HEADER_SIZE;
     }
 
     private void assertByte(byte shouldEqual) {
         if (next() != shouldEqual)
-            throw new IllegalStateException(String.format("Expected %d at position %d, got %d instead!", shouldEqual, pointer, peek()));
+            throw new IllegalStateException(String.format("Expected %d at position %d, got %d instead!", shouldEqual, pointer, peek(pointer - 1)));
+    }
+
+    private byte assertByte(byte shouldEqual, byte orEqual) {
+        byte type = next();
+        if (type != shouldEqual && type != orEqual)
+            throw new IllegalStateException(String.format("Expected %d or %d at position %d, got %d instead!", shouldEqual, orEqual, pointer, type));
+        return type;
+    }
+
+    private void putVarRaw(long value) { //Unsigned LEB128
+        reserve(MAX_VARINT_SIZE);
+        while ((value & ~0x7FL) != 0) {
+            buf.put(pointer++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put(pointer++, (byte) value);
+    }
+
+    private long nextVarRaw() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 64)
+                throw new IllegalStateException(String.format("Malformed varint at position %d!", pointer));
+            b = next();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private boolean isEnabled(ProtocolFeature feature) {
+        return feature.isEnabled(features);
+    }
+
+    /**
+     * Sets the negotiated protocol features which this buffer is allowed to use when encoding.
+     *
+     * @param features The feature bit set.
+     *
+     * @see ProtocolFeature
+     */
+    public void setFeatures(long features) {
+        this.features = features;
+    }
+
+    /**
+     * Sets the string table used by this buffer. When encoding this is only used once
+     * {@link ProtocolFeature#STRING_TABLE} has been negotiated, when decoding it is required to read strings which
+     * were sent through the table.
+     *
+     * @param strings The connection's string table (dedicated to this direction of the connection).
+     */
+    public void setStringTable(StringTable strings) {
+        this.strings = strings;
+    }
+
+    /**
+     * Sets the struct registry used by this buffer. When encoding this is only used once
+     * {@link ProtocolFeature#STRUCTS} has been negotiated, when decoding it is required to read structs.
+     *
+     * @param structs The connection's struct registry (dedicated to this direction of the connection).
+     */
+    public void setStructRegistry(StructRegistry structs) {
+        this.structs = structs;
+    }
+
+    /**
+     * Sets the compressor used by {@link #flush(OutputStream)} once {@link ProtocolFeature#COMPRESSION} has been
+     * negotiated.
+     *
+     * @param compressor The connection's compressor (dedicated to this direction of the connection).
+     */
+    public void setCompressor(FrameCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * Sets the negotiated protocol version, which determines how frames are written by {@link #flush(OutputStream)}.
+     * Starting with version 2, frames are written with a compact header which omits the version.
+     *
+     * <b>NOTE:</b> The contents of the buffer always use the version 1 layout (a 6 byte header), regardless of this.
+     *
+     * @param protocolVersion The protocol version, defaults to {@link Introverted#MIN_VERSION}.
+     */
+    public void setProtocolVersion(byte protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    /**
+     * Sets whether large arrays and maps are encoded in parallel. Collections with at least {@code threshold} elements
+     * are split into segments which are encoded concurrently on the pool, the segments are then joined onto this
+     * buffer (so the payload is identical to a sequential encode, apart from the following note).
+     *
+     * <b>NOTE:</b> Strings and structs within parallel encoded collections are always sent inline (as str and map
+     * values), since {@link StringTable} and {@link StructRegistry} definitions must be made in order.
+     *
+     * @param pool The pool to encode on, or null to always encode on the calling thread (the default).
+     * @param threshold The minimum amount of elements (or map entries) to encode in parallel, defaults to
+     * {@link #DEFAULT_PARALLEL_THRESHOLD}.
+     */
+    public void setParallelEncoding(ForkJoinPool pool, int threshold) {
+        this.parallelPool = pool;
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * Gets the negotiated protocol version, which determines how frames are written.
+     *
+     * @return The protocol version.
+     */
+    public byte getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Gets the negotiated protocol features which this buffer is allowed to use when encoding.
+     *
+     * @return The feature bit set.
+     */
+    public long getFeatures() {
+        return features;
     }
 
     /**
@@ -126,7 +404,17 @@ public class PacketBuffer {
      * @return The version number.
      */
     public byte getVersion() {
-        return peek(0);
+        return (byte) (peek(0) & VERSION_MASK);
+    }
+
+    /**
+     * Checks if the packet in this buffer defines any new entries in the connection's {@link StringTable} or
+     * {@link StructRegistry}. Such packets must always be read, even if their contents are otherwise unneeded.
+     *
+     * @return True if string or struct definitions are present, false if otherwise.
+     */
+    public boolean definesEntries() {
+        return (peek(0) & FLAG_DEFINITIONS) != 0;
     }
 
     /**
@@ -137,17 +425,42 @@ public class PacketBuffer {
      */
     public PacketBuffer putOp(PacketType op) {
         assertPosition(1);
-        safePut((byte) op.ordinal());
+        safePut((byte) op.getOpcode());
         return this;
     }
 
+    /**
+     * Starts an entry of a {@link PacketType#BATCH} packet, everything put until {@link #endBatchEntry(int)} is called
+     * is the payload of the entry. Entries are written as complete (version 1) frames.
+     *
+     * @param op The op of the entry.
+     * @return The index of the entry, to be passed to {@link #endBatchEntry(int)}.
+     */
+    int startBatchEntry(PacketType op) {
+        reserve(HEADER_SIZE);
+        int start = pointer;
+        buf.put(start, Introverted.VERSION);
+        buf.put(start + 1, (byte) op.getOpcode());
+        pointer += HEADER_SIZE;
+        batchDefinedEntries = definedEntries; //Each entry is flagged separately, so only relevant entries are visited
+        definedEntries = false;
+        return start;
+    }
+
+    void endBatchEntry(int start) {
+        if (definedEntries)
+            buf.put(start, (byte) (buf.get(start) | FLAG_DEFINITIONS));
+        buf.putInt(start + 2, pointer - start - HEADER_SIZE);
+        definedEntries |= batchDefinedEntries;
+    }
+
     /**
      * Gets the op represented in the current buffer.
      *
-     * @return The op stored.
+     * @return The op stored, or null if nothing is registered to its opcode.
      */
     public PacketType getOp() {
-        return PacketType.values()[peek(1)];
+        return PacketType.of(peek(1));
     }
 
     /**
@@ -157,7 +470,10 @@ public class PacketBuffer {
      * @return The current buffer instance.
      */
     public PacketBuffer putBoolean(boolean bool) {
-        safePut(BOOLEAN, (byte) (bool ? 1 : 0));
+        reserve(2);
+        buf.put(pointer, BOOLEAN);
+        buf.put(pointer + 1, (byte) (bool ? 1 : 0));
+        pointer += 2;
         return this;
     }
 
@@ -181,8 +497,7 @@ public class PacketBuffer {
      * @return The current buffer instance.
      */
     public PacketBuffer putUInt(long uint) {
-        safePut(U_INT,
-                (byte) (uint >> 24), (byte) ((uint >> 16) & MASK), (byte) ((uint >> 8) & MASK), (byte) (uint & MASK));
+        safePutTagged(U_INT, (int) uint);
         return this;
     }
 
@@ -195,38 +510,20 @@ public class PacketBuffer {
      */
     public long getUInt() {
         skipMeta();
-        assertByte(U_INT);
-        byte[] data = nextBytes(4);
-        long uint = 0;
-        uint |= (data[0] & MASK);
-        uint <<= 8;
-        uint |= (data[1] & MASK);
-        uint <<= 8;
-        uint |= (data[2] & MASK);
-        uint <<= 8;
-        uint |= (data[3] & MASK);
-        return uint;
+        if (assertByte(U_INT, VAR_U_INT) == VAR_U_INT)
+            return nextVarRaw() & U_INT_MASK;
+        return nextInt() & U_INT_MASK;
     }
 
     private PacketBuffer _putInt(byte type, int integer) {
-        safePut(type,
-                (byte) (integer >> 24), (byte) ((integer >> 16) & MASK), (byte) ((integer >> 8) & MASK), (byte) (integer & MASK));
+        safePutTagged(type, integer);
         return this;
     }
 
     private int _getInt(byte type) {
         skipMeta();
         assertByte(type);
-        byte[] data = nextBytes(4);
-        int integer = 0;
-        integer |= (data[0] & MASK);
-        integer <<= 8;
-        integer |= (data[1] & MASK);
-        integer <<= 8;
-        integer |= (data[2] & MASK);
-        integer <<= 8;
-        integer |= (data[3] & MASK);
-        return integer;
+        return nextInt();
     }
 
     /**
@@ -247,37 +544,21 @@ public class PacketBuffer {
      * @return The value.
      */
     public int getInt() {
-        return _getInt(INT);
+        skipMeta();
+        if (assertByte(INT, VAR_INT) == VAR_INT)
+            return (int) unZigZag(nextVarRaw());
+        return nextInt();
     }
 
     private PacketBuffer _putLong(byte type, long longval) {
-        safePut(type,
-                (byte) (longval >> 56), (byte) ((longval >> 48) & MASK), (byte) ((longval >> 40) & MASK), (byte) (longval >> 32 & MASK),
-                (byte) ((longval >> 24) & MASK), (byte) ((longval >> 16) & MASK), (byte) ((longval >> 8) & MASK), (byte) (longval & MASK));
+        safePutTagged(type, longval);
         return this;
     }
 
     private long _getLong(byte type) {
         skipMeta();
         assertByte(type);
-        byte[] data = nextBytes(8);
-        long val = 0;
-        val |= (data[0] & MASK);
-        val <<= 8;
-        val |= (data[1] & MASK);
-        val <<= 8;
-        val |= (data[2] & MASK);
-        val <<= 8;
-        val |= (data[3] & MASK);
-        val <<= 8;
-        val |= (data[4] & MASK);
-        val <<= 8;
-        val |= (data[5] & MASK);
-        val <<= 8;
-        val |= (data[6] & MASK);
-        val <<= 8;
-        val |= (data[7] & MASK);
-        return val;
+        return nextLong();
     }
 
     /**
@@ -298,7 +579,10 @@ public class PacketBuffer {
      * @return The value.
      */
     public long getULong() {
-        return _getLong(U_LONG);
+        skipMeta();
+        if (assertByte(U_LONG, VAR_U_LONG) == VAR_U_LONG)
+            return nextVarRaw();
+        return nextLong();
     }
 
     /**
@@ -319,7 +603,10 @@ public class PacketBuffer {
      * @return The value.
      */
     public long getLong() {
-        return _getLong(LONG);
+        skipMeta();
+        if (assertByte(LONG, VAR_LONG) == VAR_LONG)
+            return unZigZag(nextVarRaw());
+        return nextLong();
     }
 
     /**
@@ -340,7 +627,13 @@ public class PacketBuffer {
      * @return The value.
      */
     public char getChar() {
-        return (char) _getInt(CHAR);
+        skipMeta();
+        if (assertByte(CHAR, UTF16_CHAR) == UTF16_CHAR) {
+            char character = buf.getChar(pointer);
+            move(2);
+            return character;
+        }
+        return (char) nextInt();
     }
 
     /**
@@ -364,10 +657,128 @@ public class PacketBuffer {
         return Double.longBitsToDouble(_getLong(DECIMAL));
     }
 
+    /**
+     * Appends an unsigned int onto the buffer as a variable length integer.
+     *
+     * @param uint The value to append.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putVarUInt(long uint) {
+        safePut(VAR_U_INT);
+        putVarRaw(uint & U_INT_MASK);
+        return this;
+    }
+
+    /**
+     * Appends an int onto the buffer as a (zigzag encoded) variable length integer.
+     *
+     * @param integer The value to append.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putVarInt(int integer) {
+        safePut(VAR_INT);
+        putVarRaw(zigZag(integer));
+        return this;
+    }
+
+    /**
+     * Appends an unsigned long onto the buffer as a variable length integer.
+     *
+     * @param ulong The value to append.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putVarULong(long ulong) {
+        safePut(VAR_U_LONG);
+        putVarRaw(ulong);
+        return this;
+    }
+
+    /**
+     * Appends a long onto the buffer as a (zigzag encoded) variable length integer.
+     *
+     * @param longVal The value to append.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putVarLong(long longVal) {
+        safePut(VAR_LONG);
+        putVarRaw(zigZag(longVal));
+        return this;
+    }
+
+    /**
+     * Appends a single precision decimal value onto the buffer.
+     *
+     * @param value The value to append.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putFloat(float value) {
+        safePutTagged(FLOAT, Float.floatToIntBits(value));
+        return this;
+    }
+
+    /**
+     * Gets the next value on the buffer as a single precision decimal value.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
+     */
+    public float getFloat() {
+        skipMeta();
+        if (assertByte(FLOAT, DECIMAL) == DECIMAL)
+            return (float) Double.longBitsToDouble(nextLong());
+        return Float.intBitsToFloat(nextInt());
+    }
+
+    /**
+     * Appends a character onto the buffer as a 2 byte UTF-16 code unit.
+     *
+     * @param character The value to append.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putUtf16Char(char character) {
+        reserve(3);
+        buf.put(pointer, UTF16_CHAR);
+        buf.putChar(pointer + 1, character);
+        pointer += 3;
+        return this;
+    }
+
     private void _startPutArray(int len) {
         _putInt(ARRAY, len);
     }
 
+    private boolean _startPutPackedArray(byte elementType, int len, int elementSize) {
+        if (!isEnabled(ProtocolFeature.PACKED_ARRAYS))
+            return false;
+
+        reserve(6 + len * elementSize);
+        buf.put(pointer, PACKED_ARRAY);
+        buf.put(pointer + 1, elementType);
+        buf.putInt(pointer + 2, len);
+        pointer += 6;
+        buf.clear();
+        buf.position(pointer); //Position the buffer for the following bulk view operation
+        pointer += len * elementSize;
+        return true;
+    }
+
+    private int _startGetPackedArray(byte elementType, int elementSize) { //Assumes the tag has already been consumed
+        byte type = next();
+        if (type != elementType)
+            throw new IllegalStateException(String.format("Expected packed elements of type %d at position %d, got %d instead!", elementType, pointer, type));
+        int len = nextInt();
+        buf.clear();
+        buf.position(pointer); //Position the buffer for the following bulk view operation
+        pointer += len * elementSize;
+        return len;
+    }
+
+    private byte _startGetArray() {
+        skipMeta();
+        return assertByte(ARRAY, PACKED_ARRAY);
+    }
+
     /**
      * Appends an array onto the buffer.
      *
@@ -375,6 +786,12 @@ public class PacketBuffer {
      * @return The current buffer instance.
      */
     public PacketBuffer putArray(boolean[] array) {
+        if (_startPutPackedArray(BOOLEAN, array.length, 1)) {
+            for (int i = 0; i < array.length; i++)
+                buf.put(pointer - array.length + i, (byte) (array[i] ? 1 : 0));
+            return this;
+        }
+
         _startPutArray(array.length);
         for (boolean o : array)
             putBoolean(o);
@@ -388,6 +805,11 @@ public class PacketBuffer {
      * @return The current buffer instance.
      */
     public PacketBuffer putArray(int[] array) {
+        if (_startPutPackedArray(INT, array.length, 4)) {
+            buf.asIntBuffer().put(array);
+            return this;
+        }
+
         _startPutArray(array.length);
         for (int o : array)
             putInt(o);
@@ -401,6 +823,11 @@ public class PacketBuffer {
      * @return The current buffer instance.
      */
     public PacketBuffer putArray(long[] array) {
+        if (_startPutPackedArray(LONG, array.length, 8)) {
+            buf.asLongBuffer().put(array);
+            return this;
+        }
+
         _startPutArray(array.length);
         for (long o : array)
             putLong(o);
@@ -414,6 +841,11 @@ public class PacketBuffer {
      * @return The current buffer instance.
      */
     public PacketBuffer putArray(char[] array) {
+        if (_startPutPackedArray(UTF16_CHAR, array.length, 2)) {
+            buf.asCharBuffer().put(array);
+            return this;
+        }
+
         _startPutArray(array.length);
         for (char o : array)
             putChar(o);
@@ -427,12 +859,35 @@ public class PacketBuffer {
      * @return The current buffer instance.
      */
     public PacketBuffer putArray(double[] array) {
+        if (_startPutPackedArray(DECIMAL, array.length, 8)) {
+            buf.asDoubleBuffer().put(array);
+            return this;
+        }
+
         _startPutArray(array.length);
         for (double o : array)
             putDecimal(o);
         return this;
     }
 
+    /**
+     * Appends an array onto the buffer.
+     *
+     * @param array The value to append.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putArray(float[] array) {
+        if (_startPutPackedArray(FLOAT, array.length, 4)) {
+            buf.asFloatBuffer().put(array);
+            return this;
+        }
+
+        _startPutArray(array.length);
+        for (float o : array)
+            putDecimal(o);
+        return this;
+    }
+
     /**
      * Appends an array onto the buffer.
      *
@@ -441,6 +896,11 @@ public class PacketBuffer {
      */
     public <T> PacketBuffer putArray(T[] array) {
         _startPutArray(array.length);
+        if (_isParallel(array.length)) {
+            _putParallel(array, false);
+            return this;
+        }
+
         for (T o : array)
             put(o);
         return this;
@@ -454,19 +914,57 @@ public class PacketBuffer {
      */
     public <T> PacketBuffer putArray(Collection<T> collection) {
         _startPutArray(collection.size());
+        if (_isParallel(collection.size())) {
+            _putParallel(collection.toArray(), false);
+            return this;
+        }
+
         for (T o : collection)
             put(o);
         return this;
     }
 
+    private boolean _isParallel(int size) {
+        return parallelPool != null && size >= parallelThreshold;
+    }
+
+    private void _putParallel(Object[] elements, boolean entries) { //Assumes the array or map header was already put
+        PacketBuffer[] segments = ParallelEncoder.encode(parallelPool, elements, entries, features);
+        int length = 0;
+        for (PacketBuffer segment : segments) //Segments are encoded after an empty header
+            length += segment.pointer - HEADER_SIZE;
+
+        reserve(length);
+        buf.clear();
+        buf.position(pointer);
+        for (PacketBuffer segment : segments) {
+            ByteBuffer contents = segment.buf.duplicate();
+            contents.clear();
+            contents.limit(segment.pointer);
+            contents.position(HEADER_SIZE);
+            buf.put(contents);
+        }
+        pointer += length;
+    }
+
     /**
-     * Gets the next value on the buffer as an array.
+     * Gets the next value on the buffer as an array. Packed arrays are boxed, prefer the primitive specific getters
+     * such as {@link #getIntArray()} for those.
      *
      * <b>NOTE:</b> This will move the pointer forward if successful.
      *
      * @return The value.
      */
     public Object[] getArray() { //Generics + java arrays don't work well together :(
+        skipMeta();
+        if (peek() == PACKED_ARRAY) {
+            Object packed = getPackedArray();
+            Object[] array = new Object[Array.getLength(packed)];
+            for (int i = 0; i < array.length; i++)
+                array[i] = Array.get(packed, i);
+            return array;
+        }
+
         int len = _getInt(ARRAY);
         Object[] array = new Object[len];
         for (int i = 0; i < len; i++)
@@ -474,74 +972,329 @@ public class PacketBuffer {
         return array;
     }
 
+    private Object getPackedArray() { //Assumes the pointer is at a packed array
+        switch (peek(pointer + 1)) {
+            case BOOLEAN:
+                return getBooleanArray();
+            case INT:
+                return getIntArray();
+            case LONG:
+                return getLongArray();
+            case UTF16_CHAR:
+                return getCharArray();
+            case FLOAT:
+                return getFloatArray();
+            case DECIMAL:
+                return getDoubleArray();
+            default:
+                throw new IllegalArgumentException(String.format("Cannot deserialize packed type %d!", peek(pointer + 1)));
+        }
+    }
+
     /**
-     * Appends a string onto the buffer.
+     * Gets the next value on the buffer as a boolean array. This can read both packed and regular arrays.
      *
-     * @param string The value to append.
-     * @return The current buffer instance.
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
      */
-    public PacketBuffer putStr(String string) {
-        byte[] data;
-        try {
-            data = string.getBytes("UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace(); //Should never happen
-            data = new byte[0]; //Because javac
+    public boolean[] getBooleanArray() {
+        if (_startGetArray() == PACKED_ARRAY) {
+            int len = _startGetPackedArray(BOOLEAN, 1);
+            boolean[] array = new boolean[len];
+            for (int i = 0; i < len; i++)
+                array[i] = buf.get(pointer - len + i) == 1;
+            return array;
         }
-        _putInt(STR, data.length);
-        safePut(data);
-        return this;
+
+        boolean[] array = new boolean[nextInt()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = getBoolean();
+        return array;
     }
 
     /**
-     * Gets the next value on the buffer as a string.
+     * Gets the next value on the buffer as a int array. This can read both packed and regular arrays.
      *
      * <b>NOTE:</b> This will move the pointer forward if successful.
      *
      * @return The value.
      */
-    public String getStr() {
-        int len = _getInt(STR);
-        byte[] bytes = nextBytes(len);
-        try {
-            return new String(bytes, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace(); //Should never happen
-            return "RUH OH"; //Because javac
+    public int[] getIntArray() {
+        if (_startGetArray() == PACKED_ARRAY) {
+            int[] array = new int[_startGetPackedArray(INT, 4)];
+            buf.asIntBuffer().get(array);
+            return array;
         }
+
+        int[] array = new int[nextInt()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = getInt();
+        return array;
     }
 
     /**
-     * Appends a nil value onto the buffer.
+     * Gets the next value on the buffer as a long array. This can read both packed and regular arrays.
      *
-     * @return The current buffer instance.
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
      */
-    public PacketBuffer putNil() {
-        safePut(NIL);
-        return this;
+    public long[] getLongArray() {
+        if (_startGetArray() == PACKED_ARRAY) {
+            long[] array = new long[_startGetPackedArray(LONG, 8)];
+            buf.asLongBuffer().get(array);
+            return array;
+        }
+
+        long[] array = new long[nextInt()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = getLong();
+        return array;
     }
 
     /**
-     * Gets the next value on the buffer as a nil.
+     * Gets the next value on the buffer as a char array. This can read both packed and regular arrays.
      *
      * <b>NOTE:</b> This will move the pointer forward if successful.
      *
      * @return The value.
      */
-    public void getNil() {
-        skipMeta();
-        assertByte(NIL);
-        next();
+    public char[] getCharArray() {
+        if (_startGetArray() == PACKED_ARRAY) {
+            char[] array = new char[_startGetPackedArray(UTF16_CHAR, 2)];
+            buf.asCharBuffer().get(array);
+            return array;
+        }
+
+        char[] array = new char[nextInt()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = getChar();
+        return array;
     }
 
     /**
-     * Appends an map onto the buffer.
+     * Gets the next value on the buffer as a float array. This can read both packed and regular arrays.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
+     */
+    public float[] getFloatArray() {
+        if (_startGetArray() == PACKED_ARRAY) {
+            float[] array = new float[_startGetPackedArray(FLOAT, 4)];
+            buf.asFloatBuffer().get(array);
+            return array;
+        }
+
+        float[] array = new float[nextInt()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = getFloat();
+        return array;
+    }
+
+    /**
+     * Gets the next value on the buffer as a double array. This can read both packed and regular arrays.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
+     */
+    public double[] getDoubleArray() {
+        if (_startGetArray() == PACKED_ARRAY) {
+            double[] array = new double[_startGetPackedArray(DECIMAL, 8)];
+            buf.asDoubleBuffer().get(array);
+            return array;
+        }
+
+        double[] array = new double[nextInt()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = getDecimal();
+        return array;
+    }
+
+    /**
+     * Appends a string onto the buffer.
+     *
+     * @param string The value to append.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putStr(String string) {
+        if (strings != null && isEnabled(ProtocolFeature.STRING_TABLE)) {
+            int id = strings.lookup(string);
+            if (id >= 0) { //Already sent, a reference is enough
+                safePut(STR_REF);
+                putVarRaw(id);
+                return this;
+            }
+
+            id = strings.define(string);
+            if (id >= 0) {
+                byte[] data = string.getBytes(StandardCharsets.UTF_8);
+                safePut(STR_DEF);
+                putVarRaw(id);
+                reserve(4);
+                buf.putInt(pointer, data.length);
+                move(4);
+                safePut(data);
+                definedEntries = true;
+                return this;
+            }
+        }
+
+        byte[] data = string.getBytes(StandardCharsets.UTF_8);
+        _putInt(STR, data.length);
+        safePut(data);
+        return this;
+    }
+
+    private StringTable requireStringTable() {
+        if (strings == null)
+            throw new IllegalStateException("Cannot decode a string table entry without a string table!");
+        return strings;
+    }
+
+    /**
+     * Gets the next value on the buffer as a string.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
+     */
+    public String getStr() {
+        skipMeta();
+        byte type = next();
+        if (type == STR_REF)
+            return requireStringTable().get((int) nextVarRaw());
+
+        int id = -1;
+        if (type == STR_DEF)
+            id = (int) nextVarRaw();
+        else if (type != STR)
+            throw new IllegalStateException(String.format("Expected %d at position %d, got %d instead!", STR, pointer, type));
+
+        String string = _nextStr(nextInt());
+        if (id >= 0)
+            requireStringTable().define(id, string);
+        return string;
+    }
+
+    private String _nextStr(int len) {
+        if (!buf.hasArray())
+            return new String(nextBytes(len), StandardCharsets.UTF_8);
+
+        String string = new String(buf.array(), buf.arrayOffset() + pointer, len, StandardCharsets.UTF_8);
+        move(len);
+        return string;
+    }
+
+    /**
+     * Appends a raw binary blob onto the buffer.
+     *
+     * @param bytes The value to append.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putBytes(byte[] bytes) {
+        _putInt(BYTES, bytes.length);
+        safePut(bytes);
+        return this;
+    }
+
+    /**
+     * Appends a raw binary blob onto the buffer. The remaining bytes of the passed buffer are appended, its position
+     * is left unchanged.
+     *
+     * @param bytes The value to append.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putBytes(ByteBuffer bytes) {
+        int len = bytes.remaining();
+        _putInt(BYTES, len);
+        reserve(len);
+        buf.clear();
+        buf.position(pointer);
+        buf.put(bytes.duplicate());
+        pointer += len;
+        return this;
+    }
+
+    /**
+     * Gets the next value on the buffer as a raw binary blob, without copying it.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful. The returned buffer shares its storage with this
+     * packet buffer, see {@link #isShared()}.
+     *
+     * @return A slice of this buffer containing the value.
+     */
+    public ByteBuffer getBytes() {
+        int len = _getInt(BYTES);
+        buf.clear();
+        buf.position(pointer);
+        buf.limit(pointer + len);
+        ByteBuffer slice = buf.slice();
+        buf.clear();
+        move(len);
+        shared = true;
+        return slice;
+    }
+
+    /**
+     * Gets the next value on the buffer as a raw binary blob, copied into a new array.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
+     */
+    public byte[] getByteArray() {
+        int len = _getInt(BYTES);
+        return nextBytes(len);
+    }
+
+    /**
+     * Checks whether any values which share storage with this buffer (see {@link #getBytes()}) have been handed out.
+     * When this is the case, the buffer's storage must not be recycled.
+     *
+     * @return True if the storage is shared, false if otherwise.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Appends a nil value onto the buffer.
+     *
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putNil() {
+        safePut(NIL);
+        return this;
+    }
+
+    /**
+     * Gets the next value on the buffer as a nil.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
+     */
+    public void getNil() {
+        skipMeta();
+        assertByte(NIL);
+    }
+
+    /**
+     * Appends an map onto the buffer.
      *
      * @param map The value to append.
      * @return The current buffer instance.
      */
     public <K, V> PacketBuffer putMap(Map<K, V> map) {
         _putInt(MAP, map.size());
+        if (_isParallel(map.size())) {
+            _putParallel(map.entrySet().toArray(), true);
+            return this;
+        }
+
         for (Map.Entry<K, V> entry : map.entrySet()) {
             put(entry.getKey());
             put(entry.getValue());
@@ -574,6 +1327,368 @@ public class PacketBuffer {
         return getMap(new HashMap<>());
     }
 
+    /**
+     * Appends a struct (a non-packet object with {@link com.austinv11.introverted.mapping.Serialized} fields) onto the
+     * buffer. Once {@link ProtocolFeature#STRUCTS} has been negotiated, the field values are sent untagged in field
+     * order, otherwise the struct is sent as a map of field names to values.
+     *
+     * @param struct The value to append.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer putStruct(Object struct) {
+        StructSchema schema = StructSchema.of(struct.getClass());
+        if (schema == null)
+            throw new IllegalArgumentException(String.format("Cannot serialize type %s as a struct!", struct.getClass()));
+
+        int id = -1;
+        if (structs != null && isEnabled(ProtocolFeature.STRUCTS)) {
+            id = structs.lookup(struct.getClass());
+            if (id >= 0) { //Already sent, a reference to the schema is enough
+                safePut(STRUCT);
+                putVarRaw(id);
+            } else if ((id = structs.define(struct.getClass())) >= 0) {
+                safePut(STRUCT_DEF);
+                putVarRaw(id);
+                putVarRaw(schema.names.length);
+                for (int i = 0; i < schema.names.length; i++) {
+                    byte[] name = schema.names[i].getBytes(StandardCharsets.UTF_8);
+                    safePut(schema.kinds[i]);
+                    putVarRaw(name.length);
+                    safePut(name);
+                }
+                definedEntries = true;
+            }
+        }
+
+        Reflector reflector = Reflector.instance();
+        if (id < 0) { //Fall back to a map, which every receiver can read
+            _putInt(MAP, schema.names.length);
+            for (FieldInfo field : schema.fields) {
+                putStr(field.getName());
+                put(reflector.get(struct.getClass(), struct, field.getName()), field.getSerialized().unsigned());
+            }
+            return this;
+        }
+
+        for (int i = 0; i < schema.fields.length; i++) {
+            FieldInfo field = schema.fields[i];
+            switch (schema.kinds[i]) {
+                case BOOLEAN:
+                    safePut((byte) (reflector.getBoolean(struct, field) ? 1 : 0));
+                    break;
+                case VAR_INT:
+                case VAR_LONG:
+                    putVarRaw(zigZag(_getIntegral(reflector, struct, field)));
+                    break;
+                case VAR_U_INT:
+                    putVarRaw(_getIntegral(reflector, struct, field) & U_INT_MASK);
+                    break;
+                case VAR_U_LONG:
+                    putVarRaw(_getIntegral(reflector, struct, field));
+                    break;
+                case UTF16_CHAR:
+                    reserve(2);
+                    buf.putChar(pointer, reflector.getChar(struct, field));
+                    move(2);
+                    break;
+                case FLOAT:
+                    reserve(4);
+                    buf.putFloat(pointer, reflector.getFloat(struct, field));
+                    move(4);
+                    break;
+                case DECIMAL:
+                    reserve(8);
+                    buf.putDouble(pointer, reflector.getDouble(struct, field));
+                    move(8);
+                    break;
+                default:
+                    put(reflector.getObject(struct, field), field.getSerialized().unsigned());
+            }
+        }
+        return this;
+    }
+
+    static byte structKind(FieldInfo field) { //The (untagged) type a field's values are sent as in structs
+        boolean unsigned = field.getSerialized().unsigned();
+        switch (field.getKind()) {
+            case BOOLEAN:
+                return BOOLEAN;
+            case BYTE:
+            case SHORT:
+            case INT:
+                return unsigned ? VAR_U_INT : VAR_INT;
+            case LONG:
+                return unsigned ? VAR_U_LONG : VAR_LONG;
+            case CHAR:
+                return UTF16_CHAR;
+            case FLOAT:
+                return FLOAT;
+            case DOUBLE:
+                return DECIMAL;
+            default:
+                return TAGGED;
+        }
+    }
+
+    private static long _getIntegral(Reflector reflector, Object struct, FieldInfo field) {
+        switch (field.getKind()) {
+            case BYTE:
+                return reflector.getByte(struct, field);
+            case SHORT:
+                return reflector.getShort(struct, field);
+            case INT:
+                return reflector.getInt(struct, field);
+            default:
+                return reflector.getLong(struct, field);
+        }
+    }
+
+    private StructRegistry requireStructRegistry() {
+        if (structs == null)
+            throw new IllegalStateException("Cannot decode a struct without a struct registry!");
+        return structs;
+    }
+
+    private StructSchema _nextStructSchema(byte type) { //Assumes the tag has already been consumed
+        if (type == STRUCT)
+            return requireStructRegistry().get((int) nextVarRaw());
+        else if (type != STRUCT_DEF)
+            throw new IllegalStateException(String.format("Expected %d at position %d, got %d instead!", STRUCT, pointer, type));
+
+        int id = (int) nextVarRaw();
+        int count = (int) nextVarRaw();
+        String[] names = new String[count];
+        byte[] kinds = new byte[count];
+        for (int i = 0; i < count; i++) {
+            kinds[i] = next();
+            names[i] = _nextStr((int) nextVarRaw());
+        }
+        StructSchema schema = new StructSchema(names, kinds, null);
+        requireStructRegistry().define(id, schema);
+        return schema;
+    }
+
+    /**
+     * Gets the next value on the buffer as a struct. Fields are matched by name, so fields unknown to either side are
+     * skipped or left with their default values. This can read both structs and maps (which are sent when
+     * {@link ProtocolFeature#STRUCTS} has not been negotiated).
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @param type The class to read the struct into, a new instance is created without invoking any constructors.
+     * @return The value.
+     */
+    public <T> T getStruct(Class<T> type) {
+        skipMeta();
+        byte tag = next();
+        Reflector reflector = Reflector.instance();
+        T struct = reflector.instantiate(type);
+        if (tag == MAP) { //Sent without a schema, so the fields have to be looked up by name
+            int len = nextInt();
+            for (int i = 0; i < len; i++) {
+                FieldInfo field = reflector.getFieldInfo(type, getStr());
+                if (field != null && field.getSerialized() != null)
+                    _getTaggedField(reflector, struct, field);
+                else
+                    visitNext(SKIPPING_VISITOR);
+            }
+            return struct;
+        }
+
+        StructSchema schema = _nextStructSchema(tag);
+        FieldInfo[] fields = schema.resolve(type);
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == null)
+                _visitStructField(SKIPPING_VISITOR, schema.kinds[i]);
+            else
+                _getStructField(reflector, struct, fields[i], schema.kinds[i]);
+        }
+        return struct;
+    }
+
+    private void _getStructField(Reflector reflector, Object struct, FieldInfo field, byte kind) {
+        switch (kind) {
+            case BOOLEAN:
+                _putIntegral(reflector, struct, field, next());
+                break;
+            case VAR_INT:
+            case VAR_LONG:
+                _putIntegral(reflector, struct, field, unZigZag(nextVarRaw()));
+                break;
+            case VAR_U_INT:
+                _putIntegral(reflector, struct, field, nextVarRaw() & U_INT_MASK);
+                break;
+            case VAR_U_LONG:
+                _putIntegral(reflector, struct, field, nextVarRaw());
+                break;
+            case UTF16_CHAR:
+                _putIntegral(reflector, struct, field, buf.getChar(pointer));
+                move(2);
+                break;
+            case FLOAT:
+                _putDecimal(reflector, struct, field, Float.intBitsToFloat(nextInt()));
+                break;
+            case DECIMAL:
+                _putDecimal(reflector, struct, field, Double.longBitsToDouble(nextLong()));
+                break;
+            case TAGGED:
+                _getTaggedField(reflector, struct, field);
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Cannot deserialize struct field type %d!", kind));
+        }
+    }
+
+    private void _putIntegral(Reflector reflector, Object struct, FieldInfo field, long value) {
+        switch (field.getKind()) { //The sender's field type may differ slightly, so convert like a cast would
+            case BOOLEAN:
+                reflector.putBoolean(struct, field, value != 0);
+                break;
+            case BYTE:
+                reflector.putByte(struct, field, (byte) value);
+                break;
+            case SHORT:
+                reflector.putShort(struct, field, (short) value);
+                break;
+            case CHAR:
+                reflector.putChar(struct, field, (char) value);
+                break;
+            case INT:
+                reflector.putInt(struct, field, (int) value);
+                break;
+            case LONG:
+                reflector.putLong(struct, field, value);
+                break;
+            case FLOAT:
+                reflector.putFloat(struct, field, value);
+                break;
+            case DOUBLE:
+                reflector.putDouble(struct, field, value);
+                break;
+            default:
+                throw new IllegalStateException(String.format("Cannot deserialize a primitive into field %s!", field.getName()));
+        }
+    }
+
+    private void _putDecimal(Reflector reflector, Object struct, FieldInfo field, double value) {
+        switch (field.getKind()) {
+            case FLOAT:
+                reflector.putFloat(struct, field, (float) value);
+                break;
+            case DOUBLE:
+                reflector.putDouble(struct, field, value);
+                break;
+            default:
+                _putIntegral(reflector, struct, field, (long) value);
+        }
+    }
+
+    private void _getTaggedField(Reflector reflector, Object struct, FieldInfo field) {
+        switch (field.getKind()) {
+            case BOOLEAN:
+                reflector.putBoolean(struct, field, getBoolean());
+                break;
+            case FLOAT:
+            case DOUBLE:
+                _putDecimal(reflector, struct, field, getAsDouble());
+                break;
+            case OBJECT:
+                reflector.putObject(struct, field, skipNil() ? null : getNext(field.getType()));
+                break;
+            default:
+                _putIntegral(reflector, struct, field, getAsLong());
+        }
+    }
+
+    /**
+     * Gets the next value on the buffer, reading it as the specified type when that matters (byte arrays and structs).
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @param type The type of the value expected.
+     * @return The value.
+     *
+     * @see #getNext()
+     */
+    public Object getNext(Class<?> type) {
+        if (type == byte[].class)
+            return getByteArray();
+        else if (StructRegistry.isStruct(type))
+            return getStruct(type);
+        else
+            return getNext();
+    }
+
+    private Map<String, Object> _getStructMap(byte type) { //Assumes the tag has already been consumed
+        StructSchema schema = _nextStructSchema(type);
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < schema.names.length; i++) {
+            Object value;
+            switch (schema.kinds[i]) {
+                case BOOLEAN:
+                    value = next() == 1;
+                    break;
+                case VAR_INT:
+                    value = (int) unZigZag(nextVarRaw());
+                    break;
+                case VAR_LONG:
+                    value = unZigZag(nextVarRaw());
+                    break;
+                case VAR_U_INT:
+                    value = nextVarRaw() & U_INT_MASK;
+                    break;
+                case VAR_U_LONG:
+                    value = nextVarRaw();
+                    break;
+                case UTF16_CHAR:
+                    value = buf.getChar(pointer);
+                    move(2);
+                    break;
+                case FLOAT:
+                    value = Float.intBitsToFloat(nextInt());
+                    break;
+                case DECIMAL:
+                    value = Double.longBitsToDouble(nextLong());
+                    break;
+                case TAGGED:
+                    value = getNext();
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Cannot deserialize struct field type %d!", schema.kinds[i]));
+            }
+            map.put(schema.names[i], value);
+        }
+        return map;
+    }
+
+    private void _putInt(int integer, boolean unsigned) { //Picks the most compact encoding which has been negotiated
+        if (isEnabled(ProtocolFeature.COMPACT_NUMBERS)) {
+            if (unsigned)
+                putVarUInt(integer);
+            else
+                putVarInt(integer);
+        } else {
+            if (unsigned)
+                putUInt(integer);
+            else
+                putInt(integer);
+        }
+    }
+
+    private void _putLong(long longVal, boolean unsigned) { //Picks the most compact encoding which has been negotiated
+        if (isEnabled(ProtocolFeature.COMPACT_NUMBERS)) {
+            if (unsigned)
+                putVarULong(longVal);
+            else
+                putVarLong(longVal);
+        } else {
+            if (unsigned)
+                putULong(longVal);
+            else
+                putLong(longVal);
+        }
+    }
+
     /**
      * Appends an arbitrary object onto the buffer.
      *
@@ -593,54 +1708,55 @@ public class PacketBuffer {
     public PacketBuffer put(Object object, boolean preferUnsigned) {
         if (object == null)
             putNil();
-        else if (ClassUtils.isPrimitiveOrWrapper(object.getClass())) {
+        else if (object instanceof Number || object instanceof Character || object instanceof Boolean) { //Cheaper than ClassUtils#isPrimitiveOrWrapper()
             if (object.getClass().equals(Void.class))
                 putNil();
-            else if (object.getClass().equals(Byte.class)) {
-                if (preferUnsigned) {
-                    putUInt((Byte) object);
-                } else {
-                    putInt((Byte) object);
-                }
-            }
+            else if (object.getClass().equals(Byte.class))
+                put((int) (Byte) object, preferUnsigned);
             else if (object.getClass().equals(Short.class))
-                if (preferUnsigned) {
-                    putUInt((Short) object);
-                } else {
-                    putInt((Short) object);
-                }
+                put((int) (Short) object, preferUnsigned);
             else if (object.getClass().equals(Integer.class))
-                if (preferUnsigned) {
-                    putUInt((Integer) object);
-                } else {
-                    putInt((Integer) object);
-                }
+                put((int) (Integer) object, preferUnsigned);
             else if (object.getClass().equals(Float.class))
-                putDecimal((Float) object);
+                put((float) (Float) object, preferUnsigned);
             else if (object.getClass().equals(Double.class))
-                putDecimal((Double) object);
+                put((double) (Double) object, preferUnsigned);
             else if (object.getClass().equals(Character.class))
-                putChar((Character) object);
+                put((char) (Character) object, preferUnsigned);
             else if (object.getClass().equals(Boolean.class))
-                putBoolean((Boolean) object);
+                put((boolean) (Boolean) object, preferUnsigned);
             else if (object.getClass().equals(Long.class))
-                if (preferUnsigned) {
-                    putULong((Long) object);
-                } else {
-                    putLong((Long) object);
-                }
+                put((long) (Long) object, preferUnsigned);
             else {
                 throw new IllegalArgumentException(String.format("Cannot serialize type %s!", object.getClass()));
             }
         } else {
             if (object instanceof String)
                 putStr((String) object);
-            else if (object.getClass().isArray())
+            else if (object instanceof byte[])
+                putBytes((byte[]) object);
+            else if (object instanceof ByteBuffer)
+                putBytes((ByteBuffer) object);
+            else if (object instanceof Object[])
                 putArray((Object[]) object);
+            else if (object instanceof int[])
+                putArray((int[]) object);
+            else if (object instanceof long[])
+                putArray((long[]) object);
+            else if (object instanceof double[])
+                putArray((double[]) object);
+            else if (object instanceof float[])
+                putArray((float[]) object);
+            else if (object instanceof char[])
+                putArray((char[]) object);
+            else if (object instanceof boolean[])
+                putArray((boolean[]) object);
             else if (object instanceof Map)
                 putMap((Map) object);
             else if (object instanceof Collection)
                 putArray((Collection) object);
+            else if (StructRegistry.isStruct(object.getClass()))
+                putStruct(object);
             else {
                 throw new IllegalArgumentException(String.format("Cannot serialize type %s!", object.getClass()));
             }
@@ -648,6 +1764,172 @@ public class PacketBuffer {
         return this;
     }
 
+    /**
+     * Appends an int (or short or byte) onto the buffer, exactly like {@link #put(Object, boolean)} would but without
+     * boxing.
+     *
+     * @param integer The value to append.
+     * @param preferUnsigned When true, this will use unsigned types when possible.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer put(int integer, boolean preferUnsigned) {
+        _putInt(integer, preferUnsigned);
+        return this;
+    }
+
+    /**
+     * Appends a long onto the buffer, exactly like {@link #put(Object, boolean)} would but without boxing.
+     *
+     * @param longVal The value to append.
+     * @param preferUnsigned When true, this will use unsigned types when possible.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer put(long longVal, boolean preferUnsigned) {
+        _putLong(longVal, preferUnsigned);
+        return this;
+    }
+
+    /**
+     * Appends a float onto the buffer, exactly like {@link #put(Object, boolean)} would but without boxing.
+     *
+     * @param value The value to append.
+     * @param preferUnsigned Ignored.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer put(float value, boolean preferUnsigned) {
+        return isEnabled(ProtocolFeature.COMPACT_NUMBERS) ? putFloat(value) : putDecimal(value);
+    }
+
+    /**
+     * Appends a double onto the buffer, exactly like {@link #put(Object, boolean)} would but without boxing.
+     *
+     * @param value The value to append.
+     * @param preferUnsigned Ignored.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer put(double value, boolean preferUnsigned) {
+        return putDecimal(value);
+    }
+
+    /**
+     * Appends a char onto the buffer, exactly like {@link #put(Object, boolean)} would but without boxing.
+     *
+     * @param character The value to append.
+     * @param preferUnsigned Ignored.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer put(char character, boolean preferUnsigned) {
+        return isEnabled(ProtocolFeature.COMPACT_NUMBERS) ? putUtf16Char(character) : putChar(character);
+    }
+
+    /**
+     * Appends a boolean onto the buffer, exactly like {@link #put(Object, boolean)} would but without boxing.
+     *
+     * @param bool The value to append.
+     * @param preferUnsigned Ignored.
+     * @return The current buffer instance.
+     */
+    public PacketBuffer put(boolean bool, boolean preferUnsigned) {
+        return putBoolean(bool);
+    }
+
+    /**
+     * Gets the next value on the buffer as a long, converting from any integral type (including chars).
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
+     */
+    public long getAsLong() {
+        skipMeta();
+        switch (peek()) {
+            case U_INT:
+            case VAR_U_INT:
+                return getUInt();
+            case INT:
+            case VAR_INT:
+                return getInt();
+            case U_LONG:
+            case VAR_U_LONG:
+                return getULong();
+            case LONG:
+            case VAR_LONG:
+                return getLong();
+            case CHAR:
+            case UTF16_CHAR:
+                return getChar();
+            default:
+                throw new IllegalArgumentException(String.format("Cannot deserialize type %d as an integral number!", peek()));
+        }
+    }
+
+    /**
+     * Gets the next value on the buffer as an int, converting from any integral type (including chars).
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
+     */
+    public int getAsInt() {
+        return (int) getAsLong();
+    }
+
+    /**
+     * Gets the next value on the buffer as a double, converting from any numeric type.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
+     */
+    public double getAsDouble() {
+        skipMeta();
+        switch (peek()) {
+            case DECIMAL:
+                return getDecimal();
+            case FLOAT:
+                return getFloat();
+            default:
+                return getAsLong();
+        }
+    }
+
+    /**
+     * Gets the next value on the buffer as a float, converting from any numeric type.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
+     */
+    public float getAsFloat() {
+        return (float) getAsDouble();
+    }
+
+    /**
+     * Gets the next value on the buffer as a char, converting from any integral type.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @return The value.
+     */
+    public char getAsChar() {
+        return (char) getAsLong();
+    }
+
+    /**
+     * Skips the next value on the buffer if it is nil.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if a nil was present.
+     *
+     * @return True if a nil was skipped, false if otherwise.
+     */
+    public boolean skipNil() {
+        skipMeta();
+        if (peek() != NIL)
+            return false;
+        next();
+        return true;
+    }
+
     /**
      * Gets the next value on the buffer.
      *
@@ -661,31 +1943,250 @@ public class PacketBuffer {
             case BOOLEAN:
                 return getBoolean();
             case U_INT:
+            case VAR_U_INT:
                 return getUInt();
             case INT:
+            case VAR_INT:
                 return getInt();
             case U_LONG:
+            case VAR_U_LONG:
                 return getULong();
             case LONG:
+            case VAR_LONG:
                 return getLong();
             case CHAR:
+            case UTF16_CHAR:
                 return getChar();
+            case FLOAT:
+                return getFloat();
             case DECIMAL:
                 return getDecimal();
             case ARRAY:
                 return getArray();
+            case PACKED_ARRAY:
+                return getPackedArray();
+            case BYTES:
+                return getBytes();
             case STR:
+            case STR_DEF:
+            case STR_REF:
                 return getStr();
             case NIL:
                 getNil();
                 return null;
             case MAP:
                 return getMap();
+            case STRUCT:
+            case STRUCT_DEF:
+                return _getStructMap(next());
             default:
                 throw new IllegalArgumentException(String.format("Cannot deserialize type %d!", peek()));
         }
     }
 
+    /**
+     * Walks every remaining value on the buffer, calling the matching {@link PacketVisitor} callbacks instead of
+     * decoding the values.
+     *
+     * <b>NOTE:</b> This will move the pointer to the end of the payload. String definitions are still registered in the
+     * {@link StringTable} (see {@link #setStringTable(StringTable)}), as later packets may refer to them.
+     *
+     * @param visitor The visitor to call.
+     */
+    public void visit(PacketVisitor visitor) {
+        while (hasNext())
+            visitNext(visitor);
+    }
+
+    /**
+     * Walks the next value on the buffer, calling the matching {@link PacketVisitor} callbacks instead of decoding the
+     * value. Arrays and maps are walked in their entirety.
+     *
+     * <b>NOTE:</b> This will move the pointer forward if successful.
+     *
+     * @param visitor The visitor to call.
+     */
+    public void visitNext(PacketVisitor visitor) {
+        skipMeta();
+        byte type = next();
+        switch (type) {
+            case BOOLEAN:
+                visitor.onBoolean(next() == 1);
+                break;
+            case U_INT:
+                visitor.onUInt(nextInt() & U_INT_MASK);
+                break;
+            case VAR_U_INT:
+                visitor.onUInt(nextVarRaw() & U_INT_MASK);
+                break;
+            case INT:
+                visitor.onInt(nextInt());
+                break;
+            case VAR_INT:
+                visitor.onInt((int) unZigZag(nextVarRaw()));
+                break;
+            case U_LONG:
+                visitor.onULong(nextLong());
+                break;
+            case VAR_U_LONG:
+                visitor.onULong(nextVarRaw());
+                break;
+            case LONG:
+                visitor.onLong(nextLong());
+                break;
+            case VAR_LONG:
+                visitor.onLong(unZigZag(nextVarRaw()));
+                break;
+            case CHAR:
+                visitor.onChar((char) nextInt());
+                break;
+            case UTF16_CHAR:
+                visitor.onChar(buf.getChar(pointer));
+                move(2);
+                break;
+            case FLOAT:
+                visitor.onFloat(Float.intBitsToFloat(nextInt()));
+                break;
+            case DECIMAL:
+                visitor.onDecimal(Double.longBitsToDouble(nextLong()));
+                break;
+            case NIL:
+                visitor.onNil();
+                break;
+            case STR:
+                _visitStrBytes(visitor, -1);
+                break;
+            case STR_DEF:
+                _visitStrBytes(visitor, (int) nextVarRaw());
+                break;
+            case STR_REF:
+                visitor.onStrRef(requireStringTable().get((int) nextVarRaw()));
+                break;
+            case BYTES: {
+                int len = nextInt();
+                visitor.onBytes(buf, pointer, len);
+                move(len);
+                break;
+            }
+            case ARRAY: {
+                int len = nextInt();
+                visitor.onArrayStart(len);
+                for (int i = 0; i < len; i++)
+                    visitNext(visitor);
+                visitor.onArrayEnd();
+                break;
+            }
+            case PACKED_ARRAY:
+                _visitPackedArray(visitor);
+                break;
+            case MAP: {
+                int len = nextInt();
+                visitor.onMapStart(len);
+                for (int i = 0; i < len * 2; i++)
+                    visitNext(visitor);
+                visitor.onMapEnd();
+                break;
+            }
+            case STRUCT:
+            case STRUCT_DEF: {
+                StructSchema schema = _nextStructSchema(type);
+                visitor.onStructStart(schema.kinds.length);
+                for (byte kind : schema.kinds)
+                    _visitStructField(visitor, kind);
+                visitor.onStructEnd();
+                break;
+            }
+            default:
+                throw new IllegalArgumentException(String.format("Cannot deserialize type %d!", type));
+        }
+    }
+
+    private void _visitStrBytes(PacketVisitor visitor, int id) { //Assumes the tag (and id) has already been consumed
+        int len = nextInt();
+        int offset = pointer;
+        if (id >= 0) //Definitions are the only strings which must be decoded
+            requireStringTable().define(id, _nextStr(len));
+        else
+            move(len);
+        visitor.onStrBytes(buf, offset, len);
+    }
+
+    private void _visitStructField(PacketVisitor visitor, byte kind) { //Struct values are untagged unless they are TAGGED
+        switch (kind) {
+            case BOOLEAN:
+                visitor.onBoolean(next() == 1);
+                break;
+            case VAR_INT:
+                visitor.onInt((int) unZigZag(nextVarRaw()));
+                break;
+            case VAR_LONG:
+                visitor.onLong(unZigZag(nextVarRaw()));
+                break;
+            case VAR_U_INT:
+                visitor.onUInt(nextVarRaw() & U_INT_MASK);
+                break;
+            case VAR_U_LONG:
+                visitor.onULong(nextVarRaw());
+                break;
+            case UTF16_CHAR:
+                visitor.onChar(buf.getChar(pointer));
+                move(2);
+                break;
+            case FLOAT:
+                visitor.onFloat(Float.intBitsToFloat(nextInt()));
+                break;
+            case DECIMAL:
+                visitor.onDecimal(Double.longBitsToDouble(nextLong()));
+                break;
+            case TAGGED:
+                visitNext(visitor);
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Cannot deserialize struct field type %d!", kind));
+        }
+    }
+
+    private void _visitPackedArray(PacketVisitor visitor) { //Assumes the tag has already been consumed
+        byte elementType = next();
+        int len = nextInt();
+        visitor.onArrayStart(len);
+        for (int i = 0; i < len; i++) {
+            switch (elementType) {
+                case BOOLEAN:
+                    visitor.onBoolean(next() == 1);
+                    break;
+                case INT:
+                    visitor.onInt(nextInt());
+                    break;
+                case LONG:
+                    visitor.onLong(nextLong());
+                    break;
+                case UTF16_CHAR:
+                    visitor.onChar(buf.getChar(pointer));
+                    move(2);
+                    break;
+                case FLOAT:
+                    visitor.onFloat(Float.intBitsToFloat(nextInt()));
+                    break;
+                case DECIMAL:
+                    visitor.onDecimal(Double.longBitsToDouble(nextLong()));
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Cannot deserialize packed type %d!", elementType));
+            }
+        }
+        visitor.onArrayEnd();
+    }
+
+    /**
+     * Checks if there are any values left to be read from the payload (as reported by the packet's length header).
+     *
+     * @return True if there are more values, false if otherwise.
+     */
+    public boolean hasNext() {
+        return Math.max(pointer, HEADER_SIZE) < HEADER_SIZE + buf.getInt(2);
+    }
+
     private void assertPosition(int position) {
         if (this.pointer != position)
             throw new IllegalStateException(String.format("Pointer expected at position %d, is at %d instead!", position, this.pointer));
@@ -700,7 +2201,7 @@ public class PacketBuffer {
      *
      * @param newPosition The new position that the pointer should point to in the buffer.
      */
-    public synchronized void movePointer(int newPosition) {
+    public void movePointer(int newPosition) {
         pointer = newPosition;
     }
 
@@ -718,14 +2219,14 @@ public class PacketBuffer {
      */
     public void reset() {
         movePointer(0);
+        definedEntries = false;
     }
 
     private void updateSize() {
-        int size = pointer - 6; //Ignore metadata in the size
-        buf[2] = (byte) (size >> 24);
-        buf[3] = (byte) ((size >> 16) & MASK);
-        buf[4] = (byte) ((size >> 8) & MASK);
-        buf[5] = (byte) (size & MASK);
+        reserve(0); //Packets without a payload still get a complete header
+        if (definedEntries)
+            buf.put(0, (byte) (buf.get(0) | FLAG_DEFINITIONS));
+        buf.putInt(2, pointer - HEADER_SIZE); //Ignore metadata in the size
     }
 
     /**
@@ -736,8 +2237,125 @@ public class PacketBuffer {
     public byte[] flush() {
         updateSize();
         //Don't need to worry about zeroing, the data will be overwritten eventually.
-        byte[] toReturn = Arrays.copyOfRange(buf, 0, pointer);
+        byte[] toReturn = new byte[pointer];
+        buf.clear();
+        buf.get(toReturn);
         reset();
         return toReturn;
     }
+
+    /**
+     * Flushes the contents of this buffer directly into an output stream and resets the contents. The frame is written
+     * with the header format of the negotiated protocol version (see {@link #setProtocolVersion(byte)}).
+     *
+     * @param out The stream to write to.
+     *
+     * @throws IOException
+     */
+    public void flush(OutputStream out) throws IOException {
+        updateSize();
+        boolean compact = protocolVersion >= COMPACT_HEADER_VERSION;
+        boolean compressed = compressor != null && ProtocolFeature.COMPRESSION.isEnabled(features)
+                && compressor.compress(buf, pointer, out, compact);
+        if (!compressed) {
+            int start = compact ? compactHeader(buf) : 0;
+            if (buf.hasArray()) { //No need to copy anything
+                out.write(buf.array(), buf.arrayOffset() + start, pointer - start);
+            } else {
+                byte[] data = new byte[pointer - start];
+                buf.clear();
+                buf.position(start);
+                buf.get(data);
+                out.write(data);
+            }
+        }
+        reset();
+
+        if (pool != null && buf.capacity() > MAX_RETAINED_SIZE) { //Don't hold onto huge buffers after huge packets
+            pool.release(buf);
+            buf = pool.acquire(INITIAL_SIZE);
+        }
+    }
+
+    /**
+     * Rewrites the (version 1) header of a frame in place as a compact (version 2) header: the opcode followed by a
+     * varint containing the payload length shifted left by 2, with the frame flags in the lowest 2 bits. The compact
+     * header ends where the payload starts.
+     *
+     * @param frame The frame (index 0 is the start of the frame).
+     * @return The index the compact header starts at.
+     */
+    static int compactHeader(ByteBuffer frame) {
+        long header = ((long) frame.getInt(2) << 2) | ((frame.get(0) & 0xFF) >>> 6); //The flags are the upper 2 bits
+        int size = 1;
+        for (long remaining = header >>> 7; remaining != 0; remaining >>>= 7)
+            size++;
+
+        int start = HEADER_SIZE - 1 - size;
+        frame.put(start, frame.get(1));
+        int index = start + 1;
+        while ((header & ~0x7FL) != 0) {
+            frame.put(index++, (byte) ((header & 0x7F) | 0x80));
+            header >>>= 7;
+        }
+        frame.put(index, (byte) header);
+        return start;
+    }
+
+    private static final class ParallelEncoder extends RecursiveAction { //Encodes a range of segments, splitting it in half until one is left
+
+        private static final long serialVersionUID = 1L; //Never actually serialized, but ForkJoinTask is Serializable
+        private static final int MIN_SEGMENT_SIZE = 1024;
+        private static final int SEGMENTS_PER_THREAD = 4; //Extra segments give work stealing something to balance with
+
+        private final Object[] elements;
+        private final boolean entries;
+        private final long features;
+        private final int segmentSize;
+        private final PacketBuffer[] segments;
+        private final int from, to;
+
+        private ParallelEncoder(Object[] elements, boolean entries, long features, int segmentSize,
+                                PacketBuffer[] segments, int from, int to) {
+            this.elements = elements;
+            this.entries = entries;
+            this.features = features;
+            this.segmentSize = segmentSize;
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+        }
+
+        static PacketBuffer[] encode(ForkJoinPool pool, Object[] elements, boolean entries, long features) {
+            int segmentSize = Math.max(MIN_SEGMENT_SIZE, elements.length / (pool.getParallelism() * SEGMENTS_PER_THREAD));
+            PacketBuffer[] segments = new PacketBuffer[(elements.length + segmentSize - 1) / segmentSize];
+            pool.invoke(new ParallelEncoder(elements, entries, features, segmentSize, segments, 0, segments.length));
+            return segments;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ParallelEncoder(elements, entries, features, segmentSize, segments, from, mid),
+                        new ParallelEncoder(elements, entries, features, segmentSize, segments, mid, to));
+                return;
+            }
+
+            //Segments have no string table or struct registry, so nothing is defined
+            PacketBuffer segment = new PacketBuffer(null, ByteBuffer.allocate(INITIAL_SIZE), HEADER_SIZE);
+            segment.setFeatures(features);
+            int end = Math.min(elements.length, (from + 1) * segmentSize);
+            for (int i = from * segmentSize; i < end; i++) {
+                if (entries) {
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) elements[i];
+                    segment.put(entry.getKey());
+                    segment.put(entry.getValue());
+                } else {
+                    segment.put(elements[i]);
+                }
+            }
+            segments[from] = segment;
+        }
+    }
 }
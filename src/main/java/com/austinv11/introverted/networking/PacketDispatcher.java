@@ -0,0 +1,120 @@
+package com.austinv11.introverted.networking;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * This tracks the registered packet consumers of a {@link PacketHandler} and dispatches received packets to them. The
+ * combined interest of all consumers is cached so that it can be checked before anything is decoded.
+ */
+public class PacketDispatcher implements PacketFilter {
+
+    private final List<Consumer<Packet>> consumers = new CopyOnWriteArrayList<>();
+    private volatile boolean[] interest = new boolean[256]; //Indexed by opcode
+    private volatile int interestTypes; //The amount of registered types the interest was computed for
+
+    /**
+     * Registers a consumer.
+     *
+     * @param consumer The consumer, this may implement {@link PacketFilter} to narrow the packets it receives.
+     */
+    public void add(Consumer<Packet> consumer) {
+        consumers.add(consumer);
+        _updateInterest();
+    }
+
+    /**
+     * Unregisters a specific instance of a consumer.
+     *
+     * @param consumer The consumer.
+     */
+    public void remove(Consumer<Packet> consumer) {
+        consumers.remove(consumer);
+        _updateInterest();
+    }
+
+    /**
+     * Gets the amount of registered consumers.
+     *
+     * @return The amount of consumers.
+     */
+    public int size() {
+        return consumers.size();
+    }
+
+    private synchronized void _updateInterest() {
+        int types = PacketType.count();
+        List<PacketType> registered = PacketType.values();
+        boolean[] interest = new boolean[256];
+        for (Consumer<Packet> consumer : consumers) {
+            PacketFilter filter = PacketFilter.of(consumer);
+            for (PacketType type : registered)
+                interest[type.getOpcode()] |= filter.isInterested(type);
+        }
+        this.interest = interest;
+        this.interestTypes = types;
+    }
+
+    @Override
+    public boolean isInterested(PacketType type) {
+        if (interestTypes != PacketType.count()) //Types were registered after the consumers were
+            _updateInterest();
+        return interest[type.getOpcode()];
+    }
+
+    /**
+     * Passes a packet along to every consumer interested in it. The packet is only decoded if at least one consumer
+     * is interested.
+     *
+     * @param packet The packet.
+     */
+    public void dispatch(LazyPacket packet) {
+        dispatch(null, packet);
+    }
+
+    /**
+     * Passes a packet along to every consumer interested in it. The packet is only decoded if at least one consumer
+     * is interested.
+     *
+     * @param connection The connection the packet was received through, this is passed along to
+     *                   {@link ConnectionConsumer}s.
+     * @param packet The packet.
+     */
+    public void dispatch(PacketSocket connection, LazyPacket packet) {
+        for (Consumer<Packet> consumer : consumers) {
+            if (PacketFilter.of(consumer).isInterested(packet.getType()))
+                _deliver(consumer, connection, packet.get());
+        }
+    }
+
+    /**
+     * Passes a packet along to every consumer interested in it.
+     *
+     * @param packet The packet.
+     */
+    public void dispatch(Packet packet) {
+        dispatch(null, packet);
+    }
+
+    /**
+     * Passes a packet along to every consumer interested in it.
+     *
+     * @param connection The connection the packet was received through, this is passed along to
+     *                   {@link ConnectionConsumer}s.
+     * @param packet The packet.
+     */
+    public void dispatch(PacketSocket connection, Packet packet) {
+        for (Consumer<Packet> consumer : consumers) {
+            if (PacketFilter.of(consumer).isInterested(packet.getType()))
+                _deliver(consumer, connection, packet);
+        }
+    }
+
+    private static void _deliver(Consumer<Packet> consumer, PacketSocket connection, Packet packet) {
+        if (consumer instanceof ConnectionConsumer)
+            ((ConnectionConsumer) consumer).accept(connection, packet);
+        else
+            consumer.accept(packet);
+    }
+}
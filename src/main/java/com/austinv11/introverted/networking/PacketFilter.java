@@ -0,0 +1,69 @@
+package com.austinv11.introverted.networking;
+
+import java.util.function.Consumer;
+
+/**
+ * This declares which packet types a packet consumer is interested in. Packets which no consumer is interested in are
+ * skipped without decoding their payloads.
+ *
+ * Consumers which do not implement this are assumed to be interested in every packet type.
+ */
+@FunctionalInterface
+public interface PacketFilter {
+
+    /**
+     * A filter which is interested in every packet type.
+     */
+    PacketFilter ALL = type -> true;
+
+    /**
+     * Checks if packets of a type should be decoded and passed along.
+     *
+     * @param type The packet type.
+     * @return True if interested, false if otherwise.
+     */
+    boolean isInterested(PacketType type);
+
+    /**
+     * Gets the filter declared by a consumer.
+     *
+     * @param consumer The consumer.
+     * @return The consumer itself if it is a {@link PacketFilter}, otherwise {@link #ALL}.
+     */
+    static PacketFilter of(Consumer<?> consumer) {
+        return consumer instanceof PacketFilter ? (PacketFilter) consumer : ALL;
+    }
+
+    /**
+     * Wraps a consumer so that it only receives packets of a single type.
+     *
+     * @param type The type of packets to pass along.
+     * @param consumer The consumer to wrap.
+     * @return The filtered consumer.
+     */
+    static <T extends Packet> Consumer<Packet> forType(PacketType type, Consumer<T> consumer) {
+        return new TypeFilteredConsumer<>(type, consumer);
+    }
+}
+
+class TypeFilteredConsumer<T extends Packet> implements Consumer<Packet>, PacketFilter {
+
+    private final PacketType type;
+    private final Consumer<T> consumer;
+
+    TypeFilteredConsumer(PacketType type, Consumer<T> consumer) {
+        this.type = type;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public boolean isInterested(PacketType type) {
+        return this.type == type;
+    }
+
+    @Override
+    public void accept(Packet packet) {
+        if (packet.getType() == type)
+            consumer.accept((T) packet);
+    }
+}
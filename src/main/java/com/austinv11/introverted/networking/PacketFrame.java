@@ -0,0 +1,85 @@
+package com.austinv11.introverted.networking;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This represents a single, fully received packet (header included) whose storage may be recycled.
+ */
+public final class PacketFrame {
+
+    private final ByteBuffer buffer;
+    private final int length;
+    private final BufferPool pool;
+    private boolean released = false;
+    private boolean retained = false;
+
+    PacketFrame(ByteBuffer buffer, int length, BufferPool pool) {
+        this.buffer = buffer;
+        this.length = length;
+        this.pool = pool;
+    }
+
+    /**
+     * Gets the buffer containing the frame. Index 0 of the buffer is the start of the frame.
+     *
+     * @return The backing buffer, this may be larger than the frame itself.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Gets the total length of the frame (including its header).
+     *
+     * @return The length in bytes.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the packet type from the frame's header.
+     *
+     * @return The packet type, or null if nothing is registered to its opcode.
+     */
+    public PacketType getOp() {
+        return PacketType.of(buffer.get(1));
+    }
+
+    /**
+     * Checks if the frame defines any new entries in the connection's {@link StringTable} or {@link StructRegistry}, in
+     * which case it must be decoded even if nothing is interested in it.
+     *
+     * @return True if string or struct definitions are present, false if otherwise.
+     */
+    public boolean definesEntries() {
+        return (buffer.get(0) & PacketBuffer.FLAG_DEFINITIONS) != 0;
+    }
+
+    /**
+     * Creates a {@link PacketBuffer} which reads the contents of this frame.
+     *
+     * @return The new packet buffer.
+     */
+    public PacketBuffer toPacketBuffer() {
+        return new PacketBuffer(buffer);
+    }
+
+    /**
+     * Marks the frame's storage as being referenced elsewhere (i.e. by a {@link PacketBuffer#getBytes()} slice), so it
+     * will not be recycled when released.
+     */
+    public void retain() {
+        retained = true;
+    }
+
+    /**
+     * Returns the frame's storage to the pool it was acquired from, unless it has been retained. The frame (and
+     * anything which was read from it without copying, unless retained) must not be used after this is called.
+     */
+    public void release() {
+        if (!released && !retained && pool != null)
+            pool.release(buffer);
+        released = true;
+    }
+}
@@ -1,15 +1,23 @@
 package com.austinv11.introverted.networking;
 
+import com.austinv11.introverted.networking.packets.BatchPacket;
+import com.austinv11.introverted.networking.packets.ChunkPacket;
 import com.austinv11.introverted.networking.packets.ConnectionKilledPacket;
 import com.austinv11.introverted.networking.packets.PingPacket;
 import com.austinv11.introverted.networking.packets.PongPacket;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.concurrent.SynchronousQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * This represents a generic packet handler (either a client or server).
@@ -23,6 +31,18 @@ public interface PacketHandler extends Closeable {
      */
     void send(Packet packet);
 
+    /**
+     * Sends many packets over the wire in a single frame, this is considerably cheaper than sending many small packets
+     * individually.
+     *
+     * @param packets The packets to send, they are received in order.
+     *
+     * @see BatchPacket
+     */
+    default void sendBatch(Collection<? extends Packet> packets) {
+        send(new BatchPacket(packets));
+    }
+
     /**
      * This registers a packet listener.
      *
@@ -30,16 +50,14 @@ public interface PacketHandler extends Closeable {
      * @param packetHandler The packet listener.
      */
     default <T extends Packet> void handle(PacketType packetType, Consumer<T> packetHandler) {
-        handle(p -> {
-            if (p.getType() == packetType)
-                packetHandler.accept((T) p);
-        });
+        handle(PacketFilter.forType(packetType, packetHandler));
     }
 
     /**
      * This registers a generic packet listener.
      *
-     * @param packetConsumer The packet listener.
+     * @param packetConsumer The packet listener, this may implement {@link PacketFilter} so that packets it is not
+     *                       interested in do not need to be decoded.
      */
     void handle(Consumer<Packet> packetConsumer);
 
@@ -50,6 +68,29 @@ public interface PacketHandler extends Closeable {
      */
     void unregisterPacketConsumer(Consumer<Packet> packetConsumer);
 
+    /**
+     * Gets the amount of registered packet listeners, including the temporary ones of pending waits.
+     *
+     * @return The amount of packet listeners.
+     */
+    int getPacketConsumerCount();
+
+    /**
+     * Sets whether received packets of a type are recycled, this is disabled by default. When enabled, each connection
+     * reuses a single instance for every packet of that type it receives, overwriting its fields in place. This avoids
+     * allocating a packet per message for high rate types (such as pings).
+     *
+     * <b>NOTE:</b> Recycled packets are only valid for the duration of the consumer callbacks they are passed to.
+     * Consumers which keep them (or their mutable contents) around for longer, including packets returned by
+     * {@link #waitFor(Predicate)} and {@link #exchange(TraceablePacket)}, must copy them out instead.
+     *
+     * @param packetType The type of packets to recycle.
+     * @param recycle True to recycle instances, false to create a new instance for every packet.
+     *
+     * @see PacketInputStream#setRecycling(PacketType, boolean)
+     */
+    void setRecycling(PacketType packetType, boolean recycle);
+
     /**
      * Registers a handler which will automatically unregister via a the result of the listener.
      *
@@ -86,9 +127,11 @@ public interface PacketHandler extends Closeable {
      * This blocks the current thread until the passed predicate listening to packets returns true.
      *
      * @param packetPredicate The packet predicate.
-     * @param timeout The amount of time to wait before forcibly interrupting the blocking.
+     * @param timeout The amount of time to wait before forcibly interrupting the blocking, a negative timeout waits
+     *                indefinitely.
      * @param timeoutUnit The unit which the timeout represents.
-     * @return The packet which caused the blocking to end.
+     * @return The packet which caused the blocking to end, or null if the timeout elapsed first. Either way, the
+     * predicate is unregistered afterwards.
      *
      * @throws InterruptedException
      */
@@ -100,9 +143,10 @@ public interface PacketHandler extends Closeable {
      * This blocks the current thread until the next packet of the given type is received.
      *
      * @param type The type of packet to wait for.
-     * @param timeout The amount of time to wait before forcibly interrupting the blocking.
+     * @param timeout The amount of time to wait before forcibly interrupting the blocking, a negative timeout waits
+     *                indefinitely.
      * @param timeoutUnit The unit which the timeout represents.
-     * @return The packet which caused the blocking to end.
+     * @return The packet which caused the blocking to end, or null if the timeout elapsed first.
      *
      * @throws InterruptedException
      */
@@ -126,18 +170,56 @@ public interface PacketHandler extends Closeable {
         }
     }
 
+    /**
+     * This facilitates a packet exchange without blocking (sends a packet, then completes the returned future once its
+     * response arrives). Any number of exchanges may be in flight at once, each response is matched to its request by
+     * id in constant time. Only ops which respond to the request's op complete the exchange, see
+     * {@link PacketType#isResponse(PacketType)}.
+     *
+     * @param sending The packet to send.
+     * @return The future which is completed with the response. Cancelling it stops waiting for the response.
+     *
+     * @see PendingExchanges
+     */
+    <T extends TraceablePacket> CompletableFuture<T> exchangeAsync(TraceablePacket sending);
+
+    /**
+     * This facilitates a packet exchange without blocking, which fails if no response arrives in time.
+     *
+     * @param sending The packet to send.
+     * @param timeout The amount of time to wait for the response, a negative timeout waits indefinitely.
+     * @param timeoutUnit The unit which the timeout represents.
+     * @return The future which is completed with the response, or completed exceptionally with a
+     * {@link TimeoutException} once the timeout elapses. Either way, the exchange is no longer tracked afterwards.
+     *
+     * @see HashedWheelTimer#shared()
+     */
+    default <T extends TraceablePacket> CompletableFuture<T> exchangeAsync(TraceablePacket sending, long timeout, TimeUnit timeoutUnit) {
+        return Support.withTimeout(exchangeAsync(sending), timeout, timeoutUnit);
+    }
+
     /**
      * This facilitates a packet exchange (sends a packet, then immediately waits for its response).
      *
      * @param sending The packet to send.
-     * @param timeout The amount of time to wait before forcibly interrupting the blocking.
+     * @param timeout The amount of time to wait before forcibly interrupting the blocking, a negative timeout waits
+     *                indefinitely.
      * @param timeoutUnit The unit which the timeout represents.
-     * @return The response from the server.
+     * @return The response from the server, or null if the timeout elapsed first.
      *
      * @throws InterruptedException
      */
     default TraceablePacket exchange(TraceablePacket sending, long timeout, TimeUnit timeoutUnit) throws InterruptedException {
-        return (TraceablePacket) Support.waitFor(this, p -> p instanceof TraceablePacket && ((TraceablePacket) p).getId() == sending.getId(), timeout, timeoutUnit, () -> send(sending));
+        CompletableFuture<TraceablePacket> response = exchangeAsync(sending, timeout, timeoutUnit);
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException)
+                return null;
+            throw new RuntimeException(e.getCause());
+        } finally {
+            response.cancel(false); //i.e. when interrupted
+        }
     }
 
     /**
@@ -154,6 +236,88 @@ public interface PacketHandler extends Closeable {
         }
     }
 
+    /**
+     * Streams elements to the receiver in chunks, the source is only consumed as fast as the chunks can be sent. So
+     * arbitrarily many elements can be sent without them ever being held in memory at once.
+     *
+     * @param source The elements to send.
+     * @param chunkSize The maximum amount of elements sent per chunk.
+     * @return The id of the stream.
+     *
+     * @throws IllegalArgumentException If the chunk size is less than 1.
+     *
+     * @see #receiveChunked()
+     */
+    default long sendChunked(Iterator<?> source, int chunkSize) {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException(String.format("Chunk size must be at least 1, got %d!", chunkSize));
+
+        Object[] elements = new Object[chunkSize];
+        long id = 0;
+        int sequence = 0;
+        boolean last;
+        do {
+            int size = 0;
+            while (size < chunkSize && source.hasNext())
+                elements[size++] = source.next();
+            last = !source.hasNext();
+
+            Object[] chunk = Arrays.copyOf(elements, size);
+            ChunkPacket packet = sequence == 0 ? new ChunkPacket(chunk, last) : new ChunkPacket(id, sequence, chunk, last);
+            send(packet);
+            id = packet.getId();
+            sequence++;
+        } while (!last);
+        return id;
+    }
+
+    /**
+     * Streams elements to the receiver in chunks, the source is only consumed as fast as the chunks can be sent.
+     *
+     * @param source The elements to send.
+     * @param chunkSize The maximum amount of elements sent per chunk.
+     * @return The id of the stream.
+     *
+     * @throws IllegalArgumentException If the chunk size is less than 1.
+     *
+     * @see #sendChunked(Iterator, int)
+     */
+    default long sendChunked(Stream<?> source, int chunkSize) {
+        return sendChunked(source.iterator(), chunkSize);
+    }
+
+    /**
+     * Receives the next chunked stream which is started by the other side. Its elements can be iterated as they
+     * arrive, but this must be done on a different thread than the one packets are dispatched on.
+     *
+     * @return The iterator over the stream's elements.
+     *
+     * @throws IllegalStateException If packets are dispatched on event loops, which must never block.
+     *
+     * @see ChunkIterator
+     */
+    default ChunkIterator receiveChunked() {
+        ChunkIterator iterator = new ChunkIterator(this, ChunkIterator.DEFAULT_CAPACITY);
+        handle(iterator);
+        return iterator;
+    }
+
+    /**
+     * Receives a specific chunked stream, this should be called before the other side starts the stream.
+     *
+     * @param id The id of the stream.
+     * @return The iterator over the stream's elements.
+     *
+     * @throws IllegalStateException If packets are dispatched on event loops, which must never block.
+     *
+     * @see ChunkIterator
+     */
+    default ChunkIterator receiveChunked(long id) {
+        ChunkIterator iterator = new ChunkIterator(this, id, ChunkIterator.DEFAULT_CAPACITY);
+        handle(iterator);
+        return iterator;
+    }
+
     /**
      * This attempts to determine the latency between one side to the other.
      *
@@ -191,19 +355,33 @@ final class Support { //Because no private methods in java 8
 
     static Packet waitFor(PacketHandler handler, Predicate<Packet> packetPredicate, long timeout, TimeUnit timeoutUnit,
                           Runnable hook) throws InterruptedException {
-        SynchronousQueue<Packet> result = new SynchronousQueue<>();
-
-        handler.temporarilyHandle(p -> {
-            if (packetPredicate.test(p)) {
-                result.offer(p);
-                return true;
-            } else {
-                return false;
-            }
-        });
+        CompletableFuture<Packet> result = new CompletableFuture<>();
+        Consumer<Packet> listener = packet -> {
+            if (!result.isDone() && packetPredicate.test(packet))
+                result.complete(packet);
+        };
+        handler.handle(listener);
+
+        try {
+            hook.run();
+            return withTimeout(result, timeout, timeoutUnit).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException)
+                return null;
+            throw new RuntimeException(e.getCause());
+        } finally {
+            result.cancel(false); //i.e. when interrupted
+            handler.unregisterPacketConsumer(listener); //On this thread, so it is gone by the time the wait returns
+        }
+    }
 
-        hook.run();
+    static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long timeout, TimeUnit timeoutUnit) {
+        if (timeout < 0 || future.isDone()) //Wait indefinitely
+            return future;
 
-        return timeout < 0 ? result.poll() : result.poll(timeout, timeoutUnit);
+        HashedWheelTimer.Timeout expiry = HashedWheelTimer.shared().schedule(() -> future.completeExceptionally(
+                new TimeoutException(String.format("No response within %d %s!", timeout, timeoutUnit))), timeout, timeoutUnit);
+        future.whenComplete((result, error) -> expiry.cancel()); //Keeps the timer's pending tasks down to actual waits
+        return future;
     }
 }
@@ -1,21 +1,54 @@
 package com.austinv11.introverted.networking;
 
-import com.austinv11.introverted.mapping.Reflector;
-import com.austinv11.introverted.mapping.Serialized;
+import com.austinv11.introverted.mapping.PacketCodec;
 
-import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
 /**
  * This represents a psuedo-InputStream which can be used to read incoming packets from.
  */
-public class PacketInputStream implements Closeable {
+public class PacketInputStream implements PacketReader {
 
-    private static final int BUFFER_SIZE = 512;
+    private final ReadableByteChannel backing;
+    private final BufferPool pool;
+    private final FrameDecoder decoder;
+    private final FrameCompressor compressor = new FrameCompressor();
+    private final StringTable strings = new StringTable();
+    private final StructRegistry structs = new StructRegistry();
+    private static final int HEADER_SIZE = 6;
+    private static final PacketVisitor DEFINITIONS_VISITOR = new PacketVisitor() {}; //Visiting registers definitions
 
-    private final InputStream backing;
+    private final Packet[] recycled = new Packet[256]; //Indexed by opcode
+    private volatile boolean[] recycling = new boolean[256];
+    private final Queue<PacketFrame> batched = new ArrayDeque<>(); //Unpacked batch entries, only accessed by the reading thread
+
+    /**
+     * Wraps the true channel to read through.
+     *
+     * @param backing The backing channel (i.e. a {@link java.nio.channels.SocketChannel} or a
+     *                {@link jnr.unixsocket.UnixSocketChannel}).
+     * @param pool The pool to recycle received frames through.
+     */
+    public PacketInputStream(ReadableByteChannel backing, BufferPool pool) {
+        this.backing = backing;
+        this.pool = pool;
+        this.decoder = new FrameDecoder(pool);
+    }
+
+    /**
+     * Wraps the true channel to read through.
+     *
+     * @param backing The backing channel.
+     */
+    public PacketInputStream(ReadableByteChannel backing) {
+        this(backing, new BufferPool());
+    }
 
     /**
      * Wraps the true input stream to read through.
@@ -23,72 +56,256 @@ public class PacketInputStream implements Closeable {
      * @param backing The backing input stream.
      */
     public PacketInputStream(InputStream backing) {
-        this.backing = backing;
+        this(Channels.newChannel(backing));
     }
 
     /**
-     * Blocks until the next packet is received, at which point the packet is decoded.
+     * Sets the negotiated protocol version, which determines how the headers of the following frames are parsed.
      *
-     * @return The packet read or null if the stream was terminated.
+     * @param protocolVersion The protocol version, defaults to {@link com.austinv11.introverted.common.Introverted#MIN_VERSION}.
      *
-     * @throws IOException
+     * @see FrameDecoder#setProtocolVersion(byte)
      */
-    public Packet read() throws IOException {
-        byte[] buffer = new byte[BUFFER_SIZE];
-        int len = backing.read(buffer, 0, 6);
+    @Override
+    public void setProtocolVersion(byte protocolVersion) {
+        decoder.setProtocolVersion(protocolVersion);
+    }
 
-        if (len == -1) //Stream terminated
-            return null;
+    /**
+     * Sets whether packets of a type are recycled. When enabled, a single instance is reused for every packet of that
+     * type received through this stream, its fields are overwritten in place on every decode.
+     *
+     * <b>NOTE:</b> A recycled packet is only valid until the next packet of the same type is decoded (i.e. for the
+     * duration of a consumer callback). Anything which keeps the packet (or its mutable contents) around for longer
+     * must copy it out first, so this should only be enabled for high rate types whose consumers are aware of this.
+     *
+     * @param type The packet type.
+     * @param recycle True to recycle instances, false to create a new instance for every packet (the default).
+     */
+    @Override
+    public synchronized void setRecycling(PacketType type, boolean recycle) {
+        boolean[] updated = recycling.clone();
+        updated[type.getOpcode()] = recycle;
+        recycling = updated;
+    }
 
-        if (len != 6 && len != 2) //len is 2 when there is no content to the packet (ex DISCOVERY packets)
-            throw new IOException("Unable to decode packet!");
-
-        int size = 0;
-        if (len != 2) { //Only need to update size to be greater than zero if we actually have a size greater than 0
-            size |= (buffer[2] & 0xff);
-            size <<= 8;
-            size |= (buffer[3] & 0xff);
-            size <<= 8;
-            size |= (buffer[4] & 0xff);
-            size <<= 8;
-            size |= (buffer[5] & 0xff);
+    /**
+     * Checks whether packets of a type are recycled.
+     *
+     * @param type The packet type.
+     * @return True if instances are recycled, false if otherwise.
+     *
+     * @see #setRecycling(PacketType, boolean)
+     */
+    @Override
+    public boolean isRecycling(PacketType type) {
+        return recycling[type.getOpcode()];
+    }
+
+    /**
+     * Blocks until the next packet frame is received (and decompressed if needed), without decoding it. Batches are
+     * unpacked, so their entries are returned one at a time.
+     *
+     * @return The frame read or null if the stream was terminated. The frame should be released once it has been
+     * processed.
+     *
+     * @throws IOException
+     */
+    public PacketFrame readFrame() throws IOException {
+        PacketFrame frame;
+        while ((frame = pollFrame()) == null) { //Only hit the channel once buffered frames are exhausted
+            if (decoder.readFrom(backing) == -1) //Stream terminated
+                return null;
         }
+        return frame;
+    }
+
+    /**
+     * Reads as many bytes as are currently available from the channel, this does not block if the channel is in
+     * non-blocking mode. The frames received can then be retrieved with {@link #pollFrame()} or
+     * {@link #pollLazy(PacketFilter)}.
+     *
+     * @return The amount of bytes read, or -1 if the stream was terminated.
+     *
+     * @throws IOException
+     */
+    public int readAvailable() throws IOException {
+        return decoder.readFrom(backing);
+    }
 
-        size += 6; //Don't forget metadata
+    /**
+     * Gets the next frame out of the bytes which have already been received (and decompresses it if needed), without
+     * reading from the channel.
+     *
+     * @return The frame or null if more bytes must be read first. The frame should be released once it has been
+     * processed.
+     *
+     * @throws IOException
+     */
+    public PacketFrame pollFrame() throws IOException {
+        while (batched.isEmpty()) {
+            PacketFrame frame = decoder.nextFrame();
+            if (frame == null)
+                return null;
+
+            if (FrameCompressor.isCompressed(frame))
+                frame = compressor.decompress(frame, pool);
 
-        byte[] total = new byte[size];
+            if (frame.getOp() != PacketType.BATCH)
+                return frame;
 
-        for (int i = 0; i < 6; i++) //Copy metadata
-            total[i] = buffer[i];
+            _unbatch(frame);
+        }
+        return batched.poll();
+    }
 
-        int read = 6;
-        while (read < size) {
-            int count = backing.read(buffer, 0, Math.min(BUFFER_SIZE, size - read));
-            for (int i = 0; i < count; i++) {
-                total[read + i] = buffer[i];
+    private void _unbatch(PacketFrame batch) throws IOException { //Splits a batch into its entries, which are complete frames themselves
+        ByteBuffer buffer = batch.getBuffer();
+        int end = batch.getLength();
+        int index = HEADER_SIZE;
+        while (index < end) {
+            int size = end - index < HEADER_SIZE ? -1 : buffer.getInt(index + 2);
+            if (size < 0 || size > end - index - HEADER_SIZE) { //Never trust the lengths to stay within the batch
+                batched.clear();
+                batch.release();
+                throw new IOException("Unable to decode batched packet!");
             }
-            read += count;
+
+            int length = HEADER_SIZE + size;
+            ByteBuffer entry = buffer.duplicate();
+            entry.clear();
+            entry.position(index).limit(index + length);
+            batched.add(new PacketFrame(entry.slice(), length, null));
+            index += length;
         }
+        batch.retain(); //The entries share its storage
+        batch.release();
+    }
 
-        PacketBuffer buf = new PacketBuffer(total);
-        byte ver = buf.getVersion();
+    /**
+     * Decodes a frame into a packet.
+     *
+     * @param frame The frame to decode.
+     * @return The decoded packet, this is a recycled instance if recycling is enabled for its type (see
+     * {@link #setRecycling(PacketType, boolean)}).
+     */
+    public Packet decode(PacketFrame frame) {
+        PacketBuffer buf = frame.toPacketBuffer();
+        buf.setStringTable(strings);
+        buf.setStructRegistry(structs);
         PacketType type = buf.getOp();
-        Reflector reflector = Reflector.instance();
-        Packet packet = reflector.instantiate(type.getType());
+        if (type == null)
+            throw new IllegalStateException(String.format("Received unregistered opcode %d!", frame.getBuffer().get(1) & 0xFF));
+        PacketCodec<Packet> codec = type.getCodec();
+        Packet packet = _instance(type, codec);
+        packet.setHeader(buf.getVersion(), type);
+        codec.decode(packet, buf);
+
+        if (buf.isShared()) //Zero-copy slices of the frame made it into the packet
+            frame.retain();
+
+        return packet;
+    }
+
+    private Packet _instance(PacketType type, PacketCodec<Packet> codec) {
+        if (!recycling[type.getOpcode()])
+            return codec.newInstance();
+
+        Packet packet = recycled[type.getOpcode()]; //Only ever accessed by the reading thread
+        if (packet == null)
+            packet = recycled[type.getOpcode()] = codec.newInstance();
+        return packet;
+    }
+
+    /**
+     * Walks the payload of a frame with a {@link PacketVisitor} instead of decoding it into a packet.
+     *
+     * @param frame The frame to walk.
+     * @param visitor The visitor to call.
+     *
+     * @see PacketBuffer#visit(PacketVisitor)
+     */
+    public void visit(PacketFrame frame, PacketVisitor visitor) {
+        PacketBuffer buf = frame.toPacketBuffer();
+        buf.setStringTable(strings);
+        buf.setStructRegistry(structs);
+        buf.visit(visitor);
+    }
+
+    /**
+     * Blocks until the next packet is received, at which point the packet is decoded. Packets with unregistered ops
+     * are skipped (see {@link PacketType#register(int, String, Class)}).
+     *
+     * @return The packet read or null if the stream was terminated.
+     *
+     * @throws IOException
+     */
+    @Override
+    public Packet read() throws IOException {
+        LazyPacket packet = readLazy(type -> true);
+        if (packet == null)
+            return null;
+
         try {
-            reflector.put(type.getType(), packet, "version", ver);
-            reflector.put(type.getType(), packet, "type", type);
-        } catch (Throwable t) {
-            t.printStackTrace();
+            return packet.get();
+        } finally {
+            packet.release();
         }
-        for (Field field : reflector.getSerializedFields(type.getType()))
-            reflector.put(type.getType(), packet, field.getName(), buf.getNext());
+    }
 
-        return packet;
+    /**
+     * Blocks until the next packet which passes a filter is received. Only the header is decoded up front, the payloads
+     * of filtered out packets are skipped entirely (unless they define strings or structs, which must always be read).
+     *
+     * @param filter The filter deciding which packets are wanted.
+     * @return The lazily decoded packet or null if the stream was terminated. The packet should be released once it
+     * has been processed.
+     *
+     * @throws IOException
+     */
+    @Override
+    public LazyPacket readLazy(PacketFilter filter) throws IOException {
+        return _nextLazy(filter, true);
+    }
+
+    /**
+     * Gets the next packet which passes a filter out of the bytes which have already been received, without reading
+     * from the channel. The payloads of filtered out packets are skipped just like with {@link #readLazy(PacketFilter)}.
+     *
+     * @param filter The filter deciding which packets are wanted.
+     * @return The lazily decoded packet or null if more bytes must be read first. The packet should be released once
+     * it has been processed.
+     *
+     * @throws IOException
+     */
+    @Override
+    public LazyPacket pollLazy(PacketFilter filter) throws IOException {
+        return _nextLazy(filter, false);
+    }
+
+    private LazyPacket _nextLazy(PacketFilter filter, boolean block) throws IOException {
+        PacketFrame frame;
+        while ((frame = block ? readFrame() : pollFrame()) != null) {
+            PacketType type = frame.getOp();
+            if (type != null && filter.isInterested(type)) //Unregistered ops are skipped, as nothing can handle them
+                return new LazyPacket(this, frame, type);
+
+            try {
+                if (frame.definesEntries()) //Keep the string table and struct registry in sync with the sender
+                    visit(frame, DEFINITIONS_VISITOR);
+            } finally {
+                frame.release();
+            }
+        }
+        return null;
     }
 
     @Override
     public void close() throws IOException {
-        backing.close();
+        try {
+            backing.close();
+        } finally {
+            compressor.close(); //Waits for a decompression in progress on the reading thread
+        }
     }
 }
@@ -1,14 +1,14 @@
 package com.austinv11.introverted.networking;
 
-import com.austinv11.introverted.mapping.Reflector;
-import com.austinv11.introverted.mapping.Serialized;
+import com.austinv11.introverted.common.Introverted;
+import com.austinv11.introverted.mapping.PacketCodec;
+import com.austinv11.introverted.networking.packets.BatchPacket;
 
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.lang.reflect.Field;
-import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This represents a psuedo-OutputStream which can be used to write packets to be sent.
@@ -17,6 +17,11 @@ public class PacketOutputStream implements Closeable, Flushable {
 
     private final PacketBuffer buf;
     private final OutputStream backing;
+    private FrameCompressor compressor = new FrameCompressor();
+    private volatile long features = 0;
+    private volatile byte protocolVersion = Introverted.MIN_VERSION;
+    private volatile ForkJoinPool parallelPool;
+    private volatile int parallelThreshold = PacketBuffer.DEFAULT_PARALLEL_THRESHOLD;
 
     /**
      * Wraps an output stream and a packet buffer.
@@ -27,6 +32,9 @@ public class PacketOutputStream implements Closeable, Flushable {
     public PacketOutputStream(PacketBuffer buf, OutputStream backing) {
         this.buf = buf;
         this.backing = backing;
+        this.buf.setStringTable(new StringTable());
+        this.buf.setStructRegistry(new StructRegistry());
+        this.buf.setCompressor(compressor);
     }
 
     /**
@@ -35,18 +43,93 @@ public class PacketOutputStream implements Closeable, Flushable {
      * @param backing The stream to write to.
      */
     public PacketOutputStream(OutputStream backing) {
-        this(new PacketBuffer(), backing);
+        this(new PacketBuffer(new BufferPool()), backing);
+    }
+
+    /**
+     * Sets the negotiated protocol features which may be used when encoding packets. This takes effect starting with
+     * the next packet written.
+     *
+     * @param features The feature bit set.
+     *
+     * @see ProtocolFeature
+     */
+    public void setFeatures(long features) {
+        this.features = features;
+    }
+
+    /**
+     * Sets the minimum payload size (in bytes) for which compression is attempted once
+     * {@link ProtocolFeature#COMPRESSION} has been negotiated. This takes effect starting with the next flush.
+     *
+     * <b>NOTE:</b> This must not be called while a flush is in progress, as the previous compressor is closed.
+     *
+     * @param threshold The threshold, defaults to {@link FrameCompressor#DEFAULT_THRESHOLD}.
+     */
+    public void setCompressionThreshold(int threshold) {
+        FrameCompressor previous = compressor;
+        compressor = new FrameCompressor(threshold);
+        buf.setCompressor(compressor);
+        previous.close();
+    }
+
+    /**
+     * Sets whether large arrays and maps are encoded in parallel. This takes effect starting with the next packet
+     * written.
+     *
+     * @param pool The pool to encode on, or null to always encode on the writing thread (the default).
+     * @param threshold The minimum amount of elements (or map entries) to encode in parallel.
+     *
+     * @see PacketBuffer#setParallelEncoding(ForkJoinPool, int)
+     */
+    public void setParallelEncoding(ForkJoinPool pool, int threshold) {
+        this.parallelPool = pool;
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * Sets the negotiated protocol version, which determines how frames are written. This takes effect starting with
+     * the next packet written.
+     *
+     * @param protocolVersion The protocol version, defaults to {@link Introverted#MIN_VERSION}.
+     *
+     * @see PacketBuffer#setProtocolVersion(byte)
+     */
+    public void setProtocolVersion(byte protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    /**
+     * Gets the negotiated protocol version, which determines how frames are written.
+     *
+     * @return The protocol version.
+     */
+    public byte getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Gets the negotiated protocol features which may be used when encoding packets.
+     *
+     * @return The feature bit set.
+     */
+    public long getFeatures() {
+        return features;
     }
 
     @Override
     public void close() throws IOException {
 //        flush(); don't wanna flush us because incomplete packets may be send down the wire
-        backing.close();
+        try {
+            backing.close();
+        } finally {
+            compressor.close();
+        }
     }
 
     @Override
     public void flush() throws IOException {
-        backing.write(buf.flush());
+        buf.flush(backing);
         backing.flush();
     }
 
@@ -56,15 +139,30 @@ public class PacketOutputStream implements Closeable, Flushable {
      * @param packet The packet to send.
      */
     public void write(Packet packet) {
-        List<Field> fields = Reflector.instance().getSerializedFields(packet.getClass());
-
-        if (buf.size() == 0)
+        if (buf.size() == 0) {
+            buf.setFeatures(features);
+            buf.setProtocolVersion(protocolVersion);
+            buf.setParallelEncoding(parallelPool, parallelThreshold);
             buf.putVersion();
+        }
 
         if (buf.size() == 1)
             buf.putOp(packet.getType());
 
-        for (Field field : fields)
-            buf.put(Reflector.instance().get(packet.getClass(), packet, field.getName()), field.getAnnotation(Serialized.class).unsigned());
+        if (packet instanceof BatchPacket) { //Every packet in the batch is written as a complete frame in the payload
+            for (Packet entry : ((BatchPacket) packet).getPackets()) {
+                int start = buf.startBatchEntry(entry.getType());
+                _encode(entry);
+                buf.endBatchEntry(start);
+            }
+            return;
+        }
+
+        _encode(packet);
+    }
+
+    @SuppressWarnings("unchecked") //The codec is resolved for the packet's own class, so it always accepts the packet
+    private void _encode(Packet packet) {
+        ((PacketCodec<Packet>) PacketCodec.of(packet.getClass())).encode(packet, buf);
     }
 }
@@ -0,0 +1,458 @@
+package com.austinv11.introverted.networking;
+
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.AbstractSelectableChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This serves the connections of a server socket with a fixed amount of event loops, rather than a thread per
+ * connection. Each event loop multiplexes its connections with a {@link Selector}: reads are non-blocking, frames are
+ * decoded per connection as their bytes arrive and writes which cannot be completed immediately are queued until the
+ * connection becomes writable. So threads and memory scale with the amount of event loops, not connections.
+ *
+ * Connections which don't keep up are bounded on both ends: a connection is only read from so many times per
+ * selection, so it can't starve the rest of its event loop, and writers wait once {@link #MAX_PENDING_BYTES} are
+ * queued for a connection (a connection which is written to by an event loop is disconnected instead, as waiting
+ * would stall that loop, which may be the very one draining it or be needed to drain whatever the writer is waiting
+ * on). Writers only wait before starting a frame and release the output stream's monitor meanwhile, so writes can be
+ * serialized by locking the output stream without blocking other writers (event loops included) behind the wait.
+ *
+ * <b>NOTE:</b> The {@link Listener} is called on the event loops, it must not block (otherwise every other connection
+ * of the event loop stalls as well).
+ */
+public class PacketReactor implements Closeable {
+
+    /**
+     * The default amount of event loops, one per available processor.
+     */
+    public static final int DEFAULT_EVENT_LOOPS = Runtime.getRuntime().availableProcessors();
+    /**
+     * The maximum amount of bytes queued for a connection which isn't writable, writers wait for the connection to
+     * drain below this before starting another frame.
+     */
+    public static final int MAX_PENDING_BYTES = 16 << 20;
+
+    private static final int MAX_READS_PER_SELECTION = 16; //The rest is read once the connection is selected again
+    private static final ThreadLocal<Boolean> IN_EVENT_LOOP = ThreadLocal.withInitial(() -> false); //Of any reactor
+
+    private final AbstractSelectableChannel server;
+    private final Acceptor acceptor;
+    private final Listener listener;
+    private final EventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private volatile boolean isClosed = false;
+
+    /**
+     * Starts serving a tcp server socket.
+     *
+     * @param server The server channel, this is switched to non-blocking mode.
+     * @param eventLoops The amount of event loops (threads) to serve connections with.
+     * @param listener The listener for connection events.
+     *
+     * @throws IOException
+     */
+    public PacketReactor(ServerSocketChannel server, int eventLoops, Listener listener) throws IOException {
+        this(server, server::accept, eventLoops, listener);
+    }
+
+    /**
+     * Starts serving a unix server socket.
+     *
+     * @param server The server channel, this is switched to non-blocking mode.
+     * @param eventLoops The amount of event loops (threads) to serve connections with.
+     * @param listener The listener for connection events.
+     *
+     * @throws IOException
+     */
+    public PacketReactor(UnixServerSocketChannel server, int eventLoops, Listener listener) throws IOException {
+        this(server, server::accept, eventLoops, listener);
+    }
+
+    private PacketReactor(AbstractSelectableChannel server, Acceptor acceptor, int eventLoops, Listener listener) throws IOException {
+        if (eventLoops < 1)
+            throw new IllegalArgumentException(String.format("At least 1 event loop is required, got %d!", eventLoops));
+
+        this.server = server;
+        this.acceptor = acceptor;
+        this.listener = listener;
+        this.loops = new EventLoop[eventLoops];
+        for (int i = 0; i < eventLoops; i++) //Selectors must come from the same provider as the channels (i.e. jnr's)
+            loops[i] = new EventLoop(server.provider().openSelector(), i);
+
+        server.configureBlocking(false);
+        loops[0].execute(() -> {
+            try {
+                server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        for (EventLoop loop : loops)
+            loop.thread.start();
+    }
+
+    private void _accept() throws IOException { //Connections are spread across the event loops in turns
+        SocketChannel channel;
+        while ((channel = acceptor.accept()) != null) {
+            channel.configureBlocking(false);
+            EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+            Connection connection = new Connection(channel, loop);
+            listener.onConnect(connection); //Before registering, so nothing can be received before this
+            loop.execute(connection::register);
+        }
+    }
+
+    /**
+     * Checks if the reactor has been closed.
+     *
+     * @return True if closed, false if otherwise.
+     */
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Stops accepting connections and closes the event loops, along with every connection still open.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        isClosed = true;
+        for (EventLoop loop : loops)
+            loop.selector.wakeup();
+        server.close();
+    }
+
+    /**
+     * This receives the connection events of a {@link PacketReactor}, every method is called on the event loop of the
+     * connection (except for {@link #onConnect(PacketSocket)}).
+     */
+    public interface Listener {
+
+        /**
+         * Called when a connection has been accepted, before anything is read from it.
+         *
+         * @param socket The new connection.
+         */
+        void onConnect(PacketSocket socket);
+
+        /**
+         * Called whenever bytes have been received from a connection. The received packets should be drained from the
+         * socket's input stream without blocking (i.e. with {@link PacketInputStream#pollLazy(PacketFilter)}).
+         *
+         * @param socket The connection.
+         *
+         * @throws IOException
+         */
+        void onReadable(PacketSocket socket) throws IOException;
+
+        /**
+         * Called once a connection has been closed (by either side).
+         *
+         * @param socket The closed connection.
+         */
+        void onDisconnect(PacketSocket socket);
+    }
+
+    @FunctionalInterface
+    private interface Acceptor {
+
+        SocketChannel accept() throws IOException;
+    }
+
+    private final class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Set<Connection> connections = new HashSet<>(); //Only accessed by the event loop itself
+
+        private EventLoop(Selector selector, int index) {
+            this.selector = selector;
+            this.thread = new Thread(this, String.format("Introverted Event Loop #%d", index));
+        }
+
+        private void execute(Runnable task) { //Selection keys must only be modified by the event loop itself
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            IN_EVENT_LOOP.set(true);
+            try {
+                while (!isClosed) {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null)
+                        task.run();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        _handle(key);
+                    }
+                }
+            } catch (IOException e) {
+                if (!isClosed)
+                    e.printStackTrace();
+            } finally {
+                new ArrayList<>(connections).forEach(Connection::disconnect); //jnr's selectors don't expose their keys
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private void _handle(SelectionKey key) {
+            if (key.isValid() && key.isAcceptable()) {
+                try {
+                    _accept();
+                } catch (IOException e) {
+                    if (!isClosed)
+                        e.printStackTrace();
+                }
+                return;
+            }
+
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isValid() && key.isWritable())
+                    connection.writePending();
+                if (key.isValid() && key.isReadable())
+                    connection.readAvailable();
+            } catch (IOException | CancelledKeyException e) {
+                connection.disconnect();
+            } catch (RuntimeException e) { //A misbehaving listener shouldn't take down the event loop
+                e.printStackTrace();
+                connection.disconnect();
+            }
+        }
+    }
+
+    private final class Connection implements PacketSocket {
+
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private final PacketInputStream inputStream;
+        private final PacketOutputStream outputStream;
+        private final ChannelOutputStream pending = new ChannelOutputStream();
+        private SelectionKey key; //Only accessed by the event loop
+        private volatile boolean disconnected = false;
+
+        private Connection(SocketChannel channel, EventLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+            this.inputStream = new PacketInputStream(channel, new BufferPool());
+            this.outputStream = new ConnectionOutputStream();
+        }
+
+        private void register() {
+            try {
+                key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+                loop.connections.add(this);
+                if (pending.hasQueued()) //Something was sent before the connection was registered
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } catch (IOException e) {
+                disconnect();
+            }
+        }
+
+        private void readAvailable() throws IOException {
+            int read, reads = 0;
+            do { //The input stream only buffers so much, so it is drained between reads
+                read = inputStream.readAvailable();
+                listener.onReadable(this);
+            } while (read > 0 && ++reads < MAX_READS_PER_SELECTION);
+
+            if (read == -1)
+                disconnect();
+        }
+
+        private void writePending() throws IOException {
+            boolean drained = pending.drain();
+            synchronized (outputStream) { //Not while holding the queue's monitor, writers lock the other way around
+                outputStream.notifyAll(); //Wake up writers waiting for the queue to drain
+            }
+            if (drained)
+                key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void disconnect() {
+            if (disconnected)
+                return;
+
+            disconnected = true;
+            pending.release();
+            synchronized (outputStream) { //Wake up waiting writers, nothing will be drained anymore
+                outputStream.notifyAll();
+            }
+            loop.connections.remove(this);
+            if (key != null)
+                key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            listener.onDisconnect(this);
+        }
+
+        @Override
+        public String getAddress() {
+            try {
+                SocketAddress address = channel.getRemoteAddress();
+                if (address instanceof UnixSocketAddress)
+                    return ((UnixSocketAddress) address).path();
+                return String.format("localhost:%s", ((InetSocketAddress) address).getPort());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public PacketInputStream getInputStream() {
+            return inputStream;
+        }
+
+        @Override
+        public PacketOutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public void close() throws IOException {
+            loop.execute(this::disconnect);
+        }
+
+        private final class ConnectionOutputStream extends PacketOutputStream {
+
+            private boolean framing = false; //Guarded by this, true once a frame has been started until it is flushed
+            private IOException refused = null; //Guarded by this, reported on flush like a failed write
+
+            private ConnectionOutputStream() {
+                super(pending);
+            }
+
+            @Override
+            public synchronized void write(Packet packet) {
+                if (refused != null)
+                    return;
+
+                if (!framing) { //Only wait before starting a frame, so other writers never see half of one
+                    while (!disconnected && pending.queued() >= MAX_PENDING_BYTES) { //The other side isn't keeping up
+                        if (IN_EVENT_LOOP.get()) { //Never block an event loop, no matter which connections it serves
+                            loop.execute(Connection.this::disconnect);
+                            refused = new IOException(String.format("More than %d bytes are pending for the connection!", MAX_PENDING_BYTES));
+                            return;
+                        }
+
+                        try {
+                            wait(); //Releases the monitor, so writers locking on the stream aren't stuck behind this
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            refused = new InterruptedIOException("Interrupted while waiting for the connection to drain!");
+                            return;
+                        }
+                    }
+                    framing = true;
+                }
+                super.write(packet);
+            }
+
+            @Override
+            public synchronized void flush() throws IOException {
+                framing = false;
+                if (refused != null) {
+                    IOException e = refused;
+                    refused = null;
+                    throw e;
+                }
+                super.flush();
+            }
+        }
+
+        private final class ChannelOutputStream extends OutputStream {
+
+            private final Queue<ByteBuffer> queue = new ArrayDeque<>(); //Guarded by this
+            private long queued = 0; //In bytes, guarded by this
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) throws IOException {
+                if (disconnected)
+                    throw new IOException("The connection has been closed!");
+
+                ByteBuffer data = ByteBuffer.wrap(b, off, len);
+                if (queue.isEmpty()) { //Attempt to write straight through, only queueing what the socket can't take yet
+                    channel.write(data);
+                    if (!data.hasRemaining())
+                        return;
+                }
+
+                ByteBuffer copy = ByteBuffer.allocate(data.remaining()); //The caller reuses its array
+                copy.put(data).flip();
+                queue.add(copy);
+                queued += copy.remaining();
+                if (queue.size() == 1) //Wait for the socket to become writable
+                    loop.execute(() -> {
+                        if (key != null && key.isValid())
+                            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    });
+            }
+
+            private synchronized boolean hasQueued() {
+                return !queue.isEmpty();
+            }
+
+            private synchronized long queued() {
+                return queued;
+            }
+
+            private synchronized boolean drain() throws IOException { //Returns true once everything has been written
+                while (!queue.isEmpty()) {
+                    ByteBuffer head = queue.peek();
+                    queued -= channel.write(head);
+                    if (head.hasRemaining())
+                        return false;
+                    queue.poll();
+                }
+                return true;
+            }
+
+            private synchronized void release() { //Once disconnected, nothing will be drained anymore
+                queue.clear();
+                queued = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.austinv11.introverted.networking;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * This represents the packet-level reads of a connection, regardless of whether the packets arrive as frames (i.e.
+ * {@link PacketInputStream}) or are handed over as they are (i.e. in-process connections).
+ *
+ * @see PacketSocket#getReader()
+ */
+public interface PacketReader extends Closeable {
+
+    /**
+     * Sets the negotiated protocol version, which determines how the following packets are decoded.
+     *
+     * @param protocolVersion The protocol version, defaults to {@link com.austinv11.introverted.common.Introverted#MIN_VERSION}.
+     */
+    void setProtocolVersion(byte protocolVersion);
+
+    /**
+     * Sets whether packets of a type are decoded into a single recycled instance rather than a new instance each time.
+     *
+     * <b>NOTE:</b> A recycled packet is only valid until the next packet of the same type is read, so consumers must
+     * not hold on to it.
+     *
+     * @param type The packet type.
+     * @param recycle True to recycle, false to allocate a new packet each time (the default).
+     */
+    void setRecycling(PacketType type, boolean recycle);
+
+    /**
+     * Checks if packets of a type are recycled.
+     *
+     * @param type The packet type.
+     * @return True if recycled, false if otherwise.
+     */
+    boolean isRecycling(PacketType type);
+
+    /**
+     * Blocks until the next packet is received.
+     *
+     * @return The packet read or null if the stream was terminated.
+     *
+     * @throws IOException
+     */
+    Packet read() throws IOException;
+
+    /**
+     * Blocks until the next packet which passes a filter is received.
+     *
+     * @param filter The filter deciding which packets are wanted.
+     * @return The lazily decoded packet or null if the stream was terminated. The packet should be released once it
+     * has been processed.
+     *
+     * @throws IOException
+     */
+    LazyPacket readLazy(PacketFilter filter) throws IOException;
+
+    /**
+     * Gets the next packet which passes a filter out of the packets which have already been received, without
+     * blocking.
+     *
+     * @param filter The filter deciding which packets are wanted.
+     * @return The lazily decoded packet or null if nothing more has been received yet. The packet should be released
+     * once it has been processed.
+     *
+     * @throws IOException
+     */
+    LazyPacket pollLazy(PacketFilter filter) throws IOException;
+}
@@ -2,6 +2,7 @@ package com.austinv11.introverted.networking;
 
 import jnr.unixsocket.UnixSocket;
 import jnr.unixsocket.UnixSocketAddress;
+import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -40,6 +41,34 @@ public interface PacketSocket extends Closeable {
         }
     }
 
+    /**
+     * Creates both sides of a connection within the current JVM, packets are handed over by reference so nothing is
+     * encoded, decoded or copied.
+     *
+     * <b>NOTE:</b> The receiving side gets the exact instances which were sent, so packets must not be modified once
+     * sent.
+     *
+     * @return The server side (left) and the client side (right) of the connection.
+     *
+     * @see #inProcess(boolean)
+     */
+    static Pair<PacketSocket, PacketSocket> inProcess() {
+        return inProcess(false);
+    }
+
+    /**
+     * Creates both sides of a connection within the current JVM.
+     *
+     * @param verifyCodec When true, packets are encoded and decoded as if they were sent over a socket (i.e. to test
+     *                    codecs, or to measure their cost apart from the transport). Otherwise packets are handed over
+     *                    by reference.
+     * @return The server side (left) and the client side (right) of the connection.
+     */
+    static Pair<PacketSocket, PacketSocket> inProcess(boolean verifyCodec) {
+        InProcessPacketSocket[] pair = InProcessPacketSocket.pair(verifyCodec);
+        return Pair.of(pair[0], pair[1]);
+    }
+
     /**
      * Gets the address of the socket. Either "localhost:$port" for tcp or the path to the unix socket.
      *
@@ -50,10 +79,23 @@ public interface PacketSocket extends Closeable {
     /**
      * Gets the socket's input stream.
      *
+     * <b>NOTE:</b> In-process connections which hand packets over by reference never receive frames, so their input
+     * stream is always at its end. Read packets through {@link #getReader()} instead to support every socket.
+     *
      * @return The packet input stream.
      */
     PacketInputStream getInputStream();
 
+    /**
+     * Gets the packet-level reads of the socket, which is what packets should be read through. This is the input
+     * stream, unless packets are handed over as they are (i.e. {@link #inProcess()}).
+     *
+     * @return The packet reader.
+     */
+    default PacketReader getReader() {
+        return getInputStream();
+    }
+
     /**
      * Gets the socket's output stream.
      *
@@ -70,7 +112,7 @@ class TCPPacketSocket implements PacketSocket {
 
     TCPPacketSocket(Socket tcp) throws IOException {
         this.tcp = tcp;
-        inputStream = new PacketInputStream(tcp.getInputStream());
+        inputStream = tcp.getChannel() != null ? new PacketInputStream(tcp.getChannel()) : new PacketInputStream(tcp.getInputStream());
         outputStream = new PacketOutputStream(tcp.getOutputStream());
     }
 
@@ -105,7 +147,7 @@ class UnixPacketSocket implements PacketSocket {
 
     UnixPacketSocket(UnixSocket unix) throws IOException {
         this.unix = unix;
-        inputStream = new PacketInputStream(unix.getInputStream());
+        inputStream = new PacketInputStream(unix.getChannel());
         outputStream = new PacketOutputStream(unix.getOutputStream());
     }
 
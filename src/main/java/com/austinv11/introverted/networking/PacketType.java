@@ -1,30 +1,213 @@
 package com.austinv11.introverted.networking;
 
+import com.austinv11.introverted.mapping.PacketCodec;
 import com.austinv11.introverted.networking.packets.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
- * An enumeration representing the possible packet types.
+ * This represents a packet type, the reserved protocol ops are available as constants and platform specific ops can
+ * be added with {@link #register(int, String, Class)}. Every type is bound to an opcode and its packet class' codec, so
+ * decoding a header is a single array lookup. Types which start exchanges also declare the ops which respond to them,
+ * so a response is never confused with an unrelated packet which happens to carry the same id.
+ *
+ * <b>NOTE:</b> This used to be an enum, which is not source compatible with this class: switch statements over types
+ * must become comparisons (or a switch over {@link #getOpcode()}), EnumSets/EnumMaps must become sets/maps (or arrays
+ * indexed by opcode), {@link #values()} returns a list and {@link #getOpcode()} replaces ordinal(). Types are still
+ * singletons, so they can be compared by identity.
  *
  * @see <a href="https://github.com/austinv11/Introverted/blob/master/PROTOCOL.md">Introverted Protocol Specification</a>
  */
-public enum PacketType {
+public final class PacketType {
+
+    /**
+     * The lowest opcode which can be used for platform specific ops, everything below it is reserved for protocol ops.
+     */
+    public static final int MIN_PLATFORM_OPCODE = 128;
+
+    private static final PacketType[] TYPES = new PacketType[256]; //Indexed by opcode
+    private static final List<PacketType> REGISTERED = new ArrayList<>(); //Guarded by TYPES
+    private static volatile int count = 0;
+
     //Reserved ops
-    DISCOVERY(DiscoveryPacket.class),
-    DISCOVERY_CONFIRM(DiscoveryConfirmPacket.class),
-    HANDSHAKE(HandshakePacket.class),
-    HANDSHAKE_CONFIRM(HandshakeConfirmPacket.class),
-    HANDSHAKE_REFUSE(HandshakeRefusePacket.class),
-    PING(PingPacket.class),
-    PONG(PongPacket.class),
-    CONNECTION_KILLED(ConnectionKilledPacket.class);
+    public static final PacketType DISCOVERY = _register(0, "DISCOVERY", DiscoveryPacket.class);
+    public static final PacketType DISCOVERY_CONFIRM = _register(1, "DISCOVERY_CONFIRM", DiscoveryConfirmPacket.class);
+    public static final PacketType HANDSHAKE = _register(2, "HANDSHAKE", HandshakePacket.class);
+    public static final PacketType HANDSHAKE_CONFIRM = _register(3, "HANDSHAKE_CONFIRM", HandshakeConfirmPacket.class);
+    public static final PacketType HANDSHAKE_REFUSE = _register(4, "HANDSHAKE_REFUSE", HandshakeRefusePacket.class);
+    public static final PacketType PING = _register(5, "PING", PingPacket.class);
+    public static final PacketType PONG = _register(6, "PONG", PongPacket.class);
+    public static final PacketType CONNECTION_KILLED = _register(7, "CONNECTION_KILLED", ConnectionKilledPacket.class);
+    public static final PacketType CHUNK = _register(8, "CHUNK", ChunkPacket.class);
+    public static final PacketType BATCH = _register(9, "BATCH", BatchPacket.class);
+
+    static { //Requests are registered before their responses, so these are declared once every reserved op exists
+        DISCOVERY._respondWith(DISCOVERY_CONFIRM);
+        HANDSHAKE._respondWith(HANDSHAKE_CONFIRM, HANDSHAKE_REFUSE);
+        PING._respondWith(PONG);
+    }
 
     final Class<? extends Packet> clazz;
+    private final int opcode;
+    private final String name;
+    private final PacketCodec<Packet> codec;
+    private final boolean[] responses = new boolean[256]; //Indexed by opcode, only modified before the type is published
 
-    PacketType(Class<? extends Packet> clazz) {
+    private PacketType(int opcode, String name, Class<? extends Packet> clazz, PacketType[] responses) {
+        this.opcode = opcode;
+        this.name = name;
         this.clazz = clazz;
+        this.codec = (PacketCodec<Packet>) PacketCodec.of(clazz); //Resolved up front, so the first exchanges don't pay for it
+        _respondWith(responses);
+    }
+
+    private void _respondWith(PacketType... responses) {
+        for (PacketType response : responses)
+            this.responses[response.opcode] = true;
+    }
+
+    /**
+     * Registers a platform specific packet type. This should be done at startup, before any connections are made, by
+     * both sides of a connection.
+     *
+     * @param opcode The opcode to send the packets with, this must be between {@link #MIN_PLATFORM_OPCODE} and 255.
+     * @param name The name of the op.
+     * @param type The packet class, instances should be constructed with the returned type.
+     * @return The new packet type.
+     *
+     * @throws IllegalArgumentException If the opcode is reserved, out of range or already registered.
+     */
+    public static PacketType register(int opcode, String name, Class<? extends Packet> type) {
+        return register(opcode, name, type, new PacketType[0]);
+    }
+
+    /**
+     * Registers a platform specific packet type which starts exchanges (see
+     * {@link PacketHandler#exchangeAsync(TraceablePacket)}). This should be done at startup, before any connections are
+     * made, by both sides of a connection.
+     *
+     * @param opcode The opcode to send the packets with, this must be between {@link #MIN_PLATFORM_OPCODE} and 255.
+     * @param name The name of the op.
+     * @param type The packet class, instances should be constructed with the returned type.
+     * @param responses The ops which respond to exchanges started with this op, so they must be registered first.
+     *                  Exchanges are only ever completed by packets of these ops.
+     * @return The new packet type.
+     *
+     * @throws IllegalArgumentException If the opcode is reserved, out of range or already registered.
+     */
+    public static PacketType register(int opcode, String name, Class<? extends Packet> type, PacketType... responses) {
+        if (opcode < MIN_PLATFORM_OPCODE || opcode >= TYPES.length)
+            throw new IllegalArgumentException(String.format("Opcode %d is not a platform specific opcode (%d-%d)!",
+                    opcode, MIN_PLATFORM_OPCODE, TYPES.length - 1));
+        return _register(opcode, name, type, responses);
+    }
+
+    private static PacketType _register(int opcode, String name, Class<? extends Packet> type, PacketType... responses) {
+        synchronized (TYPES) { //Checked first, so rejected registrations never resolve a codec
+            if (TYPES[opcode] != null)
+                throw new IllegalArgumentException(String.format("Opcode %d is already registered to %s!", opcode,
+                        TYPES[opcode]));
+            PacketType packetType = new PacketType(opcode, name, type, responses);
+            TYPES[opcode] = packetType;
+            REGISTERED.add(packetType);
+            count = REGISTERED.size();
+            return packetType;
+        }
+    }
+
+    /**
+     * Gets the packet type registered to an opcode.
+     *
+     * @param opcode The opcode, only the low 8 bits are used.
+     * @return The packet type, or null if nothing is registered to the opcode.
+     */
+    public static PacketType of(int opcode) {
+        return TYPES[opcode & 0xFF];
     }
 
+    /**
+     * Gets every registered packet type.
+     *
+     * @return An immutable snapshot of the registered types, in registration order.
+     */
+    public static List<PacketType> values() {
+        synchronized (TYPES) {
+            return Collections.unmodifiableList(new ArrayList<>(REGISTERED));
+        }
+    }
+
+    /**
+     * Gets the registered packet type with a name.
+     *
+     * @param name The name of the op.
+     * @return The packet type.
+     *
+     * @throws IllegalArgumentException If no type with the name is registered.
+     */
+    public static PacketType valueOf(String name) {
+        synchronized (TYPES) {
+            for (PacketType type : REGISTERED) {
+                if (type.name.equals(name))
+                    return type;
+            }
+        }
+        throw new IllegalArgumentException(String.format("No packet type named %s is registered!", name));
+    }
+
+    static int count() { //Only ever increases, so it can be used to detect registrations
+        return count;
+    }
+
+    /**
+     * Gets the opcode this type is sent with.
+     *
+     * @return The opcode (0-255).
+     */
+    public int getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * Gets the name of the op.
+     *
+     * @return The name.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Gets the packet class this type represents.
+     *
+     * @return The class.
+     */
     public Class<? extends Packet> getType() {
         return clazz;
     }
+
+    /**
+     * Checks if packets of a type respond to exchanges started with this type.
+     *
+     * @param type The type of the received packet.
+     * @return True if it is a response to this type, false if otherwise.
+     */
+    public boolean isResponse(PacketType type) {
+        return responses[type.opcode];
+    }
+
+    /**
+     * Gets the codec for this type's packet class.
+     *
+     * @return The codec.
+     */
+    public PacketCodec<Packet> getCodec() {
+        return codec;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
 }
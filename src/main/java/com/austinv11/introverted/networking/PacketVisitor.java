@@ -0,0 +1,140 @@
+package com.austinv11.introverted.networking;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This receives callbacks for every value in a packet's payload as it is walked by
+ * {@link PacketBuffer#visit(PacketVisitor)}, in a similar fashion to a SAX parser. Nothing is allocated for the values
+ * themselves, so this is the cheapest way to inspect a payload (i.e. to extract a single field or to forward a
+ * packet).
+ *
+ * All methods do nothing by default, so implementations only need to override the callbacks they care about.
+ *
+ * <b>NOTE:</b> Buffers handed to callbacks are the packet buffer's own storage and are only valid for the duration of
+ * the callback. They must be read with absolute operations and must not be modified.
+ */
+public interface PacketVisitor {
+
+    /**
+     * Called for a boolean value.
+     *
+     * @param value The value.
+     */
+    default void onBoolean(boolean value) {}
+
+    /**
+     * Called for a signed int value (fixed or variable length).
+     *
+     * @param value The value.
+     */
+    default void onInt(int value) {}
+
+    /**
+     * Called for an unsigned int value (fixed or variable length).
+     *
+     * @param value The value.
+     */
+    default void onUInt(long value) {}
+
+    /**
+     * Called for a signed long value (fixed or variable length).
+     *
+     * @param value The value.
+     */
+    default void onLong(long value) {}
+
+    /**
+     * Called for an unsigned long value (fixed or variable length).
+     *
+     * @param value The value, this should be treated as unsigned.
+     */
+    default void onULong(long value) {}
+
+    /**
+     * Called for a char value.
+     *
+     * @param value The value.
+     */
+    default void onChar(char value) {}
+
+    /**
+     * Called for a float value.
+     *
+     * @param value The value.
+     */
+    default void onFloat(float value) {}
+
+    /**
+     * Called for a decimal (double) value.
+     *
+     * @param value The value.
+     */
+    default void onDecimal(double value) {}
+
+    /**
+     * Called for a nil value.
+     */
+    default void onNil() {}
+
+    /**
+     * Called for a string which is present in the payload, the string is not decoded.
+     *
+     * @param data The buffer containing the UTF-8 encoded string.
+     * @param offset The absolute index of the string in the buffer.
+     * @param length The length of the string in bytes.
+     */
+    default void onStrBytes(ByteBuffer data, int offset, int length) {}
+
+    /**
+     * Called for a reference to a string which was previously defined in the connection's {@link StringTable}.
+     *
+     * @param value The (already decoded) string.
+     */
+    default void onStrRef(String value) {}
+
+    /**
+     * Called for a raw binary blob.
+     *
+     * @param data The buffer containing the blob.
+     * @param offset The absolute index of the blob in the buffer.
+     * @param length The length of the blob in bytes.
+     */
+    default void onBytes(ByteBuffer data, int offset, int length) {}
+
+    /**
+     * Called at the start of an array, each element is then visited in order. Packed arrays are visited element by
+     * element like any other array.
+     *
+     * @param length The number of elements.
+     */
+    default void onArrayStart(int length) {}
+
+    /**
+     * Called once every element of an array has been visited.
+     */
+    default void onArrayEnd() {}
+
+    /**
+     * Called at the start of a map, each entry is then visited in order as a key followed by its value.
+     *
+     * @param size The number of entries.
+     */
+    default void onMapStart(int size) {}
+
+    /**
+     * Called once every entry of a map has been visited.
+     */
+    default void onMapEnd() {}
+
+    /**
+     * Called at the start of a struct, each field value is then visited in field order.
+     *
+     * @param fieldCount The number of fields.
+     */
+    default void onStructStart(int fieldCount) {}
+
+    /**
+     * Called once every field of a struct has been visited.
+     */
+    default void onStructEnd() {}
+}
@@ -0,0 +1,181 @@
+package com.austinv11.introverted.networking;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * This tracks the exchanges of a {@link PacketHandler} which are awaiting a response. Pending exchanges are kept in a
+ * table keyed by the request's id, so each response is matched in constant time regardless of how many exchanges are
+ * in flight. Only packets of an op which responds to the request's op (see {@link PacketType#isResponse(PacketType)})
+ * complete an exchange, as both sides number their packets independently. It must be registered with
+ * {@link PacketHandler#handle(Consumer)} to receive the responses.
+ *
+ * @see PacketHandler#exchangeAsync(TraceablePacket)
+ */
+public class PendingExchanges implements Consumer<Packet>, PacketFilter {
+
+    private static final int STRIPES = 16; //Must be a power of 2
+
+    private final Table[] tables = new Table[STRIPES]; //Striped, so concurrent exchanges rarely contend
+
+    public PendingExchanges() {
+        for (int i = 0; i < STRIPES; i++)
+            tables[i] = new Table();
+    }
+
+    private static int _hash(long id) { //Ids are sequential, so they are spread out before being used as an index
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private Table _table(int hash) {
+        return tables[hash >>> 28 & (STRIPES - 1)]; //The high bits, the low bits index within the table
+    }
+
+    /**
+     * Starts tracking an exchange, this should be called before the request is sent.
+     *
+     * @param request The request which is about to be sent.
+     * @return The future which is completed with the response. Cancelling it stops tracking the exchange.
+     *
+     * @throws IllegalStateException If an exchange with the same id is already pending.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends TraceablePacket> CompletableFuture<T> register(TraceablePacket request) {
+        CompletableFuture<TraceablePacket> future = new CompletableFuture<>();
+        Pending pending = new Pending(request.getType(), future);
+        long id = request.getId();
+        int hash = _hash(id);
+        Table table = _table(hash);
+        synchronized (table) {
+            if (table.get(id, hash) != null)
+                throw new IllegalStateException(String.format("An exchange with id %d is already pending!", id));
+            table.put(id, hash, pending);
+        }
+        future.whenComplete((response, error) -> { //Responses have already been removed, this handles cancellations
+            if (error != null)
+                _remove(id, hash, pending);
+        });
+        return (CompletableFuture<T>) future; //The caller knows which response type its request is answered with
+    }
+
+    private void _remove(long id, int hash, Pending pending) {
+        Table table = _table(hash);
+        synchronized (table) {
+            if (table.get(id, hash) == pending)
+                table.remove(id, hash);
+        }
+    }
+
+    /**
+     * Gets the amount of exchanges awaiting a response.
+     *
+     * @return The amount of pending exchanges.
+     */
+    public int size() {
+        int size = 0;
+        for (Table table : tables) {
+            synchronized (table) {
+                size += table.size;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isInterested(PacketType type) {
+        return TraceablePacket.class.isAssignableFrom(type.getType());
+    }
+
+    @Override
+    public void accept(Packet packet) {
+        if (!(packet instanceof TraceablePacket))
+            return;
+
+        long id = ((TraceablePacket) packet).getId();
+        int hash = _hash(id);
+        Table table = _table(hash);
+        Pending pending;
+        synchronized (table) {
+            pending = table.get(id, hash);
+            if (pending == null || !pending.requestType.isResponse(packet.getType())) //The other side's packets may reuse the id
+                return;
+            table.remove(id, hash);
+        }
+        pending.future.complete((TraceablePacket) packet); //Outside of the lock, since this runs the future's dependents
+    }
+
+    private static final class Pending {
+
+        private final PacketType requestType;
+        private final CompletableFuture<TraceablePacket> future;
+
+        private Pending(PacketType requestType, CompletableFuture<TraceablePacket> future) {
+            this.requestType = requestType;
+            this.future = future;
+        }
+    }
+
+    private static final class Table { //Open addressing with linear probing, keyed by primitive longs so nothing is boxed
+
+        private long[] keys = new long[16];
+        private Pending[] values = new Pending[16];
+        private int size = 0;
+
+        private int _index(long key, int hash) { //Either the slot of the key, or the empty slot where it belongs
+            int mask = keys.length - 1;
+            int index = hash & mask;
+            while (values[index] != null && keys[index] != key)
+                index = (index + 1) & mask;
+            return index;
+        }
+
+        private Pending get(long key, int hash) {
+            return values[_index(key, hash)];
+        }
+
+        private void put(long key, int hash, Pending value) {
+            if ((size + 1) * 2 > keys.length) //Keep the load factor at or below 1/2
+                _resize(keys.length * 2);
+
+            int index = _index(key, hash);
+            if (values[index] == null)
+                size++;
+            keys[index] = key;
+            values[index] = value;
+        }
+
+        private void remove(long key, int hash) {
+            int mask = keys.length - 1;
+            int index = _index(key, hash);
+            if (values[index] == null)
+                return;
+
+            values[index] = null;
+            size--;
+            //Shift the following entries of the cluster back, so lookups never stop at the new gap too early
+            for (int next = (index + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int home = _hash(keys[next]) & mask;
+                boolean movable = index <= next ? (home <= index || home > next) : (home <= index && home > next);
+                if (movable) {
+                    keys[index] = keys[next];
+                    values[index] = values[next];
+                    values[next] = null;
+                    index = next;
+                }
+            }
+        }
+
+        private void _resize(int capacity) {
+            long[] oldKeys = keys;
+            Pending[] oldValues = values;
+            keys = new long[capacity];
+            values = new Pending[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null)
+                    put(oldKeys[i], _hash(oldKeys[i]), oldValues[i]);
+            }
+        }
+    }
+}
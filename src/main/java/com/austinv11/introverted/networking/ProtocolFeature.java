@@ -0,0 +1,79 @@
+package com.austinv11.introverted.networking;
+
+/**
+ * An enumeration of optional protocol features which are negotiated during the handshake. A feature may only be used
+ * by a sender once both sides have agreed to it, receivers must always be able to decode them.
+ *
+ * <b>NOTE:</b> Each feature's bit is derived from its ordinal, so new features must only ever be appended.
+ *
+ * @see <a href="https://github.com/austinv11/Introverted/blob/master/PROTOCOL.md">Introverted Protocol Specification</a>
+ */
+public enum ProtocolFeature {
+    /**
+     * Varint, zigzag, float32 and UTF-16 char data types.
+     */
+    COMPACT_NUMBERS,
+    /**
+     * Packed primitive array data type.
+     */
+    PACKED_ARRAYS,
+    /**
+     * Per-connection string dictionary.
+     */
+    STRING_TABLE,
+    /**
+     * Deflate compression of large frame payloads.
+     */
+    COMPRESSION,
+    /**
+     * Schema based structs with untagged values.
+     */
+    STRUCTS;
+
+    private static final long SUPPORTED;
+
+    static {
+        long supported = 0;
+        for (ProtocolFeature feature : values())
+            supported |= feature.mask();
+        SUPPORTED = supported;
+    }
+
+    /**
+     * Gets the bit representing this feature.
+     *
+     * @return The bit mask.
+     */
+    public long mask() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * Checks if this feature is present in a set of features.
+     *
+     * @param features The feature bit set.
+     * @return True if the feature is enabled, false if otherwise.
+     */
+    public boolean isEnabled(long features) {
+        return (features & mask()) != 0;
+    }
+
+    /**
+     * Gets all the features supported by this implementation.
+     *
+     * @return The feature bit set.
+     */
+    public static long supported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Determines the features which both this implementation and the remote side support.
+     *
+     * @param remote The feature bit set of the remote side.
+     * @return The agreed upon feature bit set.
+     */
+    public static long negotiate(long remote) {
+        return remote & SUPPORTED;
+    }
+}
@@ -0,0 +1,35 @@
+package com.austinv11.introverted.networking;
+
+import jnr.unixsocket.UnixServerSocket;
+
+import java.io.IOException;
+
+/**
+ * The server side of {@link SharedMemoryPacketSocket}, which sets up the ring buffers of each connection accepted.
+ */
+class SharedMemoryPacketServerSocket implements PacketServerSocket {
+
+    private final UnixServerSocket unix;
+    private final String address;
+    private final int capacity;
+
+    SharedMemoryPacketServerSocket(UnixServerSocket unix, String address, int capacity) {
+        this.unix = unix;
+        this.address = address;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public PacketSocket accept() {
+        try {
+            return SharedMemoryPacketSocket.accept(unix.accept(), address, capacity);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        //NO-OP currently since UnixServerSocket does not implement Closeable
+    }
+}
@@ -0,0 +1,417 @@
+package com.austinv11.introverted.networking;
+
+import jnr.unixsocket.UnixSocket;
+import jnr.unixsocket.UnixSocketAddress;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link PacketSocket} which transports packets through a pair of single producer, single consumer ring buffers in a
+ * memory mapped file (in /dev/shm when available) shared by both processes. The unix socket is only used to exchange
+ * the location of the file and to wake up readers which have run out of data, so the data path involves no syscalls
+ * while both sides are busy.
+ *
+ * The file is only accessible to its owner and is deleted as soon as the client has mapped it (or once the connection
+ * is closed, in case the client never does). Each side unmaps its mapping once the connection is closed and every read
+ * and write in progress has finished.
+ */
+class SharedMemoryPacketSocket implements PacketSocket {
+
+    static final int DEFAULT_CAPACITY = 1 << 20; //Per direction
+    private static final int SPIN_LIMIT = 1 << 14; //Empty polls before a reader parks until it is woken up
+    private static final long PARK_NANOS = 10_000; //Back off for writers waiting on a slow reader
+
+    private final UnixSocket unix;
+    private final String path;
+    private final Path file; //Only present on the server's side, until the connection is closed
+    private final MappedByteBuffer mapping;
+    private final AtomicInteger references = new AtomicInteger(1); //The connection itself, plus each read and write in progress
+    private final AtomicBoolean isClosed = new AtomicBoolean(false);
+    private final Ring inbound, outbound;
+    private final InputStream wakeupsIn;
+    private final OutputStream wakeupsOut;
+    private final PacketInputStream inputStream;
+    private final PacketOutputStream outputStream;
+
+    private SharedMemoryPacketSocket(UnixSocket unix, String path, Path file, MappedByteBuffer mapping, boolean server) throws IOException {
+        this.unix = unix;
+        this.path = path;
+        this.file = file;
+        this.mapping = mapping;
+        int regionSize = mapping.capacity() / 2;
+        Ring first = new Ring(mapping, 0, regionSize - Ring.DATA_OFFSET); //Server -> client
+        Ring second = new Ring(mapping, regionSize, regionSize - Ring.DATA_OFFSET); //Client -> server
+        this.inbound = server ? second : first;
+        this.outbound = server ? first : second;
+        this.wakeupsIn = unix.getInputStream();
+        this.wakeupsOut = unix.getOutputStream();
+        this.inputStream = new PacketInputStream(new RingChannel());
+        this.outputStream = new PacketOutputStream(new RingOutputStream());
+    }
+
+    /**
+     * Sets up a connection which was accepted by a unix server socket, the ring buffers are created and their location
+     * is sent to the client.
+     *
+     * @param unix The accepted unix socket.
+     * @param address The address of the unix server socket.
+     * @param capacity The capacity of each ring buffer, this is rounded up to a power of 2.
+     * @return The socket.
+     *
+     * @throws IOException
+     */
+    static SharedMemoryPacketSocket accept(UnixSocket unix, String address, int capacity) throws IOException {
+        capacity = Integer.highestOneBit(Math.max(capacity, 64) - 1) << 1;
+        Path file = _createFile();
+        MappedByteBuffer mapping = null;
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                mapping = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 2L * (Ring.DATA_OFFSET + capacity));
+            }
+
+            DataOutputStream out = new DataOutputStream(unix.getOutputStream());
+            out.writeUTF(file.toAbsolutePath().toString());
+            out.flush();
+            return new SharedMemoryPacketSocket(unix, address, file, mapping, true);
+        } catch (IOException e) {
+            if (mapping != null)
+                Ring.unmap(mapping);
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private static Path _createFile() throws IOException { //Readable by the owner only, as it carries every packet sent
+        Path dir = Paths.get("/dev/shm");
+        if (!Files.isDirectory(dir))
+            dir = Paths.get(System.getProperty("java.io.tmpdir"));
+
+        FileAttribute<?> permissions = PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+        try {
+            return Files.createTempFile(dir, "introverted", ".shm", permissions);
+        } catch (UnsupportedOperationException e) { //Not a posix file system, so it gets the default permissions
+            return Files.createTempFile(dir, "introverted", ".shm");
+        }
+    }
+
+    /**
+     * Sets up a connection to a shared memory server, by mapping the ring buffers the server sent the location of.
+     *
+     * @param unix The unix socket connected to the server.
+     * @return The socket.
+     *
+     * @throws IOException
+     */
+    static SharedMemoryPacketSocket connect(UnixSocket unix) throws IOException {
+        File file = new File(new DataInputStream(unix.getInputStream()).readUTF()); //Unbuffered, so no wake ups are consumed
+        MappedByteBuffer mapping;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            mapping = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        }
+        file.delete(); //The mapping stays valid, nobody else should be able to find it
+        return new SharedMemoryPacketSocket(unix, ((UnixSocketAddress) unix.getRemoteSocketAddress()).path(), null, mapping, false);
+    }
+
+    private boolean _retain() { //Fails once the mapping has been (or is about to be) unmapped
+        int count;
+        do {
+            count = references.get();
+            if (count == 0)
+                return false;
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    private void _release() {
+        if (references.decrementAndGet() == 0) //Nothing accesses the mapping anymore
+            Ring.unmap(mapping);
+    }
+
+    @Override
+    public String getAddress() {
+        return path;
+    }
+
+    @Override
+    public PacketInputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public PacketOutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isClosed.compareAndSet(false, true))
+            return;
+
+        try {
+            inbound.close();
+            outbound.close();
+            unix.close(); //Wakes up the other side (and any local reader), so the closure is noticed
+            if (file != null)
+                Files.deleteIfExists(file);
+        } finally {
+            _release(); //Unmapped once the reads and writes in progress have finished
+        }
+    }
+
+    private final class RingChannel implements ReadableByteChannel {
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!_retain())
+                return -1;
+
+            try {
+                return _read(dst);
+            } finally {
+                _release();
+            }
+        }
+
+        private int _read(ByteBuffer dst) throws IOException {
+            int spins = 0;
+            while (true) {
+                int read = inbound.read(dst);
+                if (read > 0 || dst.remaining() == 0)
+                    return read;
+                if (inbound.isClosed()) { //Drain anything written before the closure first
+                    read = inbound.read(dst);
+                    return read > 0 ? read : -1;
+                }
+
+                if (++spins < SPIN_LIMIT) {
+                    if ((spins & 0xFF) == 0)
+                        Thread.yield();
+                    continue;
+                }
+
+                inbound.setWaiting(); //Either the writer sees this, or this sees the writer's data
+                if (inbound.available() > 0 || inbound.isClosed()) {
+                    inbound.clearWaiting(); //If the writer got here first, a spurious wake up just remains queued
+                } else if (wakeupsIn.read() == -1) {
+                    inbound.close();
+                }
+                spins = 0;
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            if (!_retain())
+                return false;
+
+            try {
+                return !inbound.isClosed();
+            } finally {
+                _release();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            SharedMemoryPacketSocket.this.close();
+        }
+    }
+
+    private final class RingOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!_retain())
+                throw new IOException("The connection has been closed!");
+
+            try {
+                _write(b, off, len);
+            } finally {
+                _release();
+            }
+        }
+
+        private void _write(byte[] b, int off, int len) throws IOException {
+            int spins = 0;
+            while (len > 0) {
+                if (outbound.isClosed())
+                    throw new IOException("The connection has been closed!");
+
+                int written = outbound.write(b, off, len);
+                off += written;
+                len -= written;
+                if (written == 0) { //Full, make sure the reader is draining and back off
+                    _wakeReader();
+                    if (++spins < SPIN_LIMIT)
+                        Thread.yield();
+                    else
+                        LockSupport.parkNanos(PARK_NANOS);
+                } else {
+                    spins = 0;
+                }
+            }
+            _wakeReader();
+        }
+
+        private void _wakeReader() throws IOException {
+            if (outbound.clearWaiting()) {
+                wakeupsOut.write(0);
+                wakeupsOut.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            SharedMemoryPacketSocket.this.close();
+        }
+    }
+}
+
+final class Ring { //A single producer, single consumer byte ring buffer in (possibly shared) off-heap memory
+
+    static final int WRITE_OFFSET = 0; //Positions are on separate cache lines to avoid false sharing
+    static final int READ_OFFSET = 64;
+    static final int WAITING_OFFSET = 128;
+    static final int CLOSED_OFFSET = 132;
+    static final int DATA_OFFSET = 192;
+
+    private static final sun.misc.Unsafe UNSAFE; //Provides the memory ordering which ByteBuffers lack
+    private static final long ADDRESS_OFFSET; //Of Buffer.address, which holds the base address of direct buffers
+
+    static {
+        try {
+            Field theUnsafe = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            UNSAFE = (sun.misc.Unsafe) theUnsafe.get(null);
+            ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ByteBuffer data;
+    private final long address;
+    private final int capacity;
+    private final int mask;
+    private long writePosition; //Local copies, each is only ever modified by one side
+    private long readPosition;
+
+    Ring(MappedByteBuffer mapping, int offset, int capacity) {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException(String.format("Ring capacity must be a power of 2, got %d!", capacity));
+
+        ByteBuffer region = mapping.duplicate();
+        region.position(offset + DATA_OFFSET).limit(offset + DATA_OFFSET + capacity);
+        this.data = region.slice();
+        this.address = UNSAFE.getLong(mapping, ADDRESS_OFFSET) + offset;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.writePosition = UNSAFE.getLongVolatile(null, address + WRITE_OFFSET);
+        this.readPosition = UNSAFE.getLongVolatile(null, address + READ_OFFSET);
+    }
+
+    int write(byte[] b, int off, int len) { //Returns the amount written, which is 0 when full
+        long read = UNSAFE.getLongVolatile(null, address + READ_OFFSET);
+        int count = (int) Math.min(len, capacity - (writePosition - read));
+        if (count <= 0)
+            return 0;
+
+        int index = (int) (writePosition & mask);
+        int first = Math.min(count, capacity - index);
+        ByteBuffer target = data.duplicate();
+        target.position(index);
+        target.put(b, off, first);
+        if (count > first) { //Wrap around
+            target.position(0);
+            target.put(b, off + first, count - first);
+        }
+
+        writePosition += count;
+        UNSAFE.putLongVolatile(null, address + WRITE_OFFSET, writePosition); //Also orders the following waiting check
+        return count;
+    }
+
+    int read(ByteBuffer dst) { //Returns the amount read, which is 0 when empty
+        int count = (int) Math.min(dst.remaining(), available());
+        if (count <= 0)
+            return 0;
+
+        int index = (int) (readPosition & mask);
+        int first = Math.min(count, capacity - index);
+        ByteBuffer source = data.duplicate();
+        source.position(index).limit(index + first);
+        dst.put(source);
+        if (count > first) { //Wrap around
+            source.position(0).limit(count - first);
+            dst.put(source);
+        }
+
+        readPosition += count;
+        UNSAFE.putOrderedLong(null, address + READ_OFFSET, readPosition);
+        return count;
+    }
+
+    long available() {
+        return UNSAFE.getLongVolatile(null, address + WRITE_OFFSET) - readPosition;
+    }
+
+    void setWaiting() {
+        UNSAFE.putIntVolatile(null, address + WAITING_OFFSET, 1);
+    }
+
+    boolean clearWaiting() { //Returns true if the reader was waiting
+        return UNSAFE.getIntVolatile(null, address + WAITING_OFFSET) == 1
+                && UNSAFE.compareAndSwapInt(null, address + WAITING_OFFSET, 1, 0);
+    }
+
+    boolean isClosed() {
+        return UNSAFE.getIntVolatile(null, address + CLOSED_OFFSET) != 0;
+    }
+
+    void close() {
+        UNSAFE.putIntVolatile(null, address + CLOSED_OFFSET, 1);
+    }
+
+    static void unmap(MappedByteBuffer mapping) { //The mapping must not be accessed afterwards, by anyone
+        try {
+            try {
+                Method invokeCleaner = UNSAFE.getClass().getMethod("invokeCleaner", ByteBuffer.class); //Java 9+
+                invokeCleaner.invoke(UNSAFE, mapping);
+            } catch (NoSuchMethodException e) { //Java 8
+                Method cleaner = mapping.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object instance = cleaner.invoke(mapping);
+                if (instance != null)
+                    instance.getClass().getMethod("clean").invoke(instance);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //Unmapped once the buffer is garbage collected instead
+        }
+    }
+}
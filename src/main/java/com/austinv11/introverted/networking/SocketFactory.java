@@ -6,8 +6,11 @@ import jnr.unixsocket.*;
 import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 /**
  * This is a factory class to simplify socket construction.
@@ -22,7 +25,7 @@ public class SocketFactory {
      */
     public static Socket newTCPSocket(int port) {
         try {
-            return new Socket("localhost", port);
+            return SocketChannel.open(new InetSocketAddress("localhost", port)).socket();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -44,8 +47,20 @@ public class SocketFactory {
      * @return The new socket.
      */
     public static ServerSocket newTCPServerSocket(int port) {
+        return newTCPServerChannel(port).socket();
+    }
+
+    /**
+     * Creates a new tcp server socket channel pointing towards localhost and a provided port.
+     *
+     * @param port The port to bind the server socket to.
+     * @return The new channel.
+     */
+    public static ServerSocketChannel newTCPServerChannel(int port) {
         try {
-            return new ServerSocket(port);
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            channel.socket().bind(new InetSocketAddress(port));
+            return channel;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -92,17 +107,74 @@ public class SocketFactory {
      * @return The new server socket.
      */
     public static UnixServerSocket newUnixServerSocket(String address) {
+        return newUnixServerChannel(address).socket();
+    }
+
+    /**
+     * Creates a new unix server socket channel pointing towards the passed address.
+     *
+     * @param address The address to use.
+     * @return The new channel.
+     */
+    public static UnixServerSocketChannel newUnixServerChannel(String address) {
         try {
             File file = new File(address);
             file.deleteOnExit();
-            UnixServerSocket socket = UnixServerSocketChannel.open().socket();
-            socket.bind(new UnixSocketAddress(file));
-            return socket;
+            UnixServerSocketChannel channel = UnixServerSocketChannel.open();
+            channel.socket().bind(new UnixSocketAddress(file));
+            return channel;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates a new shared memory socket connected to the shared memory server socket at the passed address. Packets
+     * are transported through ring buffers in memory shared with the server, which avoids the syscalls and copies of
+     * unix sockets (the unix socket at the address is only used to set up the connection and to wake up idle readers).
+     *
+     * <b>NOTE:</b> This only works between processes on the same host which can access /dev/shm (or the temp
+     * directory).
+     *
+     * @param address The address of the server socket.
+     * @return The new socket.
+     *
+     * @see #supportsUnixSockets()
+     */
+    public static PacketSocket newSharedMemorySocket(String address) {
+        try {
+            return SharedMemoryPacketSocket.connect(newUnixSocket(address));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Creates a new shared memory server socket at the passed address, with ring buffers of the default capacity.
+     *
+     * @param address The address to use.
+     * @return The new server socket.
+     *
+     * @see #newSharedMemorySocket(String)
+     */
+    public static PacketServerSocket newSharedMemoryServerSocket(String address) {
+        return newSharedMemoryServerSocket(address, SharedMemoryPacketSocket.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new shared memory server socket at the passed address.
+     *
+     * @param address The address to use.
+     * @param capacity The capacity (in bytes) of each connection's ring buffers, per direction. Writers stall while
+     *                 their ring is full, so this should comfortably fit the largest packets sent.
+     * @return The new server socket.
+     *
+     * @see #newSharedMemorySocket(String)
+     */
+    public static PacketServerSocket newSharedMemoryServerSocket(String address, int capacity) {
+        return new SharedMemoryPacketServerSocket(newUnixServerSocket(address), address, capacity);
+    }
+
     /**
      * Attempts to discover an open port.
      *
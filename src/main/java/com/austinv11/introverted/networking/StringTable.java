@@ -0,0 +1,109 @@
+package com.austinv11.introverted.networking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This represents one side of a connection's string dictionary. Strings are defined the first time they are sent,
+ * after which they are only referred to by an id.
+ *
+ * An instance should be dedicated to either encoding or decoding a single stream of packets, instances are <b>not</b>
+ * thread safe.
+ */
+public class StringTable {
+
+    /**
+     * The default maximum amount of strings tracked.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Strings longer than this (in chars) are never added to the table.
+     */
+    public static final int MAX_ENTRY_LENGTH = 256;
+
+    private final int capacity;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Creates a string table.
+     *
+     * @param capacity The maximum amount of strings which can be defined.
+     */
+    public StringTable(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a string table with the {@link #DEFAULT_CAPACITY}.
+     */
+    public StringTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Looks up the id of a previously defined string.
+     *
+     * @param string The string to look up.
+     * @return The id, or -1 if the string has not been defined.
+     */
+    public int lookup(String string) {
+        Integer id = ids.get(string);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Defines a new string, assigning it the next available id.
+     *
+     * @param string The string to define.
+     * @return The new id, or -1 if the string cannot be added to the table.
+     */
+    public int define(String string) {
+        if (strings.size() >= capacity || string.length() > MAX_ENTRY_LENGTH)
+            return -1;
+
+        int id = strings.size();
+        strings.add(string);
+        ids.put(string, id);
+        return id;
+    }
+
+    /**
+     * Defines a string received from the other side.
+     *
+     * @param id The id of the string.
+     * @param string The string.
+     */
+    public void define(int id, String string) {
+        if (id == strings.size())
+            strings.add(string);
+        else if (id >= 0 && id < strings.size())
+            strings.set(id, string);
+        else
+            throw new IllegalStateException(String.format("String id %d defined out of order (expected %d)!", id, strings.size()));
+    }
+
+    /**
+     * Gets a string which was defined by the other side.
+     *
+     * @param id The id of the string.
+     * @return The (cached) string.
+     */
+    public String get(int id) {
+        if (id < 0 || id >= strings.size())
+            throw new IllegalStateException(String.format("Reference to undefined string id %d!", id));
+        return strings.get(id);
+    }
+
+    /**
+     * Gets the amount of strings currently defined.
+     *
+     * @return The size of the table.
+     */
+    public int size() {
+        return strings.size();
+    }
+}
@@ -0,0 +1,109 @@
+package com.austinv11.introverted.networking;
+
+import com.austinv11.introverted.mapping.Serialized;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This represents one side of a connection's struct schema registry. A struct is any non-packet object with
+ * {@link Serialized} fields, its schema (the names and wire types of those fields) is defined the first time a struct
+ * of its class is sent, after which structs only refer to the schema by an id and their values are sent in field order
+ * without type tags.
+ *
+ * An instance should be dedicated to either encoding or decoding a single stream of packets, instances are <b>not</b>
+ * thread safe.
+ *
+ * @see ProtocolFeature#STRUCTS
+ */
+public class StructRegistry {
+
+    /**
+     * The default maximum amount of schemas tracked.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final Map<Class<?>, Integer> ids = new IdentityHashMap<>();
+    private final List<StructSchema> schemas = new ArrayList<>();
+
+    /**
+     * Creates a struct registry.
+     *
+     * @param capacity The maximum amount of schemas which can be defined.
+     */
+    public StructRegistry(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a struct registry with the {@link #DEFAULT_CAPACITY}.
+     */
+    public StructRegistry() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Checks if instances of a class can be sent as structs.
+     *
+     * @param type The class.
+     * @return True if the class is not a packet and has {@link Serialized} fields, false if otherwise.
+     */
+    public static boolean isStruct(Class<?> type) {
+        return StructSchema.of(type) != null;
+    }
+
+    /**
+     * Looks up the id of a previously defined struct schema.
+     *
+     * @param type The struct class to look up.
+     * @return The id, or -1 if the schema has not been defined.
+     */
+    public int lookup(Class<?> type) {
+        Integer id = ids.get(type);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Defines the schema of a struct class, assigning it the next available id.
+     *
+     * @param type The struct class to define.
+     * @return The new id, or -1 if the class is not a struct or the schema cannot be added to the registry.
+     */
+    public int define(Class<?> type) {
+        StructSchema schema = StructSchema.of(type);
+        if (schemas.size() >= capacity || schema == null)
+            return -1;
+
+        int id = schemas.size();
+        schemas.add(schema);
+        ids.put(type, id);
+        return id;
+    }
+
+    void define(int id, StructSchema schema) { //Defines a schema received from the other side
+        if (id == schemas.size())
+            schemas.add(schema);
+        else if (id >= 0 && id < schemas.size())
+            schemas.set(id, schema);
+        else
+            throw new IllegalStateException(String.format("Struct id %d defined out of order (expected %d)!", id, schemas.size()));
+    }
+
+    StructSchema get(int id) {
+        if (id < 0 || id >= schemas.size())
+            throw new IllegalStateException(String.format("Reference to undefined struct id %d!", id));
+        return schemas.get(id);
+    }
+
+    /**
+     * Gets the amount of schemas currently defined.
+     *
+     * @return The size of the registry.
+     */
+    public int size() {
+        return schemas.size();
+    }
+}
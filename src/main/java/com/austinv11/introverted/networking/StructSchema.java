@@ -0,0 +1,67 @@
+package com.austinv11.introverted.networking;
+
+import com.austinv11.introverted.mapping.FieldInfo;
+import com.austinv11.introverted.mapping.Reflector;
+import com.austinv11.introverted.mapping.Serialized;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * This is the schema of a struct class, the names and wire types of its {@link Serialized} fields in order. Schemas
+ * of local classes are cached, schemas received from the other side are kept in their connection's
+ * {@link StructRegistry}.
+ */
+final class StructSchema {
+
+    private static final ClassValue<Optional<StructSchema>> LOCAL = new ClassValue<Optional<StructSchema>>() {
+        @Override
+        protected Optional<StructSchema> computeValue(Class<?> type) {
+            if (Packet.class.isAssignableFrom(type) || type.isArray() || type.isInterface() || type.isEnum()
+                    || type.isPrimitive() || type.getName().startsWith("java.")) //JDK classes are never annotated
+                return Optional.empty();
+
+            List<FieldInfo> serialized = Reflector.instance().getSerializedFieldInfo(type);
+            if (serialized.isEmpty())
+                return Optional.empty();
+
+            FieldInfo[] fields = serialized.toArray(new FieldInfo[serialized.size()]);
+            String[] names = new String[fields.length];
+            byte[] kinds = new byte[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                names[i] = fields[i].getName();
+                kinds[i] = PacketBuffer.structKind(fields[i]);
+            }
+            return Optional.of(new StructSchema(names, kinds, fields));
+        }
+    };
+
+    final String[] names;
+    final byte[] kinds;
+    final FieldInfo[] fields; //Only present for the schemas of local classes, these are immutable
+    private Class<?> resolvedType;
+    private FieldInfo[] resolved;
+
+    StructSchema(String[] names, byte[] kinds, FieldInfo[] fields) {
+        this.names = names;
+        this.kinds = kinds;
+        this.fields = fields;
+    }
+
+    static StructSchema of(Class<?> type) { //The schema local structs are sent with
+        return LOCAL.get(type).orElse(null);
+    }
+
+    FieldInfo[] resolve(Class<?> type) { //Maps a received schema's fields onto a local class, null entries are skipped
+        if (type != resolvedType) { //Only the last resolution is cached as a schema is practically always read into the same class
+            FieldInfo[] fields = new FieldInfo[names.length];
+            for (int i = 0; i < names.length; i++) {
+                FieldInfo field = Reflector.instance().getFieldInfo(type, names[i]);
+                fields[i] = field != null && field.getSerialized() != null ? field : null;
+            }
+            resolved = fields;
+            resolvedType = type;
+        }
+        return resolved;
+    }
+}
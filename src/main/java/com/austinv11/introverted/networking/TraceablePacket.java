@@ -2,18 +2,21 @@ package com.austinv11.introverted.networking;
 
 import com.austinv11.introverted.mapping.Serialized;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This represents a packet guaranteed to be trackable in {@link PacketHandler#exchange(TraceablePacket)} methods.
+ * Ids are assigned sequentially, so they are unique (and increasing) across every packet sent by this JVM.
  */
 public abstract class TraceablePacket extends Packet {
 
     @Serialized(value = -1, unsigned = true)
     private final long id;
 
+    private static final AtomicLong NEXT_ID = new AtomicLong(); //Sequential ids never collide, and stay small on the wire
+
     private static long generateId() {
-        return ThreadLocalRandom.current().nextInt() & (System.nanoTime() << 16); //Make the last 4 bytes a random int, with the rest of the bytes seeded by the current nano time.
+        return NEXT_ID.incrementAndGet();
     }
 
     public TraceablePacket() {
@@ -0,0 +1,61 @@
+package com.austinv11.introverted.networking.packets;
+
+import com.austinv11.introverted.common.Introverted;
+import com.austinv11.introverted.networking.Packet;
+import com.austinv11.introverted.networking.PacketType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This collects many packets so they can be sent in a single frame (with a single flush), which amortizes the cost of
+ * headers and writes across small, high rate packets. Receivers unpack batches transparently, the packets are
+ * delivered to consumers in order as if they had been sent individually.
+ *
+ * @see com.austinv11.introverted.networking.PacketHandler#sendBatch(Collection)
+ */
+public class BatchPacket extends Packet {
+
+    private final List<Packet> packets = new ArrayList<>(); //Encoded specially by PacketOutputStream
+
+    /**
+     * Creates an empty batch.
+     */
+    public BatchPacket() {
+        super(Introverted.VERSION, PacketType.BATCH);
+    }
+
+    /**
+     * Creates a batch.
+     *
+     * @param packets The packets to send, in order.
+     */
+    public BatchPacket(Collection<? extends Packet> packets) {
+        this();
+        packets.forEach(this::add);
+    }
+
+    /**
+     * Adds a packet to the end of the batch.
+     *
+     * @param packet The packet, this cannot be another batch.
+     * @return The current batch instance.
+     */
+    public BatchPacket add(Packet packet) {
+        if (packet instanceof BatchPacket)
+            throw new IllegalArgumentException("Batches cannot be nested!");
+        packets.add(packet);
+        return this;
+    }
+
+    /**
+     * Gets the packets in the batch.
+     *
+     * @return An immutable view of the packets, in order.
+     */
+    public List<Packet> getPackets() {
+        return Collections.unmodifiableList(packets);
+    }
+}
@@ -0,0 +1,85 @@
+package com.austinv11.introverted.networking.packets;
+
+import com.austinv11.introverted.common.Introverted;
+import com.austinv11.introverted.mapping.Serialized;
+import com.austinv11.introverted.networking.PacketType;
+import com.austinv11.introverted.networking.TraceablePacket;
+
+/**
+ * This packet carries one chunk of a chunked stream, which allows for arbitrarily many elements to be streamed in
+ * bounded frames. Every chunk of a stream shares the same id.
+ *
+ * @see com.austinv11.introverted.networking.PacketHandler#sendChunked(java.util.Iterator, int)
+ * @see com.austinv11.introverted.networking.ChunkIterator
+ */
+public class ChunkPacket extends TraceablePacket {
+
+    @Serialized(0)
+    private final int sequence;
+    @Serialized(1)
+    private final boolean last;
+    @Serialized(2)
+    private final Object[] elements;
+
+    ChunkPacket() {
+        super();
+        sequence = 0;
+        last = false;
+        elements = null;
+    }
+
+    /**
+     * Creates the first chunk of a new stream.
+     *
+     * @param elements The elements in the chunk.
+     * @param last True if this is the only chunk of the stream.
+     */
+    public ChunkPacket(Object[] elements, boolean last) {
+        super(Introverted.VERSION, PacketType.CHUNK);
+        this.sequence = 0;
+        this.last = last;
+        this.elements = elements;
+    }
+
+    /**
+     * Creates a following chunk of an existing stream.
+     *
+     * @param id The id of the stream.
+     * @param sequence The index of the chunk within the stream.
+     * @param elements The elements in the chunk.
+     * @param last True if this is the final chunk of the stream.
+     */
+    public ChunkPacket(long id, int sequence, Object[] elements, boolean last) {
+        super(Introverted.VERSION, PacketType.CHUNK, id);
+        this.sequence = sequence;
+        this.last = last;
+        this.elements = elements;
+    }
+
+    /**
+     * Gets the index of this chunk within its stream.
+     *
+     * @return The sequence number, the first chunk of a stream is 0.
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Checks if this is the final chunk of its stream.
+     *
+     * @return True if no more chunks will follow, false if otherwise.
+     */
+    public boolean isLast() {
+        return last;
+    }
+
+    /**
+     * Gets the elements carried by this chunk.
+     *
+     * @return The elements.
+     */
+    public Object[] getElements() {
+        return elements;
+    }
+}
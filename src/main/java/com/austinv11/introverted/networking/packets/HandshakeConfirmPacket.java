@@ -1,8 +1,10 @@
 package com.austinv11.introverted.networking.packets;
 
 import com.austinv11.introverted.common.Introverted;
+import com.austinv11.introverted.mapping.Serialized;
 import com.austinv11.introverted.networking.Packet;
 import com.austinv11.introverted.networking.PacketType;
+import com.austinv11.introverted.networking.ProtocolFeature;
 import com.austinv11.introverted.networking.TraceablePacket;
 
 /**
@@ -10,7 +12,31 @@ import com.austinv11.introverted.networking.TraceablePacket;
  */
 public class HandshakeConfirmPacket extends TraceablePacket {
 
-    public HandshakeConfirmPacket(long id) {
+    @Serialized(value = 0, unsigned = true)
+    private final long features;
+
+    HandshakeConfirmPacket() {
+        super();
+        features = 0;
+    }
+
+    public HandshakeConfirmPacket(long id, long features) {
         super(Introverted.VERSION, PacketType.HANDSHAKE_CONFIRM, id);
+        this.features = features;
+    }
+
+    public HandshakeConfirmPacket(long id) {
+        this(id, 0);
+    }
+
+    /**
+     * The optional protocol features which both sides agreed to use.
+     *
+     * @return The feature bit set.
+     *
+     * @see ProtocolFeature
+     */
+    public long getFeatures() {
+        return features;
     }
 }
@@ -1,8 +1,10 @@
 package com.austinv11.introverted.networking.packets;
 
 import com.austinv11.introverted.common.Introverted;
+import com.austinv11.introverted.mapping.Serialized;
 import com.austinv11.introverted.networking.Packet;
 import com.austinv11.introverted.networking.PacketType;
+import com.austinv11.introverted.networking.ProtocolFeature;
 import com.austinv11.introverted.networking.TraceablePacket;
 
 /**
@@ -10,7 +12,22 @@ import com.austinv11.introverted.networking.TraceablePacket;
  */
 public class HandshakePacket extends TraceablePacket {
 
+    @Serialized(value = 0, unsigned = true)
+    private final long features;
+
     public HandshakePacket() {
         super(Introverted.VERSION, PacketType.HANDSHAKE);
+        this.features = ProtocolFeature.supported();
+    }
+
+    /**
+     * The optional protocol features supported by the client.
+     *
+     * @return The feature bit set.
+     *
+     * @see ProtocolFeature
+     */
+    public long getFeatures() {
+        return features;
     }
 }
@@ -11,8 +11,12 @@ import com.austinv11.introverted.networking.TraceablePacket;
  */
 public class PingPacket extends TraceablePacket {
 
+    @Serialized(value = 0, unsigned = true)
+    private final long sendTime;
+
     public PingPacket() {
-        super(Introverted.VERSION, PacketType.PING, System.currentTimeMillis());
+        super(Introverted.VERSION, PacketType.PING);
+        this.sendTime = System.currentTimeMillis();
     }
 
     /**
@@ -21,6 +25,6 @@ public class PingPacket extends TraceablePacket {
      * @return The send time.
      */
     public long getSendTime() {
-        return getId(); //Since the id is the timestamp
+        return sendTime;
     }
 }
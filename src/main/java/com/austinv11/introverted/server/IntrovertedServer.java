@@ -1,14 +1,22 @@
 package com.austinv11.introverted.server;
 
+import com.austinv11.introverted.common.Introverted;
 import com.austinv11.introverted.networking.*;
+import com.austinv11.introverted.networking.packets.HandshakeConfirmPacket;
+import com.austinv11.introverted.networking.packets.HandshakePacket;
+import com.austinv11.introverted.networking.packets.HandshakeRefusePacket;
+import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Consumer;
@@ -22,10 +30,13 @@ public class IntrovertedServer implements PacketHandler {
 
     public static final String JVM_LIGHT_PLATFORM = "JVM-light";
 
-    private final PacketServerSocket serverSocket;
-    private final List<Consumer<Packet>> consumers = new CopyOnWriteArrayList<>();
+    private final PacketServerSocket serverSocket; //Only present when accepting connections with a thread per connection
+    private final PacketReactor reactor; //Only present when serving connections with event loops
+    private final PacketDispatcher dispatcher = new PacketDispatcher();
+    private final PendingExchanges exchanges = new PendingExchanges();
     private final ExecutorService connectionService = Executors.newSingleThreadExecutor();
     private final Map<PacketSocket, ExecutorService> connections = Collections.synchronizedMap(new HashMap<>());
+    private final Set<PacketType> recycledTypes = new HashSet<>(); //Guarded by itself
     private volatile boolean isClosed = false;
 
     /**
@@ -35,9 +46,31 @@ public class IntrovertedServer implements PacketHandler {
      */
     public IntrovertedServer(int port) {
         serverSocket = PacketServerSocket.wrap(SocketFactory.newTCPServerSocket(port));
+        reactor = null;
         _completeInit();
     }
 
+    /**
+     * Creates an Introverted server via TCP, whose connections are served by a fixed amount of event loops rather than
+     * a thread per connection. This scales far better with the amount of connections.
+     *
+     * <b>NOTE:</b> Packet consumers are called on the event loops, so they must not block (which is why chunked
+     * streams can't be received).
+     *
+     * @param port The port to host the server on.
+     * @param eventLoops The amount of event loops, i.e. {@link PacketReactor#DEFAULT_EVENT_LOOPS}.
+     */
+    public IntrovertedServer(int port, int eventLoops) {
+        serverSocket = null;
+        try {
+            reactor = new PacketReactor(SocketFactory.newTCPServerChannel(port), eventLoops, new ReactorListener());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        handle(new ServerBasePacketConsumer(this));
+        handle(exchanges);
+    }
+
     /**
      * Creates an Introverted server via a unix socket.
      *
@@ -48,6 +81,55 @@ public class IntrovertedServer implements PacketHandler {
      */
     public IntrovertedServer(String unixSocketAddress) {
         serverSocket = PacketServerSocket.wrap(SocketFactory.newUnixServerSocket(unixSocketAddress));
+        reactor = null;
+        _completeInit();
+    }
+
+    /**
+     * Creates an Introverted server via a unix socket, whose connections are served by a fixed amount of event loops
+     * rather than a thread per connection. This scales far better with the amount of connections.
+     *
+     * <b>NOTE:</b> Packet consumers are called on the event loops, so they must not block (which is why chunked
+     * streams can't be received).
+     *
+     * @param unixSocketAddress The socket address.
+     * @param eventLoops The amount of event loops, i.e. {@link PacketReactor#DEFAULT_EVENT_LOOPS}.
+     *
+     * @see SocketFactory#supportsUnixSockets()
+     * @see SocketFactory#generateUnixSocketAddress()
+     */
+    public IntrovertedServer(String unixSocketAddress, int eventLoops) {
+        serverSocket = null;
+        try {
+            reactor = new PacketReactor(SocketFactory.newUnixServerChannel(unixSocketAddress), eventLoops, new ReactorListener());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        handle(new ServerBasePacketConsumer(this));
+        handle(exchanges);
+    }
+
+    /**
+     * Creates an Introverted server which can only be connected to from within the current JVM.
+     *
+     * @see #connectInProcess(boolean)
+     */
+    public IntrovertedServer() {
+        serverSocket = null;
+        reactor = null;
+        handle(new ServerBasePacketConsumer(this));
+        handle(exchanges);
+    }
+
+    /**
+     * Creates an Introverted server which accepts connections from an arbitrary server socket, i.e.
+     * {@link SocketFactory#newSharedMemoryServerSocket(String)}.
+     *
+     * @param serverSocket The server socket.
+     */
+    public IntrovertedServer(PacketServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+        reactor = null;
         _completeInit();
     }
 
@@ -55,70 +137,162 @@ public class IntrovertedServer implements PacketHandler {
         connectionService.execute(() -> {
             while (!isClosed()) {
                 PacketSocket socket = serverSocket.accept();
-                if (socket != null) { //Ignore null sockets as they are likely due to socket closures
-                    ExecutorService readService = Executors.newSingleThreadExecutor();
-                    connections.put(socket, readService);
-                    readService.execute(() -> {
-                            while (!isClosed()) {
-                                Packet packet = null;
-                                try {
-                                    packet = socket.getInputStream().read();
-                                    if (packet != null) { //Ignore null packets as they are likely due to the stream being terminated
-                                        Packet finalPacket = packet;
-                                        consumers.forEach(consumer -> consumer.accept(finalPacket));
-                                    }
-                                } catch (IOException e) {
-                                    if (!isClosed())
-                                        e.printStackTrace();
-                                } finally {
-                                    if (packet == null) {
-                                        try {
-                                            socket.close();
-                                        } catch (IOException e) {
-                                            e.printStackTrace();
-                                        }
-                                        connections.remove(socket);
-                                        readService.shutdownNow();
-                                        break;
-                                    }
-                                }
-            //                    } finally { TODO re-implement
-            //                        if (!isClosed()) {
-            //                            try {
-            //                                socket.close();
-            //                            } catch (IOException e) {
-            //                                e.printStackTrace();
-            //                            }
-            //                            connections.remove(socket);
-            //                        }
-                            }
-                    });
-                }
+                if (socket != null) //Ignore null sockets as they are likely due to socket closures
+                    _serve(socket);
             }
         });
         handle(new ServerBasePacketConsumer(this));
+        handle(exchanges);
     }
 
-    @Override
-    public synchronized void send(Packet packet) {
-        connections.keySet().forEach(socket -> {
+    private void _serve(PacketSocket socket) { //Reads from the connection on its own thread
+        ExecutorService readService = Executors.newSingleThreadExecutor();
+        _connect(socket, readService);
+        readService.execute(() -> {
+                while (!isClosed()) {
+                    LazyPacket packet = null;
+                    try {
+                        packet = socket.getReader().readLazy(this::_isInterested);
+                        if (packet != null) //Ignore null packets as they are likely due to the stream being terminated
+                            _receive(socket, packet);
+                    } catch (IOException e) {
+                        if (!isClosed())
+                            e.printStackTrace();
+                    } finally {
+                        if (packet == null) {
+                            try {
+                                socket.close();
+                            } catch (IOException e) {
+                                e.printStackTrace();
+                            }
+                            connections.remove(socket);
+                            readService.shutdownNow();
+                            break;
+                        }
+                    }
+                }
+        });
+    }
+
+    /**
+     * Connects to this server from within the current JVM, this works regardless of how the server is hosted.
+     *
+     * @param verifyCodec When true, packets are encoded and decoded as if they were sent over a socket. Otherwise they
+     *                    are handed over by reference.
+     * @return The client side of the connection, i.e. for {@link com.austinv11.introverted.client.IntrovertedClient#IntrovertedClient(PacketSocket)}.
+     *
+     * @see PacketSocket#inProcess(boolean)
+     */
+    public PacketSocket connectInProcess(boolean verifyCodec) {
+        if (isClosed())
+            throw new IllegalStateException("The server has been closed!");
+
+        Pair<PacketSocket, PacketSocket> connection = PacketSocket.inProcess(verifyCodec);
+        _serve(connection.getLeft());
+        return connection.getRight();
+    }
+
+    private void _connect(PacketSocket socket, ExecutorService readService) {
+        synchronized (recycledTypes) { //New connections pick up the current recycling settings
+            recycledTypes.forEach(type -> socket.getReader().setRecycling(type, true));
+            connections.put(socket, readService);
+        }
+    }
+
+    private void _receive(PacketSocket socket, LazyPacket packet) {
+        try {
+            if (packet.getType() == PacketType.HANDSHAKE)
+                acceptHandshake(socket, (HandshakePacket) packet.get());
+            dispatcher.dispatch(socket, packet);
+        } finally {
+            packet.release();
+        }
+    }
+
+    private boolean _isInterested(PacketType type) { //Packets nobody is interested in are never decoded
+        return type == PacketType.HANDSHAKE || dispatcher.isInterested(type);
+    }
+
+    private void write(PacketSocket socket, Packet packet) { //Locks the connection alone, which waiting for it to drain releases
+        synchronized (socket.getOutputStream()) {
             socket.getOutputStream().write(packet);
             try {
                 socket.getOutputStream().flush();
             } catch (IOException e) {
                 e.printStackTrace();
             }
-        });
+        }
+    }
+
+    //Handshakes are answered directly since the negotiated protocol features are specific to each connection
+    private void acceptHandshake(PacketSocket socket, HandshakePacket handshake) {
+        if (handshake.getProtocolVersion() >= Introverted.MIN_VERSION) {
+            byte version = (byte) Math.min(handshake.getProtocolVersion(), Introverted.VERSION);
+            long features = ProtocolFeature.negotiate(handshake.getFeatures());
+            synchronized (socket.getOutputStream()) { //No other packet may be framed in between
+                write(socket, new HandshakeConfirmPacket(handshake.getId(), features)); //Always framed as the oldest version
+                socket.getOutputStream().setFeatures(features);
+                socket.getOutputStream().setProtocolVersion(version);
+            }
+            socket.getReader().setProtocolVersion(version); //This is the reading thread, so this applies to the next frame
+        } else {
+            write(socket, new HandshakeRefusePacket(String.format("Incompatible client version (expected at least %s, got %s)",
+                    Introverted.MIN_VERSION, handshake.getProtocolVersion()), handshake.getId()));
+        }
     }
 
+    @Override
+    public void send(Packet packet) {
+        List<PacketSocket> sockets;
+        synchronized (connections) { //Released before writing, so a connection which doesn't keep up only stalls itself
+            sockets = new ArrayList<>(connections.keySet());
+        }
+        sockets.forEach(socket -> write(socket, packet));
+    }
+
+    @Override
+    public <T extends TraceablePacket> CompletableFuture<T> exchangeAsync(TraceablePacket sending) {
+        CompletableFuture<T> response = exchanges.register(sending); //Before sending, the response may arrive at any time
+        try {
+            send(sending);
+        } catch (RuntimeException e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException If the consumer is a {@link ChunkIterator} while connections are served by event
+     * loops, as it blocks the dispatching thread once its buffer is full (stalling every connection of the loop).
+     */
     @Override
     public void handle(Consumer<Packet> packetConsumer) {
-        consumers.add(packetConsumer);
+        if (reactor != null && packetConsumer instanceof ChunkIterator)
+            throw new IllegalStateException("Chunked streams can't be received while serving connections with event loops!");
+        dispatcher.add(packetConsumer);
     }
 
     @Override
     public void unregisterPacketConsumer(Consumer<Packet> packetConsumer) {
-        consumers.remove(packetConsumer);
+        dispatcher.remove(packetConsumer);
+    }
+
+    @Override
+    public int getPacketConsumerCount() {
+        return dispatcher.size();
+    }
+
+    @Override
+    public void setRecycling(PacketType packetType, boolean recycle) {
+        synchronized (recycledTypes) {
+            if (recycle)
+                recycledTypes.add(packetType);
+            else
+                recycledTypes.remove(packetType);
+            connections.keySet().forEach(socket -> socket.getReader().setRecycling(packetType, recycle));
+        }
     }
 
     @Override
@@ -130,12 +304,43 @@ public class IntrovertedServer implements PacketHandler {
     public void close() throws IOException {
         isClosed = true;
 
-        for (Map.Entry<PacketSocket, ExecutorService> connection : connections.entrySet()) {
+        if (reactor != null) //Closes every connection it serves along with it
+            reactor.close();
+
+        List<Map.Entry<PacketSocket, ExecutorService>> served;
+        synchronized (connections) {
+            served = new ArrayList<>(connections.entrySet());
+        }
+        for (Map.Entry<PacketSocket, ExecutorService> connection : served) {
+            if (connection.getValue() == null) //Served by the reactor
+                continue;
+
             connection.getValue().shutdownNow();
             connection.getKey().close();
         }
 
         connectionService.shutdownNow();
-        serverSocket.close();
+        if (serverSocket != null)
+            serverSocket.close();
+    }
+
+    private final class ReactorListener implements PacketReactor.Listener {
+
+        @Override
+        public void onConnect(PacketSocket socket) {
+            _connect(socket, null);
+        }
+
+        @Override
+        public void onReadable(PacketSocket socket) throws IOException {
+            LazyPacket packet;
+            while ((packet = socket.getReader().pollLazy(IntrovertedServer.this::_isInterested)) != null)
+                _receive(socket, packet);
+        }
+
+        @Override
+        public void onDisconnect(PacketSocket socket) {
+            connections.remove(socket);
+        }
     }
 }
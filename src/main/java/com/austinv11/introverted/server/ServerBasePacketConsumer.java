@@ -1,14 +1,11 @@
 package com.austinv11.introverted.server;
 
 import com.austinv11.introverted.common.BasePacketConsumer;
-import com.austinv11.introverted.common.Introverted;
 import com.austinv11.introverted.networking.Packet;
 import com.austinv11.introverted.networking.PacketHandler;
+import com.austinv11.introverted.networking.PacketType;
 import com.austinv11.introverted.networking.TraceablePacket;
 import com.austinv11.introverted.networking.packets.DiscoveryConfirmPacket;
-import com.austinv11.introverted.networking.packets.HandshakeConfirmPacket;
-import com.austinv11.introverted.networking.packets.HandshakePacket;
-import com.austinv11.introverted.networking.packets.HandshakeRefusePacket;
 
 /**
  * {@link BasePacketConsumer} implementation for server side operations.
@@ -19,21 +16,15 @@ public class ServerBasePacketConsumer extends BasePacketConsumer {
         super(handler);
     }
 
+    @Override
+    public boolean handles(PacketType type) {
+        return type == PacketType.DISCOVERY;
+    }
+
     @Override
     public void handle(Packet packet) {
-        switch (packet.getType()) {
-            case DISCOVERY:
-                getHandler().send(new DiscoveryConfirmPacket(IntrovertedServer.JVM_LIGHT_PLATFORM, ((TraceablePacket) packet).getId()));
-                break;
-            case HANDSHAKE:
-                HandshakePacket handshakePacket = (HandshakePacket) packet;
-                if (handshakePacket.getProtocolVersion() == Introverted.VERSION)
-                    getHandler().send(new HandshakeConfirmPacket(((TraceablePacket) packet).getId()));
-                else
-                    getHandler().send(new HandshakeRefusePacket(
-                            String.format("Incompatible client version (expected %s, got %s)", Introverted.VERSION,
-                                    packet.getProtocolVersion()), ((TraceablePacket) packet).getId()));
-                break;
-        }
+        if (packet.getType() == PacketType.DISCOVERY)
+            getHandler().send(new DiscoveryConfirmPacket(IntrovertedServer.JVM_LIGHT_PLATFORM, ((TraceablePacket) packet).getId()));
+        //HANDSHAKE packets are answered by IntrovertedServer itself since the response is connection specific
     }
 }
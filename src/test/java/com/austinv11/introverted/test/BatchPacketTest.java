@@ -0,0 +1,78 @@
+package com.austinv11.introverted.test;
+
+import com.austinv11.introverted.common.Introverted;
+import com.austinv11.introverted.networking.LazyPacket;
+import com.austinv11.introverted.networking.PacketInputStream;
+import com.austinv11.introverted.networking.PacketOutputStream;
+import com.austinv11.introverted.networking.PacketType;
+import com.austinv11.introverted.networking.ProtocolFeature;
+import com.austinv11.introverted.networking.packets.BatchPacket;
+import com.austinv11.introverted.networking.packets.DiscoveryConfirmPacket;
+import com.austinv11.introverted.networking.packets.PingPacket;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class BatchPacketTest {
+
+    @Test
+    public void testBatch() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PacketOutputStream out = new PacketOutputStream(bytes);
+        out.setFeatures(ProtocolFeature.STRING_TABLE.mask() | ProtocolFeature.COMPRESSION.mask());
+        out.setProtocolVersion((byte) 2);
+        BatchPacket batch = new BatchPacket();
+        for (int i = 0; i < 100; i++)
+            batch.add(new DiscoveryConfirmPacket("platform", i)).add(new PingPacket());
+        out.write(batch);
+        out.flush();
+        out.write(new DiscoveryConfirmPacket("platform", 100)); //Refers to the string defined in the batch
+        out.flush();
+
+        PacketInputStream in = new PacketInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        in.setProtocolVersion((byte) 2);
+        for (int i = 0; i < 100; i++) {
+            DiscoveryConfirmPacket confirm = (DiscoveryConfirmPacket) in.read();
+            assertEquals(confirm.getId(), i);
+            assertEquals(confirm.getPlatformIdentifier(), "platform");
+            assertEquals(in.read().getType(), PacketType.PING);
+        }
+        assertEquals(((DiscoveryConfirmPacket) in.read()).getId(), 100);
+        assertNull(in.read());
+
+        in = new PacketInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        in.setProtocolVersion((byte) 2);
+        for (int i = 0; i < 100; i++) //The definition of the string is in a skipped packet
+            in.readLazy(type -> type == PacketType.PING).release();
+        LazyPacket packet = in.readLazy(type -> type == PacketType.DISCOVERY_CONFIRM);
+        assertEquals(((DiscoveryConfirmPacket) packet.get()).getPlatformIdentifier(), "platform");
+        assertEquals(((DiscoveryConfirmPacket) packet.get()).getId(), 100);
+    }
+
+    @Test
+    public void testMalformedBatch() throws IOException {
+        for (int length : new int[]{1000, -1}) { //Past the end of the batch, and negative
+            ByteBuffer forged = ByteBuffer.allocate(12);
+            forged.put(Introverted.VERSION).put((byte) PacketType.BATCH.getOpcode()).putInt(6);
+            forged.put(Introverted.VERSION).put((byte) PacketType.PING.getOpcode()).putInt(length);
+            PacketInputStream in = new PacketInputStream(new ByteArrayInputStream(forged.array()));
+            try {
+                in.readFrame();
+                fail();
+            } catch (IOException ignored) {}
+        }
+
+        ByteBuffer truncated = ByteBuffer.allocate(9); //Not even a complete entry header
+        truncated.put(Introverted.VERSION).put((byte) PacketType.BATCH.getOpcode()).putInt(3);
+        truncated.put(Introverted.VERSION).put((byte) PacketType.PING.getOpcode()).put((byte) 0);
+        try {
+            new PacketInputStream(new ByteArrayInputStream(truncated.array())).readFrame();
+            fail();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,95 @@
+package com.austinv11.introverted.test;
+
+import com.austinv11.introverted.client.IntrovertedClient;
+import com.austinv11.introverted.networking.ChunkIterator;
+import com.austinv11.introverted.networking.SocketFactory;
+import com.austinv11.introverted.networking.packets.ChunkPacket;
+import com.austinv11.introverted.server.IntrovertedServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ChunkedStreamTest {
+
+    @Test
+    public void test() throws IOException, InterruptedException {
+        IntrovertedServer server = new IntrovertedServer(1337);
+        IntrovertedClient client = new IntrovertedClient(1337);
+
+        StreamFixture.stream(client, server, 100);
+
+        server.close();
+        client.close();
+    }
+
+    @Test
+    public void testChunkSize() throws IOException {
+        IntrovertedServer server = new IntrovertedServer();
+        IntrovertedClient client = new IntrovertedClient(server);
+        for (int chunkSize : new int[]{0, -1}) {
+            try {
+                client.sendChunked(Collections.singletonList("element").iterator(), chunkSize);
+                fail();
+            } catch (IllegalArgumentException ignored) {}
+        }
+
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testCollidingIds() throws IOException, InterruptedException {
+        int port = SocketFactory.discoverOpenPort();
+        IntrovertedServer server = new IntrovertedServer(port);
+        IntrovertedClient first = new IntrovertedClient(port);
+        IntrovertedClient second = new IntrovertedClient(port);
+        StreamFixture.connect(server, first, second);
+
+        ChunkIterator received = server.receiveChunked();
+        first.send(new ChunkPacket(42, 0, new Object[]{"first"}, false));
+        assertEquals(received.next(), "first"); //Bound to the first client's stream
+        second.send(new ChunkPacket(42, 0, new Object[]{"second"}, false)); //Same id, but another connection
+        second.send(new ChunkPacket(42, 1, new Object[]{"second"}, true));
+        first.send(new ChunkPacket(42, 1, new Object[]{"last"}, true));
+        assertEquals(received.next(), "last");
+        assertFalse(received.hasNext());
+
+        first.close();
+        second.close();
+        server.close();
+    }
+
+    @Test(timeout = 5000)
+    public void testMissedChunks() throws IOException {
+        IntrovertedServer server = new IntrovertedServer();
+        ChunkIterator received = new ChunkIterator(server, 42, 4);
+        received.accept(null, new ChunkPacket(42, 1, new Object[]{"element"}, false)); //The first chunk was missed
+
+        for (int i = 0; i < 2; i++) { //Still broken rather than waiting for chunks which will never be queued
+            try {
+                received.hasNext();
+                fail();
+            } catch (IllegalStateException ignored) {}
+        }
+        try {
+            received.next();
+            fail();
+        } catch (IllegalStateException ignored) {}
+
+        server.close();
+    }
+
+    @Test
+    public void testReactor() throws IOException {
+        IntrovertedServer server = new IntrovertedServer(SocketFactory.discoverOpenPort(), 1);
+        try {
+            server.receiveChunked();
+            fail("Receiving a stream would block the event loop!");
+        } catch (IllegalStateException ignored) {}
+
+        server.close();
+    }
+}
@@ -0,0 +1,198 @@
+package com.austinv11.introverted.test;
+
+import com.austinv11.introverted.common.Introverted;
+import com.austinv11.introverted.networking.*;
+import com.austinv11.introverted.networking.packets.DiscoveryConfirmPacket;
+import com.austinv11.introverted.networking.packets.PingPacket;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameDecoderTest {
+
+    private byte[] encode(int count) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PacketBuffer buf = new PacketBuffer();
+        for (int i = 0; i < count; i++) {
+            buf.putVersion();
+            buf.putOp(PacketType.DISCOVERY);
+            buf.putInt(i).putStr("frame");
+            buf.flush(out);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSplitReads() throws IOException {
+        byte[] data = encode(10);
+        FrameDecoder decoder = new FrameDecoder(new BufferPool());
+        int frames = 0;
+        for (int i = 0; i < data.length; i += 3) { //Feed three bytes at a time, splitting every header
+            decoder.feed(ByteBuffer.wrap(data, i, Math.min(3, data.length - i)));
+            PacketFrame frame;
+            while ((frame = decoder.nextFrame()) != null) {
+                PacketBuffer buf = frame.toPacketBuffer();
+                assertEquals(buf.getInt(), frames++);
+                assertEquals(buf.getStr(), "frame");
+                frame.release();
+            }
+        }
+        assertEquals(frames, 10);
+    }
+
+    @Test
+    public void testBurst() throws IOException {
+        byte[] data = encode(1000);
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(data));
+        FrameDecoder decoder = new FrameDecoder(new BufferPool());
+        int frames = 0;
+        while (decoder.readFrom(channel) != -1) {
+            PacketFrame frame;
+            while ((frame = decoder.nextFrame()) != null) {
+                assertEquals(frame.toPacketBuffer().getInt(), frames++);
+                frame.release();
+            }
+        }
+        assertEquals(frames, 1000);
+    }
+
+    @Test
+    public void testLegacyEmptyFrame() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(new BufferPool());
+        byte discovery = (byte) PacketType.DISCOVERY.getOpcode();
+        byte ping = (byte) PacketType.PING.getOpcode();
+        decoder.feed(ByteBuffer.wrap(new byte[]{Introverted.MIN_VERSION, discovery, Introverted.MIN_VERSION, ping}));
+        PacketFrame first = decoder.nextFrame(); //Followed by another frame
+        assertEquals(first.getOp(), PacketType.DISCOVERY);
+        assertEquals(first.getLength(), 6);
+        PacketFrame second = decoder.nextFrame(); //Nothing else received yet
+        assertEquals(second.getOp(), PacketType.PING);
+        assertEquals(second.getLength(), 6);
+        assertNull(decoder.nextFrame());
+
+        decoder.feed(ByteBuffer.wrap(encode(1))); //Complete headers are still used otherwise
+        assertEquals(decoder.nextFrame().toPacketBuffer().getInt(), 0);
+        assertNull(decoder.nextFrame());
+    }
+
+    @Test
+    public void testLargeFrame() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PacketBuffer buf = new PacketBuffer();
+        buf.putVersion();
+        buf.putOp(PacketType.DISCOVERY);
+        for (int i = 0; i < 100000; i++)
+            buf.putLong(i);
+        buf.flush(out);
+
+        PacketInputStream in = new PacketInputStream(new ByteArrayInputStream(out.toByteArray()));
+        PacketFrame frame = in.readFrame();
+        PacketBuffer read = frame.toPacketBuffer();
+        for (int i = 0; i < 100000; i++)
+            assertEquals(read.getLong(), i);
+        frame.release();
+        assertNull(in.readFrame());
+    }
+
+    @Test
+    public void testCompression() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PacketBuffer buf = new PacketBuffer();
+        buf.setFeatures(ProtocolFeature.COMPRESSION.mask());
+        buf.setCompressor(new FrameCompressor());
+        buf.putVersion();
+        buf.putOp(PacketType.DISCOVERY);
+        buf.putStr("small");
+        buf.flush(out);
+        int small = out.size();
+        buf.putVersion();
+        buf.putOp(PacketType.DISCOVERY);
+        for (int i = 0; i < 1000; i++)
+            buf.putStr("java.lang.Thread");
+        buf.flush(out);
+        assertEquals(out.toByteArray()[0], Introverted.VERSION); //Small frames are left alone
+        assertTrue((out.toByteArray()[small] & 0x80) != 0);
+        assertTrue(out.size() - small < 1000 * 16);
+
+        PacketInputStream in = new PacketInputStream(new ByteArrayInputStream(out.toByteArray()));
+        PacketFrame frame = in.readFrame();
+        assertEquals(frame.toPacketBuffer().getStr(), "small");
+        frame.release();
+        frame = in.readFrame();
+        PacketBuffer read = frame.toPacketBuffer();
+        assertEquals(read.getVersion(), Introverted.VERSION);
+        for (int i = 0; i < 1000; i++)
+            assertEquals(read.getStr(), "java.lang.Thread");
+        assertFalse(read.hasNext());
+        frame.release();
+    }
+
+    @Test
+    public void testCompressedSizeBound() throws IOException {
+        ByteBuffer forged = ByteBuffer.allocate(14);
+        forged.put((byte) (Introverted.VERSION | 0x80)).put((byte) PacketType.DISCOVERY.getOpcode()).putInt(8);
+        forged.putInt(Integer.MAX_VALUE - 16).putInt(0); //Claims far more than 4 bytes could ever inflate to
+        PacketInputStream in = new PacketInputStream(new ByteArrayInputStream(forged.array()));
+        try {
+            in.readFrame();
+            fail();
+        } catch (IOException ignored) {}
+
+        FrameCompressor compressor = new FrameCompressor(0);
+        compressor.close();
+        compressor.close(); //Idempotent
+        try {
+            compressor.compress(ByteBuffer.allocate(64), 64, new ByteArrayOutputStream(), false);
+            fail();
+        } catch (IOException ignored) {}
+    }
+
+    @Test
+    public void testCompactHeader() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PacketOutputStream out = new PacketOutputStream(bytes);
+        out.setFeatures(ProtocolFeature.COMPRESSION.mask());
+        out.setProtocolVersion((byte) 2);
+        PingPacket ping = new PingPacket();
+        out.write(ping);
+        out.flush();
+        assertEquals(bytes.size(), 2 + 9 + 9); //Opcode + 1 byte varint header, then the id and the send time
+        assertEquals(bytes.toByteArray()[0], PacketType.PING.getOpcode());
+        StringBuilder platform = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+            platform.append("java.lang.Thread");
+        out.write(new DiscoveryConfirmPacket(platform.toString(), 1));
+        out.flush();
+        assertTrue(bytes.size() < 1000 * 16);
+
+        FrameDecoder decoder = new FrameDecoder(new BufferPool());
+        decoder.setProtocolVersion((byte) 2);
+        List<PacketFrame> frames = new ArrayList<>();
+        for (byte b : bytes.toByteArray()) { //Headers split across reads
+            decoder.feed(ByteBuffer.wrap(new byte[]{b}));
+            PacketFrame frame = decoder.nextFrame();
+            if (frame != null)
+                frames.add(frame);
+        }
+        assertEquals(frames.size(), 2);
+        assertTrue(FrameCompressor.isCompressed(frames.get(1)));
+
+        PacketInputStream in = new PacketInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        in.setProtocolVersion((byte) 2);
+        PingPacket read = (PingPacket) in.read();
+        assertEquals(read.getId(), ping.getId());
+        assertEquals(read.getSendTime(), ping.getSendTime());
+        assertEquals(read.getProtocolVersion(), 2);
+        assertEquals(((DiscoveryConfirmPacket) in.read()).getPlatformIdentifier(), platform.toString());
+        assertNull(in.read());
+    }
+}
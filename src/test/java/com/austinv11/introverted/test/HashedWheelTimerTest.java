@@ -0,0 +1,52 @@
+package com.austinv11.introverted.test;
+
+import com.austinv11.introverted.networking.HashedWheelTimer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class HashedWheelTimerTest {
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8); //Small, so tasks wait multiple turns
+        List<Long> delays = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(4);
+        long start = System.nanoTime();
+        for (long delay : new long[]{30, 0, 5, 17}) {
+            timer.schedule(() -> {
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue(elapsed >= delay);
+                delays.add(delay); //Only ever called on the timer's thread
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(delays.toArray(), new Object[]{0L, 5L, 17L, 30L});
+        assertEquals(timer.pending(), 0);
+        timer.close();
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer();
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean(false); //Failing on the timer's thread would go unnoticed
+        HashedWheelTimer.Timeout cancelled = timer.schedule(() -> ran.set(true), 10, TimeUnit.MILLISECONDS);
+        HashedWheelTimer.Timeout expired = timer.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+        assertTrue(cancelled.cancel());
+        assertEquals(timer.pending(), 1);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(expired.isExpired());
+        assertFalse(expired.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertFalse(ran.get()); //It was due before the task which did run
+        timer.close();
+    }
+}
@@ -0,0 +1,98 @@
+package com.austinv11.introverted.test;
+
+import com.austinv11.introverted.client.IntrovertedClient;
+import com.austinv11.introverted.networking.Packet;
+import com.austinv11.introverted.networking.PacketSocket;
+import com.austinv11.introverted.networking.packets.BatchPacket;
+import com.austinv11.introverted.networking.packets.ChunkPacket;
+import com.austinv11.introverted.server.IntrovertedServer;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InProcessTest {
+
+    private void exchange(boolean verifyCodec) throws Exception {
+        IntrovertedServer server = new IntrovertedServer();
+        IntrovertedClient client = new IntrovertedClient(server, verifyCodec);
+
+        StreamFixture.connect(server, client);
+        StreamFixture.stream(server, client, 100);
+
+        client.close();
+        server.close();
+    }
+
+    private List<Packet> receive(boolean verifyCodec, int expected, Packet... sent) throws Exception { //Sends from the client to the server
+        IntrovertedServer server = new IntrovertedServer();
+        IntrovertedClient client = new IntrovertedClient(server, verifyCodec);
+        StreamFixture.connect(server, client);
+
+        List<Packet> received = new CopyOnWriteArrayList<>();
+        server.handle(packet -> {
+            if (packet instanceof ChunkPacket)
+                received.add(packet);
+        });
+        for (Packet packet : sent)
+            client.send(packet);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.size() < expected && System.nanoTime() < deadline)
+            Thread.sleep(1);
+
+        client.close();
+        server.close();
+        return received;
+    }
+
+    @Test
+    public void testReference() throws Exception {
+        exchange(false);
+    }
+
+    @Test
+    public void testVerifyCodec() throws Exception {
+        exchange(true);
+    }
+
+    @Test
+    public void testIdentity() throws Exception {
+        ChunkPacket single = new ChunkPacket(new Object[]{"element"}, true);
+        ChunkPacket batched = new ChunkPacket(new Object[]{"batched"}, true);
+        List<Packet> received = receive(false, 2, single, new BatchPacket().add(batched));
+
+        //Handed over by reference, batches included
+        assertEquals(received.size(), 2);
+        assertSame(received.get(0), single);
+        assertSame(received.get(1), batched);
+        assertSame(((ChunkPacket) received.get(0)).getElements(), single.getElements());
+
+        received = receive(true, 2, single, new BatchPacket().add(batched));
+        assertEquals(received.size(), 2);
+        assertNotSame(received.get(0), single);
+        assertArrayEquals(((ChunkPacket) received.get(0)).getElements(), single.getElements());
+        assertNotSame(received.get(1), batched);
+        assertArrayEquals(((ChunkPacket) received.get(1)).getElements(), batched.getElements());
+    }
+
+    @Test
+    public void testReader() throws Exception {
+        Pair<PacketSocket, PacketSocket> connection = PacketSocket.inProcess();
+        ChunkPacket sent = new ChunkPacket(new Object[]{"element"}, true);
+        connection.getRight().getOutputStream().write(sent);
+        connection.getRight().getOutputStream().flush();
+
+        //Packets are handed over as they are, so the input stream never receives a frame
+        assertNull(connection.getLeft().getInputStream().read());
+        assertSame(connection.getLeft().getReader().read(), sent);
+
+        connection.getRight().close();
+        assertNull(connection.getLeft().getReader().read());
+        connection.getLeft().close();
+    }
+}
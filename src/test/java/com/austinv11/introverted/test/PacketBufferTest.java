@@ -1,11 +1,24 @@
 package com.austinv11.introverted.test;
 
+import com.austinv11.introverted.mapping.Serialized;
+import com.austinv11.introverted.networking.BufferPool;
 import com.austinv11.introverted.networking.PacketBuffer;
 import com.austinv11.introverted.networking.PacketType;
+import com.austinv11.introverted.networking.PacketVisitor;
+import com.austinv11.introverted.networking.ProtocolFeature;
+import com.austinv11.introverted.networking.StringTable;
+import com.austinv11.introverted.networking.StructRegistry;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
@@ -90,6 +103,46 @@ public class PacketBufferTest {
         }
     }
 
+    @Test
+    public void testPackedArray() {
+        long[] longs = new long[1000];
+        for (int i = 0; i < longs.length; i++)
+            longs[i] = i * 31L;
+        PacketBuffer buf = newBuffer();
+        buf.setFeatures(ProtocolFeature.PACKED_ARRAYS.mask());
+        buf.putArray(new int[]{1, -2, 3}).putArray(longs).putArray(new double[]{.5}).putArray(new boolean[]{true, false})
+                .putArray(new char[]{'h', 'i'}).put(new float[]{1.5F});
+        byte[] data = buf.flush();
+        assertEquals(data.length, 6 + 6 * 6 + 3 * 4 + 1000 * 8 + 8 + 2 + 4 + 4);
+        PacketBuffer buf2 = new PacketBuffer(data);
+        assertArrayEquals(buf2.getIntArray(), new int[]{1, -2, 3});
+        assertArrayEquals(buf2.getLongArray(), longs);
+        assertArrayEquals(buf2.getDoubleArray(), new double[]{.5}, 0);
+        assertArrayEquals(buf2.getBooleanArray(), new boolean[]{true, false});
+        assertArrayEquals((char[]) buf2.getNext(), new char[]{'h', 'i'});
+        assertArrayEquals(buf2.getArray(), new Object[]{1.5F});
+    }
+
+    @Test
+    public void testUnpackedTypedArray() {
+        PacketBuffer buf = newBuffer().putArray(new int[]{4, 5, 6});
+        buf.reset();
+        assertArrayEquals(buf.getIntArray(), new int[]{4, 5, 6});
+    }
+
+    @Test
+    public void testBytes() {
+        byte[] bytes = new byte[]{(byte) 0xca, (byte) 0xfe, 0, 1};
+        PacketBuffer buf = newBuffer().put(bytes).putBytes(ByteBuffer.wrap(bytes, 1, 2)).putInt(7);
+        PacketBuffer buf2 = new PacketBuffer(buf.flush());
+        ByteBuffer slice = buf2.getBytes();
+        assertEquals(slice.remaining(), 4);
+        assertEquals(slice.get(1), (byte) 0xfe);
+        assertTrue(buf2.isShared());
+        assertArrayEquals(buf2.getByteArray(), new byte[]{(byte) 0xfe, 0});
+        assertEquals(buf2.getInt(), 7);
+    }
+
     @Test
     public void testString() {
         PacketBuffer buf = newBuffer().putStr("hi");
@@ -97,11 +150,35 @@ public class PacketBufferTest {
         assertEquals(buf.getStr(), "hi");
     }
 
+    @Test
+    public void testStringTable() {
+        PacketBuffer out = newBuffer();
+        out.setFeatures(ProtocolFeature.STRING_TABLE.mask());
+        out.setStringTable(new StringTable());
+        PacketBuffer first = new PacketBuffer(out.putStr("java.lang.Thread").putStr("java.lang.Thread").flush());
+        out.putVersion();
+        out.putOp(PacketType.DISCOVERY);
+        byte[] data = out.putStr("java.lang.Thread").flush();
+        assertEquals(data.length, 6 + 2);
+
+        StringTable in = new StringTable();
+        first.setStringTable(in);
+        assertTrue(first.definesEntries());
+        String string = first.getStr();
+        assertEquals(string, "java.lang.Thread");
+        assertSame(first.getStr(), string);
+        PacketBuffer second = new PacketBuffer(data);
+        second.setStringTable(in);
+        assertFalse(second.definesEntries());
+        assertSame(second.getStr(), string);
+    }
+
     @Test
     public void testNil() {
-        PacketBuffer buf = newBuffer().putNil();
+        PacketBuffer buf = newBuffer().putNil().putInt(5);
         buf.reset();
         buf.getNil(); //Returns void so we are just checking that no exception is thrown
+        assertEquals(buf.getInt(), 5); //Nothing past the nil was consumed
     }
 
     @Test
@@ -120,9 +197,301 @@ public class PacketBufferTest {
         assertEquals(buf2.getStr(), "Hello World");
     }
 
+    @Test
+    public void testVarInts() {
+        PacketBuffer buf = newBuffer().putVarInt(-1).putVarInt(Integer.MIN_VALUE).putVarUInt(0xffffffffL)
+                .putVarLong(Long.MIN_VALUE).putVarULong(-1L).putVarULong(127);
+        buf.reset();
+        assertEquals(buf.getInt(), -1);
+        assertEquals(buf.getInt(), Integer.MIN_VALUE);
+        assertEquals(buf.getUInt(), 0xffffffffL);
+        assertEquals(buf.getLong(), Long.MIN_VALUE);
+        assertEquals(buf.getULong(), -1L);
+        assertEquals(buf.getULong(), 127);
+    }
+
+    @Test
+    public void testCompactNumbers() {
+        PacketBuffer buf = newBuffer();
+        buf.setFeatures(ProtocolFeature.COMPACT_NUMBERS.mask());
+        buf.put(5).put(3L, true).put(1.5F).put('c');
+        byte[] data = buf.flush();
+        assertEquals(data.length, 6 + 2 + 2 + 5 + 3);
+        PacketBuffer buf2 = new PacketBuffer(data);
+        assertEquals(buf2.getNext(), 5);
+        assertEquals(buf2.getNext(), 3L);
+        assertEquals(buf2.getNext(), 1.5F);
+        assertEquals(buf2.getNext(), 'c');
+        assertFalse(buf2.hasNext());
+    }
+
+    @Test
+    public void testDirect() {
+        PacketBuffer buf = new PacketBuffer(4, true);
+        buf.putVersion();
+        buf.putOp(PacketType.DISCOVERY);
+        buf.putLong(-1234567890123L).putStr("direct").putUInt(0xfffffffeL);
+        PacketBuffer buf2 = new PacketBuffer(ByteBuffer.wrap(buf.flush()));
+        assertEquals(buf2.getLong(), -1234567890123L);
+        assertEquals(buf2.getStr(), "direct");
+        assertEquals(buf2.getUInt(), 0xfffffffeL);
+    }
+
+    @Test
+    public void testPooled() throws IOException {
+        BufferPool pool = new BufferPool();
+        PacketBuffer buf = new PacketBuffer(pool);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 2; i++) {
+            buf.putVersion();
+            buf.putOp(PacketType.DISCOVERY);
+            for (int j = 0; j < 100; j++)
+                buf.putStr("pooled");
+            buf.flush(out);
+        }
+        PacketBuffer buf2 = new PacketBuffer(out.toByteArray());
+        for (int j = 0; j < 100; j++)
+            assertEquals(buf2.getStr(), "pooled");
+        assertEquals(out.size() % 2, 0);
+    }
+
+    @Test
+    public void testPoolRetention() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer first = pool.acquire(100);
+        assertEquals(first.capacity(), 128);
+        first.position(10);
+        pool.release(first);
+        ByteBuffer reused = pool.acquire(120); //Same size class
+        assertSame(reused, first);
+        assertEquals(reused.position(), 0);
+        assertNotSame(pool.acquire(200), first); //Different size class
+
+        List<ByteBuffer> released = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            released.add(pool.acquire(128));
+        released.forEach(pool::release);
+        for (int i = 0; i < 8; i++) //Only 8 are retained per size class, the last released is handed out first
+            assertSame(pool.acquire(128), released.get(7 - i));
+        ByteBuffer fresh = pool.acquire(128);
+        for (ByteBuffer buffer : released)
+            assertNotSame(fresh, buffer);
+
+        ByteBuffer huge = pool.acquire((1 << 20) + 1); //Larger than the largest size class, never retained
+        pool.release(huge);
+        assertNotSame(pool.acquire((1 << 20) + 1), huge);
+    }
+
+    @Test
+    public void testPoolForeignBuffers() {
+        BufferPool pool = new BufferPool();
+        for (ByteBuffer foreign : new ByteBuffer[]{ByteBuffer.allocate(16), ByteBuffer.allocate(100), ByteBuffer.allocateDirect(64)})
+            pool.release(foreign); //Too small for the smallest size class, not a size class or not of the pool's kind
+
+        ByteBuffer acquired = pool.acquire(64);
+        assertEquals(acquired.capacity(), 64);
+        assertFalse(acquired.isDirect());
+        assertEquals(pool.acquire(100).capacity(), 128);
+    }
+
+    @Test
+    public void testVisit() {
+        PacketBuffer out = newBuffer();
+        out.setFeatures(ProtocolFeature.COMPACT_NUMBERS.mask() | ProtocolFeature.PACKED_ARRAYS.mask()
+                | ProtocolFeature.STRING_TABLE.mask());
+        out.setStringTable(new StringTable());
+        Map<String, Object> map = new HashMap<>();
+        map.put("key", null);
+        out.put(-5).put(7L, true).putBoolean(true).putArray(new int[]{1, 2}).putArray(new Object[]{'c', 1.5D})
+                .putStr("java.lang.Thread").putStr("java.lang.Thread").putBytes(new byte[]{1, 2, 3}).putMap(map)
+                .putUInt(9).putFloat(0.5F);
+        PacketBuffer in = new PacketBuffer(out.flush());
+        in.setStringTable(new StringTable());
+
+        StringBuilder trace = new StringBuilder();
+        in.visit(new PacketVisitor() {
+            @Override
+            public void onInt(int value) {
+                trace.append("int:").append(value).append(' ');
+            }
+
+            @Override
+            public void onULong(long value) {
+                trace.append("ulong:").append(value).append(' ');
+            }
+
+            @Override
+            public void onUInt(long value) {
+                trace.append("uint:").append(value).append(' ');
+            }
+
+            @Override
+            public void onBoolean(boolean value) {
+                trace.append(value).append(' ');
+            }
+
+            @Override
+            public void onChar(char value) {
+                trace.append(value).append(' ');
+            }
+
+            @Override
+            public void onFloat(float value) {
+                trace.append("float:").append(value).append(' ');
+            }
+
+            @Override
+            public void onDecimal(double value) {
+                trace.append(value).append(' ');
+            }
+
+            @Override
+            public void onNil() {
+                trace.append("nil ");
+            }
+
+            @Override
+            public void onStrBytes(ByteBuffer data, int offset, int length) {
+                byte[] bytes = new byte[length];
+                for (int i = 0; i < length; i++)
+                    bytes[i] = data.get(offset + i);
+                trace.append('"').append(new String(bytes, StandardCharsets.UTF_8)).append("\" ");
+            }
+
+            @Override
+            public void onStrRef(String value) {
+                trace.append("&").append(value).append(' ');
+            }
+
+            @Override
+            public void onBytes(ByteBuffer data, int offset, int length) {
+                trace.append("bytes:").append(length).append(' ');
+            }
+
+            @Override
+            public void onArrayStart(int length) {
+                trace.append("[ ");
+            }
+
+            @Override
+            public void onArrayEnd() {
+                trace.append("] ");
+            }
+
+            @Override
+            public void onMapStart(int size) {
+                trace.append("{ ");
+            }
+
+            @Override
+            public void onMapEnd() {
+                trace.append("} ");
+            }
+        });
+        assertEquals("int:-5 ulong:7 true [ int:1 int:2 ] [ c 1.5 ] \"java.lang.Thread\" &java.lang.Thread bytes:3 " +
+                "{ \"key\" nil } uint:9 float:0.5 ", trace.toString());
+        assertFalse(in.hasNext());
+    }
+
+    @Test
+    public void testStruct() {
+        PacketBuffer out = newBuffer();
+        out.setFeatures(ProtocolFeature.STRUCTS.mask());
+        out.setStructRegistry(new StructRegistry());
+        PacketBuffer first = new PacketBuffer(out.put(new Point(1, -2, "a", new Point(3, 4, null, null))).flush());
+        out.putVersion();
+        out.putOp(PacketType.DISCOVERY);
+        byte[] data = out.put(new Point(5, 6, "b", null)).flush();
+        assertEquals(data.length, 6 + 2 + 2 + 6 + 1); //Only the label and nil are tagged
+
+        StructRegistry in = new StructRegistry();
+        first.setStructRegistry(in);
+        assertTrue(first.definesEntries());
+        Point point = first.getStruct(Point.class);
+        assertEquals(point.x, 1);
+        assertEquals(point.y, -2);
+        assertEquals(point.label, "a");
+        assertEquals(point.next.x, 3);
+        assertNull(point.next.next);
+
+        PacketBuffer second = new PacketBuffer(data);
+        second.setStructRegistry(in);
+        assertFalse(second.definesEntries());
+        PointView view = second.getStruct(PointView.class); //Fields are matched by name
+        assertEquals(view.x, 5);
+        assertEquals(view.label, "b");
+        second.movePointer(0);
+        Map<?, ?> map = (Map<?, ?>) second.getNext();
+        assertEquals(map.get("y"), 6L);
+        assertTrue(map.containsKey("next"));
+    }
+
+    @Test
+    public void testStructFallback() {
+        PacketBuffer buf = new PacketBuffer(newBuffer().put(new Point(1, 2, "a", null)).flush());
+        assertFalse(buf.definesEntries());
+        PointView view = buf.getStruct(PointView.class);
+        assertEquals(view.x, 1);
+        assertEquals(view.label, "a");
+    }
+
+    @Test
+    public void testParallelEncoding() {
+        List<Object> list = new ArrayList<>();
+        Map<Integer, String> map = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            list.add(i % 3 == 0 ? "element" + i : i);
+            map.put(i, "value" + i);
+        }
+
+        PacketBuffer parallel = newBuffer();
+        parallel.setParallelEncoding(ForkJoinPool.commonPool(), 5000);
+        parallel.putArray(list).putMap(map).putArray(new Object[]{1, 2});
+        assertArrayEquals(parallel.flush(), newBuffer().putArray(list).putMap(map).putArray(new Object[]{1, 2}).flush());
+
+        parallel = newBuffer();
+        parallel.setParallelEncoding(ForkJoinPool.commonPool(), 5000);
+        PacketBuffer buf = new PacketBuffer(parallel.putArray(list).putMap(map).flush());
+        assertArrayEquals(buf.getArray(), list.toArray());
+        assertEquals(buf.getMap(new HashMap<>()), map);
+    }
+
+    @Test
+    public void testWireFormat() {
+        byte[] data = newBuffer().putInt(258).flush();
+        assertArrayEquals(new byte[]{2, 0, 0, 0, 0, 5, 2, 0, 0, 1, 2}, data);
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testTypeMismatch() {
         PacketBuffer buf = newBuffer().put("hi");
         buf.getInt();
     }
+
+    private static class Point {
+
+        @Serialized(0)
+        private int x;
+        @Serialized(1)
+        private long y;
+        @Serialized(2)
+        private String label;
+        @Serialized(3)
+        private Point next;
+
+        private Point(int x, long y, String label, Point next) {
+            this.x = x;
+            this.y = y;
+            this.label = label;
+            this.next = next;
+        }
+    }
+
+    private static class PointView {
+
+        @Serialized(0)
+        private long x;
+        @Serialized(1)
+        private String label;
+    }
 }
@@ -0,0 +1,67 @@
+package com.austinv11.introverted.test;
+
+import com.austinv11.introverted.networking.LazyPacket;
+import com.austinv11.introverted.networking.PacketFilter;
+import com.austinv11.introverted.networking.PacketInputStream;
+import com.austinv11.introverted.networking.PacketOutputStream;
+import com.austinv11.introverted.networking.PacketType;
+import com.austinv11.introverted.networking.ProtocolFeature;
+import com.austinv11.introverted.networking.packets.DiscoveryConfirmPacket;
+import com.austinv11.introverted.networking.packets.HandshakeRefusePacket;
+import com.austinv11.introverted.networking.packets.PingPacket;
+import com.austinv11.introverted.server.IntrovertedServer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class PacketInputStreamTest {
+
+    @Test
+    public void testLazySkip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PacketOutputStream out = new PacketOutputStream(bytes);
+        out.setFeatures(ProtocolFeature.STRING_TABLE.mask());
+        out.write(new HandshakeRefusePacket(IntrovertedServer.JVM_LIGHT_PLATFORM, 1)); //Defines the string
+        out.flush();
+        out.write(new PingPacket());
+        out.flush();
+        out.write(new DiscoveryConfirmPacket(IntrovertedServer.JVM_LIGHT_PLATFORM, 2)); //Only references it
+        out.flush();
+
+        PacketInputStream in = new PacketInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        LazyPacket packet = in.readLazy(type -> type == PacketType.DISCOVERY_CONFIRM);
+        assertEquals(packet.getType(), PacketType.DISCOVERY_CONFIRM);
+        assertFalse(packet.isDecoded());
+        assertEquals(((DiscoveryConfirmPacket) packet.get()).getPlatformIdentifier(), IntrovertedServer.JVM_LIGHT_PLATFORM);
+        packet.release();
+        assertNull(in.readLazy(PacketFilter.ALL));
+    }
+
+    @Test
+    public void testRecycling() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PacketOutputStream out = new PacketOutputStream(bytes);
+        for (String platform : new String[]{"first", "second", "third"}) {
+            out.write(new DiscoveryConfirmPacket(platform, platform.length()));
+            out.flush();
+        }
+
+        PacketInputStream in = new PacketInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        DiscoveryConfirmPacket first = (DiscoveryConfirmPacket) in.read();
+        in.setRecycling(PacketType.DISCOVERY_CONFIRM, true);
+        assertTrue(in.isRecycling(PacketType.DISCOVERY_CONFIRM));
+        DiscoveryConfirmPacket second = (DiscoveryConfirmPacket) in.read();
+        assertEquals(second.getPlatformIdentifier(), "second");
+        DiscoveryConfirmPacket third = (DiscoveryConfirmPacket) in.read();
+        assertSame(second, third);
+        assertEquals(third.getPlatformIdentifier(), "third");
+        assertEquals(third.getId(), 5);
+        assertEquals(third.getType(), PacketType.DISCOVERY_CONFIRM);
+        assertNotSame(first, third);
+        assertEquals(first.getPlatformIdentifier(), "first");
+    }
+}
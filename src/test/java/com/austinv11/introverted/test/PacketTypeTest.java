@@ -0,0 +1,61 @@
+package com.austinv11.introverted.test;
+
+import com.austinv11.introverted.common.Introverted;
+import com.austinv11.introverted.mapping.Serialized;
+import com.austinv11.introverted.networking.Packet;
+import com.austinv11.introverted.networking.PacketInputStream;
+import com.austinv11.introverted.networking.PacketOutputStream;
+import com.austinv11.introverted.networking.PacketType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class PacketTypeTest {
+
+    private static final PacketType CUSTOM = PacketType.register(200, "CUSTOM", CustomPacket.class);
+
+    @Test
+    public void testPlatformOpcode() throws IOException {
+        assertSame(PacketType.of(200), CUSTOM);
+        assertSame(PacketType.of(PacketType.PING.getOpcode()), PacketType.PING);
+        assertNull(PacketType.of(201));
+        assertSame(PacketType.valueOf("CUSTOM"), CUSTOM);
+        assertSame(PacketType.valueOf("PING"), PacketType.PING);
+        try {
+            PacketType.register(200, "DUPLICATE", CustomPacket.class);
+            fail();
+        } catch (IllegalArgumentException ignored) {}
+        try {
+            PacketType.register(PacketType.PING.getOpcode(), "RESERVED", CustomPacket.class);
+            fail();
+        } catch (IllegalArgumentException ignored) {}
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(new byte[]{Introverted.MIN_VERSION, (byte) 201, 0, 0, 0, 0}); //Nothing is registered to this op
+        PacketOutputStream out = new PacketOutputStream(bytes);
+        out.write(new CustomPacket("custom"));
+        out.flush();
+
+        PacketInputStream in = new PacketInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        CustomPacket packet = (CustomPacket) in.read();
+        assertEquals(packet.getType(), CUSTOM);
+        assertEquals(packet.getOpcode(), 200);
+        assertEquals(packet.value, "custom");
+        assertNull(in.read());
+    }
+
+    private static class CustomPacket extends Packet {
+
+        @Serialized(0)
+        private String value;
+
+        CustomPacket(String value) {
+            super(Introverted.VERSION, CUSTOM);
+            this.value = value;
+        }
+    }
+}
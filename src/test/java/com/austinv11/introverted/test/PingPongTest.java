@@ -1,10 +1,23 @@
 package com.austinv11.introverted.test;
 
 import com.austinv11.introverted.client.IntrovertedClient;
+import com.austinv11.introverted.networking.HashedWheelTimer;
+import com.austinv11.introverted.networking.PacketType;
+import com.austinv11.introverted.networking.PendingExchanges;
+import com.austinv11.introverted.networking.SocketFactory;
+import com.austinv11.introverted.networking.packets.ChunkPacket;
+import com.austinv11.introverted.networking.packets.PingPacket;
+import com.austinv11.introverted.networking.packets.PongPacket;
 import com.austinv11.introverted.server.IntrovertedServer;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
 
 public class PingPongTest {
 
@@ -22,4 +35,58 @@ public class PingPongTest {
         server.close();
         client.close();
     }
+
+    @Test
+    public void testPipelined() throws Exception {
+        int port = SocketFactory.discoverOpenPort();
+        IntrovertedServer server = new IntrovertedServer(port);
+        IntrovertedClient client = new IntrovertedClient(port);
+
+        List<PingPacket> pings = new ArrayList<>();
+        List<CompletableFuture<PongPacket>> pongs = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) { //Every ping is in flight before any pong is waited for
+            PingPacket ping = new PingPacket();
+            pings.add(ping);
+            pongs.add(client.exchangeAsync(ping));
+        }
+        for (int i = 0; i < pings.size(); i++)
+            assertEquals(pongs.get(i).get(10, TimeUnit.SECONDS).getId(), pings.get(i).getId());
+
+        server.close();
+        client.close();
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        IntrovertedServer server = new IntrovertedServer();
+        IntrovertedClient client = new IntrovertedClient(server);
+
+        int consumers = client.getPacketConsumerCount();
+        for (int i = 0; i < 100; i++) //Nothing ever matches, so every wait must time out and clean up after itself
+            assertNull(client.waitFor(packet -> false, 1, TimeUnit.MILLISECONDS));
+        assertEquals(client.getPacketConsumerCount(), consumers);
+        assertEquals(HashedWheelTimer.shared().pending(), 0);
+        assertNotNull(client.exchange(new PingPacket(), -1, TimeUnit.MILLISECONDS)); //Waits indefinitely
+
+        server.close();
+        client.close();
+    }
+
+    @Test
+    public void testCollidingIds() throws Exception {
+        PendingExchanges exchanges = new PendingExchanges();
+        PingPacket ping = new PingPacket();
+        CompletableFuture<PongPacket> pong = exchanges.register(ping);
+
+        //The other side numbers its packets independently, so its packets may carry the same id as the ping
+        exchanges.accept(new ChunkPacket(ping.getId(), 0, new Object[]{"element"}, true));
+        assertFalse(pong.isDone());
+        assertEquals(exchanges.size(), 1);
+
+        assertTrue(PacketType.PING.isResponse(PacketType.PONG));
+        assertFalse(PacketType.PING.isResponse(PacketType.CHUNK));
+        exchanges.accept(new PongPacket(ping.getId()));
+        assertEquals(pong.get(5, TimeUnit.SECONDS).getId(), ping.getId());
+        assertEquals(exchanges.size(), 0);
+    }
 }
@@ -0,0 +1,252 @@
+package com.austinv11.introverted.test;
+
+import com.austinv11.introverted.client.IntrovertedClient;
+import com.austinv11.introverted.networking.PacketInputStream;
+import com.austinv11.introverted.networking.PacketOutputStream;
+import com.austinv11.introverted.networking.PacketReactor;
+import com.austinv11.introverted.networking.PacketSocket;
+import com.austinv11.introverted.networking.SocketFactory;
+import com.austinv11.introverted.networking.packets.ChunkPacket;
+import com.austinv11.introverted.networking.packets.DiscoveryPacket;
+import com.austinv11.introverted.server.IntrovertedServer;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReactorTest {
+
+    private void exchange(IntrovertedServer server, List<IntrovertedClient> clients) throws IOException, InterruptedException {
+        StreamFixture.connect(server, clients.toArray(new IntrovertedClient[0]));
+        StreamFixture.stream(server, clients.get(0), 1000); //Far more than the socket can buffer
+
+        for (IntrovertedClient client : clients)
+            client.cleanlyClose(0);
+        server.close();
+    }
+
+    @Test
+    public void testTcp() throws IOException, InterruptedException {
+        int port = SocketFactory.discoverOpenPort();
+        IntrovertedServer server = new IntrovertedServer(port, 2);
+        List<IntrovertedClient> clients = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            clients.add(new IntrovertedClient(port));
+        exchange(server, clients);
+    }
+
+    @Test
+    public void testUnix() throws IOException, InterruptedException {
+        if (!SocketFactory.supportsUnixSockets())
+            return;
+
+        String address = SocketFactory.generateUnixSocketAddress() + ".reactor";
+        new File(address).delete();
+        IntrovertedServer server = new IntrovertedServer(address, 2);
+        List<IntrovertedClient> clients = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            clients.add(new IntrovertedClient(address));
+        exchange(server, clients);
+    }
+
+    @Test
+    public void testWriteInterest() throws Exception {
+        int port = SocketFactory.discoverOpenPort();
+        TestListener listener = new TestListener();
+        PacketReactor reactor = new PacketReactor(SocketFactory.newTCPServerChannel(port), 1, listener);
+        SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", port));
+        PacketOutputStream out = listener.connected.get(5, TimeUnit.SECONDS).getOutputStream();
+
+        //Far more than the high-water mark while the client isn't reading, so the writer has to wait for it to drain
+        int packets = 4 * PacketReactor.MAX_PENDING_BYTES / (1 << 20);
+        CompletableFuture<Void> sent = CompletableFuture.runAsync(() -> {
+            try {
+                for (int i = 0; i < packets; i++) {
+                    out.write(new ChunkPacket(new Object[]{_element(i)}, false));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(500);
+        assertFalse(sent.isDone());
+
+        PacketInputStream in = new PacketInputStream(client);
+        for (int i = 0; i < packets; i++)
+            assertArrayEquals(((ChunkPacket) in.read()).getElements(), new Object[]{_element(i)});
+        sent.get(5, TimeUnit.SECONDS);
+
+        client.close();
+        reactor.close();
+    }
+
+    @Test
+    public void testDisconnect() throws Exception {
+        int port = SocketFactory.discoverOpenPort();
+        TestListener listener = new TestListener();
+        PacketReactor reactor = new PacketReactor(SocketFactory.newTCPServerChannel(port), 1, listener);
+
+        SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", port));
+        PacketSocket socket = listener.connected.get(5, TimeUnit.SECONDS);
+        client.close();
+        assertTrue(listener.disconnected.await(5, TimeUnit.SECONDS));
+        try {
+            socket.getOutputStream().write(new ChunkPacket(new Object[]{"element"}, true));
+            socket.getOutputStream().flush();
+            fail("Writing to a disconnected connection should fail!");
+        } catch (IOException e) {
+            //Expected
+        }
+
+        listener.reset();
+        client = SocketChannel.open(new InetSocketAddress("localhost", port));
+        listener.connected.get(5, TimeUnit.SECONDS).close();
+        assertTrue(listener.disconnected.await(5, TimeUnit.SECONDS));
+        assertNull(new PacketInputStream(client).read()); //Closed by the server's side
+
+        reactor.close();
+    }
+
+    @Test
+    public void testWriteFromEventLoop() throws Exception {
+        int port = SocketFactory.discoverOpenPort();
+        TestListener stalled = new TestListener();
+        CompletableFuture<IOException> failed = new CompletableFuture<>();
+        PacketReactor reactor = new PacketReactor(SocketFactory.newTCPServerChannel(port), 2, new PacketReactor.Listener() {
+            @Override
+            public void onConnect(PacketSocket socket) {
+                stalled.onConnect(socket); //Only the first connection, the second is served by the other event loop
+            }
+
+            @Override
+            public void onReadable(PacketSocket socket) throws IOException {
+                stalled.onReadable(socket);
+                if (socket == stalled.connected.getNow(null))
+                    return;
+
+                PacketOutputStream out = stalled.connected.getNow(null).getOutputStream();
+                try {
+                    synchronized (out) { //Like the waiting writer, which must not hold on to it meanwhile
+                        out.write(new ChunkPacket(new Object[]{"element"}, true));
+                        out.flush();
+                    }
+                    failed.complete(null);
+                } catch (IOException e) {
+                    failed.complete(e);
+                }
+            }
+
+            @Override
+            public void onDisconnect(PacketSocket socket) {
+                if (socket == stalled.connected.getNow(null))
+                    stalled.onDisconnect(socket);
+            }
+        });
+        SocketChannel stalledClient = SocketChannel.open(new InetSocketAddress("localhost", port));
+        PacketOutputStream out = stalled.connected.get(5, TimeUnit.SECONDS).getOutputStream();
+
+        int packets = 4 * PacketReactor.MAX_PENDING_BYTES / (1 << 20); //The writer waits while the client isn't reading
+        CompletableFuture<Void> sent = CompletableFuture.runAsync(() -> {
+            try {
+                for (int i = 0; i < packets; i++) {
+                    synchronized (out) { //Serialized with other writers per frame
+                        out.write(new ChunkPacket(new Object[]{_element(i)}, false));
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(500);
+        assertFalse(sent.isDone());
+
+        //Writing from another event loop must not wait along with it, the stalled connection is disconnected instead
+        SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", port));
+        PacketOutputStream clientOut = new PacketOutputStream(Channels.newOutputStream(client));
+        clientOut.write(new ChunkPacket(new Object[]{"element"}, true));
+        clientOut.flush();
+        assertNotNull(failed.get(5, TimeUnit.SECONDS));
+        assertTrue(stalled.disconnected.await(5, TimeUnit.SECONDS));
+        try {
+            sent.get(5, TimeUnit.SECONDS);
+            fail("The waiting writer should be released once disconnected!");
+        } catch (ExecutionException e) {
+            //Expected
+        }
+
+        client.close();
+        stalledClient.close();
+        reactor.close();
+    }
+
+    @Test
+    public void testBroadcastFromEventLoop() throws Exception {
+        int port = SocketFactory.discoverOpenPort();
+        IntrovertedServer server = new IntrovertedServer(port, 2);
+        SocketChannel stalled = SocketChannel.open(new InetSocketAddress("localhost", port)); //Never reads
+        Thread.sleep(500); //Until it has been accepted
+
+        int packets = 4 * PacketReactor.MAX_PENDING_BYTES / (1 << 20);
+        CompletableFuture<Void> sent = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < packets; i++)
+                server.send(new ChunkPacket(new Object[]{_element(i)}, false));
+        });
+        Thread.sleep(500);
+        assertFalse(sent.isDone());
+
+        //Discoveries are answered by a broadcast from the event loop, which must not get stuck behind the stalled send
+        IntrovertedClient client = new IntrovertedClient(port);
+        assertNotNull(client.exchange(new DiscoveryPacket(), 5, TimeUnit.SECONDS));
+        sent.get(10, TimeUnit.SECONDS); //Released once the stalled connection has been disconnected
+
+        client.close();
+        stalled.close();
+        server.close();
+    }
+
+    private static String _element(int index) { //Large enough to never be put in the string table
+        char[] chars = new char[1 << 20];
+        Arrays.fill(chars, (char) ('a' + index % 26));
+        return new String(chars);
+    }
+
+    private static final class TestListener implements PacketReactor.Listener {
+
+        private volatile CompletableFuture<PacketSocket> connected = new CompletableFuture<>();
+        private volatile CountDownLatch disconnected = new CountDownLatch(1);
+
+        private void reset() {
+            connected = new CompletableFuture<>();
+            disconnected = new CountDownLatch(1);
+        }
+
+        @Override
+        public void onConnect(PacketSocket socket) {
+            connected.complete(socket);
+        }
+
+        @Override
+        public void onReadable(PacketSocket socket) throws IOException {
+            while (socket.getInputStream().pollLazy(type -> false) != null) ;
+        }
+
+        @Override
+        public void onDisconnect(PacketSocket socket) {
+            disconnected.countDown();
+        }
+    }
+}
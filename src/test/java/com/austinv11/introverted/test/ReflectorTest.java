@@ -1,7 +1,13 @@
 package com.austinv11.introverted.test;
 
+import com.austinv11.introverted.mapping.FieldInfo;
+import com.austinv11.introverted.mapping.PacketCodec;
 import com.austinv11.introverted.mapping.Reflector;
 import com.austinv11.introverted.mapping.Serialized;
+import com.austinv11.introverted.networking.Packet;
+import com.austinv11.introverted.networking.PacketBuffer;
+import com.austinv11.introverted.networking.PacketType;
+import com.austinv11.introverted.networking.packets.DiscoveryConfirmPacket;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -24,11 +30,35 @@ public class ReflectorTest {
         assertNotNull(Reflector.instance().getField(TestClass.class, "serialized1"));
     }
 
+    @Test
+    public void testFieldInfo() {
+        FieldInfo info = Reflector.instance().getFieldInfo(TestPacket.class, "serialized");
+        assertSame(info, Reflector.instance().getFieldInfo(TestPacket.class, "serialized")); //Cached
+        assertEquals(info.getKind(), FieldInfo.Kind.INT);
+        assertEquals(info.getSerialized().value(), 0);
+        assertNotNull(Reflector.instance().getFieldInfo(TestPacket.class, "type")); //Inherited
+        assertNull(Reflector.instance().getFieldInfo(TestPacket.class, "missing"));
+        assertEquals(Reflector.instance().getSerializedFieldInfo(TestPacket.class).size(), 2);
+    }
+
     @Test
     public void testGet() {
         assertEquals(Reflector.instance().get(TestClass.class, new TestClass(), "serialized1"), "hi1");
     }
 
+    @Test
+    public void testPrimitives() {
+        for (Reflector reflector : new Reflector[]{Reflector.instance(), Reflector.instance(false)}) {
+            TestPacket packet = new TestPacket();
+            FieldInfo field = reflector.getFieldInfo(TestPacket.class, "serialized");
+            reflector.putInt(packet, field, 42);
+            assertEquals(reflector.getInt(packet, field), 42);
+            reflector.putInt(TestPacket.class, packet, "serialized", 1337);
+            assertEquals(packet.serialized, 1337);
+            assertEquals(reflector.getInt(TestPacket.class, packet, "serialized"), 1337);
+        }
+    }
+
     @Test
     public void testSet() {
         TestClass testClass = new TestClass();
@@ -41,6 +71,45 @@ public class ReflectorTest {
         assertNotNull(Reflector.instance().instantiate(TestClass.class));
     }
 
+    @Test
+    public void testGeneratedCodec() {
+        PacketCodec<DiscoveryConfirmPacket> codec = PacketCodec.of(DiscoveryConfirmPacket.class);
+        assertTrue(codec.getClass().getName().endsWith(PacketCodec.SUFFIX));
+        PacketBuffer buf = new PacketBuffer();
+        buf.putVersion();
+        buf.putOp(PacketType.DISCOVERY_CONFIRM);
+        codec.encode(new DiscoveryConfirmPacket("JVM-light", 42), buf);
+
+        DiscoveryConfirmPacket packet = codec.newInstance();
+        codec.decode(packet, new PacketBuffer(buf.flush()));
+        assertEquals(packet.getId(), 42);
+        assertEquals(packet.getPlatformIdentifier(), "JVM-light");
+    }
+
+    @Test
+    public void testReflectionCodec() { //Test sources aren't run through the codec processor
+        PacketCodec<TestPacket> codec = PacketCodec.of(TestPacket.class);
+        PacketBuffer buf = new PacketBuffer();
+        buf.putVersion();
+        buf.putOp(PacketType.DISCOVERY);
+        TestPacket sent = new TestPacket();
+        sent.serialized = 1337;
+        codec.encode(sent, buf);
+
+        TestPacket packet = codec.newInstance();
+        codec.decode(packet, new PacketBuffer(buf.flush()));
+        assertEquals(packet.serialized, 1337);
+        assertNull(packet.nil);
+    }
+
+    private static class TestPacket extends Packet {
+
+        @Serialized(0)
+        private int serialized;
+        @Serialized(1)
+        private String nil;
+    }
+
     private static class TestClass {
 
         private String nonSerialized = "hi";
@@ -0,0 +1,116 @@
+package com.austinv11.introverted.test;
+
+import com.austinv11.introverted.client.IntrovertedClient;
+import com.austinv11.introverted.networking.PacketServerSocket;
+import com.austinv11.introverted.networking.PacketSocket;
+import com.austinv11.introverted.networking.SocketFactory;
+import com.austinv11.introverted.networking.packets.ChunkPacket;
+import com.austinv11.introverted.server.IntrovertedServer;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SharedMemoryTest {
+
+    private static String _address(String suffix) {
+        String address = SocketFactory.generateUnixSocketAddress() + suffix;
+        new File(address).delete();
+        return address;
+    }
+
+    private static PacketSocket[] _pair(String address, int capacity) throws Exception { //The server's side, then the client's
+        PacketServerSocket serverSocket = SocketFactory.newSharedMemoryServerSocket(address, capacity);
+        CompletableFuture<PacketSocket> accepted = CompletableFuture.supplyAsync(serverSocket::accept);
+        PacketSocket client = SocketFactory.newSharedMemorySocket(address);
+        return new PacketSocket[]{accepted.get(5, TimeUnit.SECONDS), client};
+    }
+
+    private static String _element(int index) {
+        char[] chars = new char[index % 200];
+        Arrays.fill(chars, (char) ('a' + index % 26));
+        return new String(chars);
+    }
+
+    @Test
+    public void test() throws IOException, InterruptedException {
+        if (!SocketFactory.supportsUnixSockets())
+            return;
+
+        String address = _address(".shm");
+        //A small ring, so it wraps around and writers have to wait for the reader
+        IntrovertedServer server = new IntrovertedServer(SocketFactory.newSharedMemoryServerSocket(address, 4096));
+        IntrovertedClient client = new IntrovertedClient(SocketFactory.newSharedMemorySocket(address));
+
+        StreamFixture.connect(server, client);
+        StreamFixture.stream(client, server, 1000);
+
+        client.cleanlyClose(0);
+        server.close();
+    }
+
+    @Test
+    public void testWrapAround() throws Exception {
+        if (!SocketFactory.supportsUnixSockets())
+            return;
+
+        //The smallest ring, which frames of varying sizes (some larger than the ring itself) wrap around at every offset
+        PacketSocket[] pair = _pair(_address(".shm.wrap"), 64);
+        CompletableFuture<Void> sent = CompletableFuture.runAsync(() -> {
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    pair[1].getOutputStream().write(new ChunkPacket(new Object[]{_element(i)}, false));
+                    pair[1].getOutputStream().flush();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        for (int i = 0; i < 1000; i++)
+            assertArrayEquals(((ChunkPacket) pair[0].getInputStream().read()).getElements(), new Object[]{_element(i)});
+        sent.get(5, TimeUnit.SECONDS);
+
+        pair[1].close();
+        pair[0].close();
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        if (!SocketFactory.supportsUnixSockets())
+            return;
+
+        PacketSocket[] pair = _pair(_address(".shm.close"), 4096);
+        pair[1].getOutputStream().write(new ChunkPacket(new Object[]{"element"}, true));
+        pair[1].getOutputStream().flush();
+        pair[1].close();
+        pair[1].close(); //Closing twice is harmless
+
+        //What was written before the closure is still received, then the end of the stream
+        assertArrayEquals(((ChunkPacket) pair[0].getInputStream().read()).getElements(), new Object[]{"element"});
+        assertNull(pair[0].getInputStream().read());
+        try {
+            pair[0].getOutputStream().write(new ChunkPacket(new Object[]{"element"}, true));
+            pair[0].getOutputStream().flush();
+            fail("Writing to a closed connection should fail!");
+        } catch (IOException e) {
+            //Expected
+        }
+
+        //The closed side has been unmapped, so it must not touch the mapping anymore
+        assertNull(pair[1].getInputStream().read());
+        try {
+            pair[1].getOutputStream().write(new ChunkPacket(new Object[]{"element"}, true));
+            pair[1].getOutputStream().flush();
+            fail("Writing to a closed connection should fail!");
+        } catch (IOException e) {
+            //Expected
+        }
+        pair[0].close();
+    }
+}
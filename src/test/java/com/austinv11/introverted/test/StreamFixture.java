@@ -0,0 +1,48 @@
+package com.austinv11.introverted.test;
+
+import com.austinv11.introverted.client.IntrovertedClient;
+import com.austinv11.introverted.networking.ChunkIterator;
+import com.austinv11.introverted.networking.PacketHandler;
+import com.austinv11.introverted.server.IntrovertedServer;
+
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * The fixture shared by the tests which push a large chunked stream through a connection.
+ */
+final class StreamFixture {
+
+    static final int ELEMENTS = 100000;
+
+    private StreamFixture() {}
+
+    /**
+     * Handshakes every client and pings in both directions, so the connections are known to be fully set up.
+     */
+    static void connect(IntrovertedServer server, IntrovertedClient... clients) throws InterruptedException {
+        for (IntrovertedClient client : clients) {
+            assertFalse(client.handshake().isPresent());
+            client.pollPing();
+        }
+        server.pollPing();
+    }
+
+    /**
+     * Streams {@link #ELEMENTS} elements from one side to the other and checks that every one arrives in order. This
+     * is far more than can be buffered, so the sender has to wait for the receiver to catch up.
+     */
+    static void stream(PacketHandler sender, PacketHandler receiver, int chunkSize) throws InterruptedException {
+        ChunkIterator received = receiver.receiveChunked();
+        Thread thread = new Thread(() -> sender.sendChunked(IntStream.range(0, ELEMENTS).mapToObj(i -> "element" + i).iterator(), chunkSize));
+        thread.start();
+
+        int count = 0;
+        while (received.hasNext())
+            assertEquals(received.next(), "element" + count++);
+        assertEquals(count, ELEMENTS);
+        assertFalse(received.hasNext());
+        thread.join();
+    }
+}